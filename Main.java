@@ -6,18 +6,23 @@ import java.sql.PreparedStatement;
 import java.util.Scanner;
 
 import com.sakila.controllers.ActorControlador;
+import com.sakila.controllers.CalentamientoCaches;
 import com.sakila.controllers.ClienteControlador;
 import com.sakila.controllers.PeliculaControlador;
 import com.sakila.controllers.InventarioControlador;
 import com.sakila.controllers.CityControlador;
 import com.sakila.controllers.CountryControlador;
+import com.sakila.controllers.RegistroControladores;
 import com.sakila.models.Actor;
 import com.sakila.models.Cliente;
 import com.sakila.models.Pelicula;
 import com.sakila.models.Inventario;
 import com.sakila.models.City;
 import com.sakila.models.Country;
-import com.sakila.utils.DatabaseConnection;
+import com.sakila.data.ContextoBaseDatos;
+import com.sakila.data.Pagina;
+import com.sakila.data.PresupuestoMemoria;
+import com.sakila.data.iDatapost;
 import com.sakila.utils.Logger;
 import com.sakila.utils.ReportGenerator;
 import java.sql.SQLException;
@@ -25,33 +30,43 @@ import java.sql.Statement;
 import java.sql.ResultSet;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetProvider;
 
 /**
 * Clase principal para la aplicación Sakila Database 
 * @author Nicolas Zierow Fermin
 */
 public class Main {
+   private static final int TAMANIO_PAGINA = 20;
+   
    public static void main(String[] args) {
        Logger.info("Iniciando aplicación Sakila Database");
        
-       try (Connection conexion = DatabaseConnection.getConnection()) {
-           Logger.info("Conexión a la base de datos establecida correctamente");
+       try {
+           // Cargar las cachés de todas las tablas a la vez antes de mostrar el menú
+           CalentamientoCaches.calentar();
            
-           // Crear controladores
-           ActorControlador actorControlador = new ActorControlador(conexion);
-           ClienteControlador clienteControlador = new ClienteControlador(conexion);
-           PeliculaControlador peliculaControlador = new PeliculaControlador(conexion);
-           InventarioControlador inventarioControlador = new InventarioControlador(conexion);
-           CityControlador cityControlador = new CityControlador(conexion);
-           CountryControlador countryControlador = new CountryControlador(conexion);
+           // Obtener los controladores compartidos (cada tabla se carga una sola vez)
+           ActorControlador actorControlador = RegistroControladores.getActorControlador();
+           ClienteControlador clienteControlador = RegistroControladores.getClienteControlador();
+           PeliculaControlador peliculaControlador = RegistroControladores.getPeliculaControlador();
+           InventarioControlador inventarioControlador = RegistroControladores.getInventarioControlador();
+           CityControlador cityControlador = RegistroControladores.getCityControlador();
+           CountryControlador countryControlador = RegistroControladores.getCountryControlador();
            
            // Iniciar la interfaz de usuario
-           iniciarInterfazUsuario(conexion, actorControlador, clienteControlador, peliculaControlador, 
+           iniciarInterfazUsuario(actorControlador, clienteControlador, peliculaControlador, 
                                  inventarioControlador, cityControlador, countryControlador);
            
        } catch (Exception e) {
            Logger.error("Error de conexión a la base de datos: " + e.getMessage());
            e.printStackTrace();
+       } finally {
+           Logger.info("Estadísticas del pool de conexiones: " + ContextoBaseDatos.getEstadisticasPool());
+           ContextoBaseDatos.cerrarConexion();
        }
    }
    
@@ -59,7 +74,6 @@ public class Main {
     * Método para iniciar la interfaz de usuario por consola
     */
    private static void iniciarInterfazUsuario(
-           Connection conexion,
            ActorControlador actorControlador,
            ClienteControlador clienteControlador,
            PeliculaControlador peliculaControlador,
@@ -79,6 +93,7 @@ public class Main {
            System.out.println("5. Ejecutar consultas personalizadas");
            System.out.println("6. Generar reportes");
            System.out.println("7. Gestionar Ciudades");
+           System.out.println("8. Estadísticas de cachés");
            System.out.println("0. Salir");
            System.out.print("Seleccione una opción: ");
            
@@ -88,25 +103,28 @@ public class Main {
            try {
                switch (opcion) {
                    case 1:
-                       gestionarActores(conexion, actorControlador, scanner);
+                       gestionarActores(actorControlador, scanner);
                        break;
                    case 2:
-                       gestionarClientes(conexion, clienteControlador, scanner);
+                       gestionarClientes(clienteControlador, scanner);
                        break;
                    case 3:
-                       gestionarPeliculas(conexion, peliculaControlador, scanner);
+                       gestionarPeliculas(peliculaControlador, scanner);
                        break;
                    case 4:
-                       gestionarInventario(conexion, inventarioControlador, peliculaControlador, scanner);
+                       gestionarInventario(inventarioControlador, peliculaControlador, scanner);
                        break;
                    case 5:
-                       ejecutarConsultasPersonalizadas(conexion, scanner);
+                       ejecutarConsultasPersonalizadas(scanner);
                        break;
                    case 6:
-                       generarReportes(conexion, scanner);
+                       generarReportes(scanner);
                        break;
                    case 7:
-                       gestionarCiudades(conexion, cityControlador, countryControlador, scanner);
+                       gestionarCiudades(cityControlador, countryControlador, scanner);
+                       break;
+                   case 8:
+                       mostrarEstadisticasCaches();
                        break;
                    case 0:
                        salir = true;
@@ -124,10 +142,30 @@ public class Main {
        scanner.close();
    }
    
+   /**
+    * Muestra un listado de página en página, leyendo cada página de la base de datos
+    */
+   private static <T> void listarPaginado(iDatapost<T> controlador, Function<T, String> formato, Scanner scanner) {
+       Pagina<T> pagina = controlador.page(0, TAMANIO_PAGINA);
+       while (true) {
+           for (T elemento : pagina.getElementos()) {
+               System.out.println(formato.apply(elemento));
+           }
+           if (!pagina.hayMas()) {
+               break;
+           }
+           System.out.print("-- Enter para ver más, Q para terminar: ");
+           if (scanner.nextLine().trim().equalsIgnoreCase("Q")) {
+               break;
+           }
+           pagina = controlador.page(pagina.getSiguiente(), TAMANIO_PAGINA);
+       }
+   }
+   
    /**
     * Método para gestionar actores
     */
-   private static void gestionarActores(Connection conexion, ActorControlador actorControlador, Scanner scanner) throws SQLException {
+   private static void gestionarActores(ActorControlador actorControlador, Scanner scanner) throws SQLException {
        boolean volver = false;
        
        while (!volver) {
@@ -146,9 +184,9 @@ public class Main {
            switch (opcion) {
                case 1:
                    System.out.println("\n Lista de actores:");
-                   for (Actor actor : actorControlador.get()) {
-                       System.out.println(actor.getId() + " - " + actor.getNombrePrimer() + " " + actor.getApellido());
-                   }
+                   listarPaginado(actorControlador, 
+                                  actor -> actor.getId() + " - " + actor.getNombrePrimer() + " " + actor.getApellido(), 
+                                  scanner);
                    break;
                case 2:
                    System.out.print("Ingrese el ID del actor: ");
@@ -245,7 +283,7 @@ public class Main {
    /**
     * Método para gestionar clientes
     */
-   private static void gestionarClientes(Connection conexion, ClienteControlador clienteControlador, Scanner scanner) throws SQLException {
+   private static void gestionarClientes(ClienteControlador clienteControlador, Scanner scanner) throws SQLException {
        boolean volver = false;
        
        while (!volver) {
@@ -265,10 +303,10 @@ public class Main {
            switch (opcion) {
                case 1:
                    System.out.println("\n Lista de clientes:");
-                   for (Cliente cliente : clienteControlador.get()) {
-                       System.out.println(cliente.getId() + " - " + cliente.getPrimerNombre() + " " + 
-                                         cliente.getApellido() + " - " + cliente.getCorreoElectronico());
-                   }
+                   listarPaginado(clienteControlador, 
+                                  cliente -> cliente.getId() + " - " + cliente.getPrimerNombre() + " " + 
+                                             cliente.getApellido() + " - " + cliente.getCorreoElectronico(), 
+                                  scanner);
                    break;
                case 2:
                    System.out.print("Ingrese el ID del cliente: ");
@@ -390,7 +428,7 @@ public class Main {
    /**
     * Método para gestionar películas
     */
-   private static void gestionarPeliculas(Connection conexion, PeliculaControlador peliculaControlador, Scanner scanner) throws SQLException {
+   private static void gestionarPeliculas(PeliculaControlador peliculaControlador, Scanner scanner) throws SQLException {
        boolean volver = false;
        
        while (!volver) {
@@ -410,10 +448,10 @@ public class Main {
            switch (opcion) {
                case 1:
                    System.out.println("\n Lista de películas:");
-                   for (Pelicula pelicula : peliculaControlador.get()) {
-                       System.out.println(pelicula.getId() + " - " + pelicula.getTitulo() + " (" + 
-                                         pelicula.getAnioLanzamiento() + ") - " + pelicula.getClasificacion());
-                   }
+                   listarPaginado(peliculaControlador, 
+                                  pelicula -> pelicula.getId() + " - " + pelicula.getTitulo() + " (" + 
+                                              pelicula.getAnioLanzamiento() + ") - " + pelicula.getClasificacion(), 
+                                  scanner);
                    break;
                case 2:
                    System.out.print("Ingrese el ID de la película: ");
@@ -526,7 +564,7 @@ public class Main {
    /**
     * Método para gestionar inventario
     */
-   private static void gestionarInventario(Connection conexion, InventarioControlador inventarioControlador, 
+   private static void gestionarInventario(InventarioControlador inventarioControlador, 
                                          PeliculaControlador peliculaControlador, Scanner scanner) throws SQLException {
        boolean volver = false;
        
@@ -546,11 +584,11 @@ public class Main {
            switch (opcion) {
                case 1:
                    System.out.println("\n Lista de inventario:");
-                   for (Inventario inventario : inventarioControlador.get()) {
-                       System.out.println(inventario.getId() + " - Película: " + 
-                                         (inventario.getPelicula() != null ? inventario.getPelicula().getTitulo() : "N/A") + 
-                                         " - Tienda: " + inventario.getTienda().getId());
-                   }
+                   listarPaginado(inventarioControlador, 
+                                  inventario -> inventario.getId() + " - Película: " + 
+                                                (inventario.getPelicula() != null ? inventario.getPelicula().getTitulo() : "N/A") + 
+                                                " - Tienda: " + inventario.getTienda().getId(), 
+                                  scanner);
                    break;
                case 2:
                    System.out.print("Ingrese el ID del inventario: ");
@@ -626,7 +664,7 @@ public class Main {
    /**
     * Método para gestionar ciudades
     */
-   private static void gestionarCiudades(Connection conexion, CityControlador cityControlador, 
+   private static void gestionarCiudades(CityControlador cityControlador, 
                                        CountryControlador countryControlador, Scanner scanner) throws SQLException {
        boolean volver = false;
        
@@ -649,12 +687,12 @@ public class Main {
                    System.out.println("\n Lista de ciudades:");
                    System.out.printf("%-5s %-25s %-25s\n", "ID", "Ciudad", "País");
                    System.out.println("------------------------------------------------------");
-                   for (City ciudad : cityControlador.get()) {
-                       System.out.printf("%-5d %-25s %-25s\n", 
-                                        ciudad.getId(), 
-                                        ciudad.getCity(), 
-                                        ciudad.getCountry().getCountry());
-                   }
+                   listarPaginado(cityControlador, 
+                                  ciudad -> String.format("%-5d %-25s %-25s", 
+                                                          ciudad.getId(), 
+                                                          ciudad.getCity(), 
+                                                          ciudad.getCountry().getCountry()), 
+                                  scanner);
                    break;
                case 2:
                    System.out.print("Ingrese el ID de la ciudad: ");
@@ -806,7 +844,7 @@ public class Main {
    /**
     * Método para ejecutar consultas personalizadas
     */
-   private static void ejecutarConsultasPersonalizadas(Connection conexion, Scanner scanner) throws SQLException {
+   private static void ejecutarConsultasPersonalizadas(Scanner scanner) throws SQLException {
        boolean volver = false;
        
        while (!volver) {
@@ -822,8 +860,6 @@ public class Main {
            int opcion = scanner.nextInt();
            scanner.nextLine(); 
            
-           Statement stmt = conexion.createStatement();
-           
            switch (opcion) {
                case 1:
                    String topPeliculas = "SELECT f.film_id, f.title, COUNT(r.rental_id) AS total_rentals " +
@@ -833,7 +869,7 @@ public class Main {
                                         "GROUP BY f.film_id " +
                                         "ORDER BY total_rentals DESC " +
                                         "LIMIT 5";
-                   ResultSet rsTopPeliculas = stmt.executeQuery(topPeliculas);
+                   ResultSet rsTopPeliculas = consultarLectura(topPeliculas);
                    System.out.println("\n Top 5 películas más alquiladas:");
                    while (rsTopPeliculas.next()) {
                        System.out.println(rsTopPeliculas.getInt("film_id") + " - " +
@@ -849,7 +885,7 @@ public class Main {
                                        "GROUP BY c.customer_id " +
                                        "ORDER BY total_rentals DESC " +
                                        "LIMIT 5";
-                   ResultSet rsTopClientes = stmt.executeQuery(topClientes);
+                   ResultSet rsTopClientes = consultarLectura(topClientes);
                    System.out.println("\n Top 5 clientes con más alquileres:");
                    while (rsTopClientes.next()) {
                        System.out.println(rsTopClientes.getInt("customer_id") + " - " +
@@ -869,7 +905,7 @@ public class Main {
                                                 "JOIN payment p ON r.rental_id = p.rental_id " +
                                                 "GROUP BY c.name " +
                                                 "ORDER BY total_revenue DESC";
-                   ResultSet rsIngresos = stmt.executeQuery(ingresosPorCategoria);
+                   ResultSet rsIngresos = consultarLectura(ingresosPorCategoria);
                    System.out.println("\n Ingresos por categoría:");
                    while (rsIngresos.next()) {
                        System.out.printf("%-15s $%.2f\n", 
@@ -890,33 +926,34 @@ public class Main {
                                              "WHERE a.actor_id = ? " +
                                              "ORDER BY f.release_year DESC, f.title";
                    
-                   PreparedStatement pstmtActor = conexion.prepareStatement(peliculasPorActor);
-                   pstmtActor.setInt(1, actorId);
-                   ResultSet rsPeliculasActor = pstmtActor.executeQuery();
+                   // La conexión se pide después de leer el ID: no queda abierta mientras se espera
+                   try (Connection lectura = ContextoBaseDatos.getConexionLectura();
+                        PreparedStatement pstmtActor = lectura.prepareStatement(peliculasPorActor)) {
+                       pstmtActor.setInt(1, actorId);
+                       try (ResultSet rsPeliculasActor = pstmtActor.executeQuery()) {
                    
-                   boolean primerRegistro = true;
-                   String nombreActor = "";
+                           boolean primerRegistro = true;
+                           String nombreActor = "";
                    
-                   System.out.println("\n Películas del actor:");
-                   while (rsPeliculasActor.next()) {
-                       if (primerRegistro) {
-                           nombreActor = rsPeliculasActor.getString("first_name") + " " + 
-                                        rsPeliculasActor.getString("last_name");
-                           System.out.println("Actor: " + nombreActor);
-                           primerRegistro = false;
-                       }
+                           System.out.println("\n Películas del actor:");
+                           while (rsPeliculasActor.next()) {
+                               if (primerRegistro) {
+                                   nombreActor = rsPeliculasActor.getString("first_name") + " " + 
+                                                rsPeliculasActor.getString("last_name");
+                                   System.out.println("Actor: " + nombreActor);
+                                   primerRegistro = false;
+                               }
                        
-                       System.out.println(rsPeliculasActor.getInt("film_id") + " - " +
-                                          rsPeliculasActor.getString("title") + " (" +
-                                          rsPeliculasActor.getInt("release_year") + ")");
-                   }
+                               System.out.println(rsPeliculasActor.getInt("film_id") + " - " +
+                                                  rsPeliculasActor.getString("title") + " (" +
+                                                  rsPeliculasActor.getInt("release_year") + ")");
+                           }
                    
-                   if (primerRegistro) {
-                       System.out.println("No se encontró el actor o no tiene películas asociadas.");
+                           if (primerRegistro) {
+                               System.out.println("No se encontró el actor o no tiene películas asociadas.");
+                           }
+                       }
                    }
-                   
-                   rsPeliculasActor.close();
-                   pstmtActor.close();
                    break;
                case 5:
                    String clientesPorPais = "SELECT co.country, COUNT(cu.customer_id) AS total " +
@@ -926,7 +963,7 @@ public class Main {
                                            "JOIN country co ON ci.country_id = co.country_id " +
                                            "GROUP BY co.country " +
                                            "ORDER BY total DESC";
-                   ResultSet rsClientesPais = stmt.executeQuery(clientesPorPais);
+                   ResultSet rsClientesPais = consultarLectura(clientesPorPais);
                    System.out.println("\n👥 Clientes por país:");
                    while (rsClientesPais.next()) {
                        System.out.printf("%-20s: %d clientes\n", 
@@ -941,15 +978,13 @@ public class Main {
                default:
                    System.out.println("Opción no válida. Intente de nuevo.");
            }
-           
-           stmt.close();
        }
    }
    
    /**
     * Método para generar reportes
     */
-   private static void generarReportes(Connection conexion, Scanner scanner) throws SQLException {
+   private static void generarReportes(Scanner scanner) throws SQLException {
        boolean volver = false;
        
        while (!volver) {
@@ -964,8 +999,6 @@ public class Main {
            int opcion = scanner.nextInt();
            scanner.nextLine(); 
            
-           Statement stmt = conexion.createStatement();
-           
            switch (opcion) {
                case 1:
                    String peliculasPorCategoria = "SELECT c.name, COUNT(f.film_id) AS total " +
@@ -974,7 +1007,7 @@ public class Main {
                                                  "JOIN film f ON fc.film_id = f.film_id " +
                                                  "GROUP BY c.name " +
                                                  "ORDER BY total DESC";
-                   ResultSet rsCategorias = stmt.executeQuery(peliculasPorCategoria);
+                   ResultSet rsCategorias = consultarLectura(peliculasPorCategoria);
                    System.out.println("\n Películas por categoría:");
                    while (rsCategorias.next()) {
                        System.out.printf("%-15s: %d películas\n", 
@@ -988,7 +1021,7 @@ public class Main {
                    
                    if (exportarCSV.equalsIgnoreCase("S")) {
                        try {
-                           ResultSet rsExport = stmt.executeQuery(peliculasPorCategoria);
+                           ResultSet rsExport = consultarLectura(peliculasPorCategoria);
                            String fileName = ReportGenerator.generateFileName("peliculas_por_categoria", "csv");
                            ReportGenerator.generateCSVReport(rsExport, fileName);
                            System.out.println("Reporte exportado a: " + fileName);
@@ -1006,7 +1039,7 @@ public class Main {
                                            "JOIN country co ON ci.country_id = co.country_id " +
                                            "GROUP BY co.country " +
                                            "ORDER BY total DESC";
-                   ResultSet rsPaises = stmt.executeQuery(clientesPorPais);
+                   ResultSet rsPaises = consultarLectura(clientesPorPais);
                    System.out.println("\n Clientes por país:");
                    while (rsPaises.next()) {
                        System.out.printf("%-20s: %d clientes\n", 
@@ -1020,7 +1053,7 @@ public class Main {
                    
                    if (exportarPaisesCSV.equalsIgnoreCase("S")) {
                        try {
-                           ResultSet rsExport = stmt.executeQuery(clientesPorPais);
+                           ResultSet rsExport = consultarLectura(clientesPorPais);
                            String fileName = ReportGenerator.generateFileName("clientes_por_pais", "csv");
                            ReportGenerator.generateCSVReport(rsExport, fileName);
                            System.out.println("Reporte exportado a: " + fileName);
@@ -1036,7 +1069,7 @@ public class Main {
                                           "FROM payment p " +
                                           "GROUP BY YEAR(p.payment_date), MONTH(p.payment_date) " +
                                           "ORDER BY year, month";
-                   ResultSet rsIngresos = stmt.executeQuery(ingresosPorMes);
+                   ResultSet rsIngresos = consultarLectura(ingresosPorMes);
                    System.out.println("\n Ingresos por mes:");
                    System.out.printf("%-6s %-6s %-15s\n", "Año", "Mes", "Ingresos");
                    System.out.println("---------------------------");
@@ -1053,7 +1086,7 @@ public class Main {
                    
                    if (exportarIngresosCSV.equalsIgnoreCase("S")) {
                        try {
-                           ResultSet rsExport = stmt.executeQuery(ingresosPorMes);
+                           ResultSet rsExport = consultarLectura(ingresosPorMes);
                            String fileName = ReportGenerator.generateFileName("ingresos_por_mes", "csv");
                            ReportGenerator.generateCSVReport(rsExport, fileName);
                            System.out.println("Reporte exportado a: " + fileName);
@@ -1070,7 +1103,7 @@ public class Main {
                                                "JOIN inventory i ON s.store_id = i.store_id " +
                                                "JOIN film f ON i.film_id = f.film_id " +
                                                "GROUP BY s.store_id";
-                   ResultSet rsInventario = stmt.executeQuery(inventarioPorTienda);
+                   ResultSet rsInventario = consultarLectura(inventarioPorTienda);
                    System.out.println("\n📦 Inventario por tienda:");
                    System.out.printf("%-10s %-20s %-20s\n", "Tienda", "Total Inventario", "Películas Únicas");
                    System.out.println("--------------------------------------------------");
@@ -1087,7 +1120,7 @@ public class Main {
                    
                    if (exportarInventarioCSV.equalsIgnoreCase("S")) {
                        try {
-                           ResultSet rsExport = stmt.executeQuery(inventarioPorTienda);
+                           ResultSet rsExport = consultarLectura(inventarioPorTienda);
                            String fileName = ReportGenerator.generateFileName("inventario_por_tienda", "csv");
                            ReportGenerator.generateCSVReport(rsExport, fileName);
                            System.out.println("Reporte exportado a: " + fileName);
@@ -1103,8 +1136,60 @@ public class Main {
                default:
                    System.out.println("Opción no válida. Intente de nuevo.");
            }
-           
-           stmt.close();
+       }
+   }
+   
+   /**
+    * Ejecuta una consulta de solo lectura (puede ir a la réplica) y devuelve sus filas ya
+    * copiadas en memoria, así la conexión vuelve al pool antes de preguntar nada al usuario
+    * @param sql Consulta sin parámetros
+    * @return Filas de la consulta, desconectadas de la base de datos
+    * @throws SQLException Si ocurre un error en la consulta
+    */
+   private static ResultSet consultarLectura(String sql) throws SQLException {
+       try (Connection lectura = ContextoBaseDatos.getConexionLectura();
+            Statement stmt = lectura.createStatement();
+            ResultSet rs = stmt.executeQuery(sql)) {
+           CachedRowSet filas = RowSetProvider.newFactory().createCachedRowSet();
+           filas.populate(rs);
+           return filas;
+       }
+   }
+   
+   /**
+    * Muestra aciertos, fallos, consultas a la base de datos y tiempos de carga de cada caché
+    */
+   private static void mostrarEstadisticasCaches() {
+       System.out.println("\n=== ESTADÍSTICAS DE CACHÉS ===");
+       System.out.printf("%-12s %9s %10s %10s %7s %11s %7s %12s %10s\n",
+                         "Caché", "Entradas", "Aciertos", "Fallos", "Tasa", "ConsultasBD",
+                         "Cargas", "Últ.carga ms", "Total ms");
+       System.out.println("---------------------------------------------------------------------------------------------");
+       Map<String, Map<String, Object>> todas = RegistroControladores.obtenerEstadisticasCaches();
+       for (Map.Entry<String, Map<String, Object>> entrada : todas.entrySet()) {
+           Map<String, Object> e = entrada.getValue();
+           System.out.printf("%-12s %9s %10s %10s %6.1f%% %11s %7s %12s %10s\n",
+                             entrada.getKey(), e.get("entradas"), e.get("aciertos"), e.get("fallos"),
+                             (Double) e.get("tasaAciertos") * 100, e.get("consultasBD"),
+                             e.get("cargas"), e.get("ultimaCargaMs"), e.get("tiempoCargasMs"));
+       }
+       
+       System.out.println("\nDetalle de cada caché:");
+       for (Map.Entry<String, Map<String, Object>> entrada : todas.entrySet()) {
+           System.out.println(entrada.getKey() + ": " + entrada.getValue().get("cache"));
+           Object filtro = entrada.getValue().get("filtro");
+           if (filtro != null) {
+               System.out.println("  filtro de inexistentes: " + filtro);
+           }
+           Object alquileres = entrada.getValue().get("alquileres");
+           if (alquileres != null) {
+               System.out.println("  historiales de alquiler: " + alquileres);
+           }
+       }
+       
+       PresupuestoMemoria presupuesto = PresupuestoMemoria.global();
+       if (presupuesto.estaActivo()) {
+           System.out.println("\nPresupuesto de memoria: " + presupuesto.obtenerEstadisticas());
        }
    }
 }
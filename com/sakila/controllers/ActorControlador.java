@@ -1,67 +1,114 @@
 package com.sakila.controllers;
 
-import com.sakila.data.iDatapost;
+import com.sakila.data.CacheEntidades;
+import com.sakila.data.ContextoBaseDatos;
+import com.sakila.data.EstadisticasCache;
+import com.sakila.data.EstimadorTamanio;
+import com.sakila.data.FlujoFilas;
+import com.sakila.data.InstantaneaCache;
+import com.sakila.data.OperacionesEnLote;
+import com.sakila.data.Pagina;
+import com.sakila.data.RefrescoIncremental;
+import com.sakila.data.RefrescoPeriodico;
+import com.sakila.data.iDatapostAsync;
 import com.sakila.models.Actor;
 import com.sakila.utils.Logger;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Controlador para manejar operaciones de Actor en la base de datos
  * @author Nicolas Zierow Fermin
  */
-public class ActorControlador implements iDatapost<Actor> {
-    private Connection conexion;
-    private List<Actor> actores;
+public class ActorControlador implements iDatapostAsync<Actor> {
+    private final CacheEntidades<Actor> actores = new CacheEntidades<>("actores", EstimadorTamanio::actor);
+    private final RefrescoIncremental<Actor> refresco = new RefrescoIncremental<>("actor", "actor_id",
+            "SELECT * FROM actor WHERE last_update >= ?",
+            this::mapearActor, actores, true);
+    private final InstantaneaCache<Actor> instantanea = new InstantaneaCache<>(refresco, actores,
+            ActorControlador::escribirActor, ActorControlador::leerActor);
+    private final EstadisticasCache estadisticas = new EstadisticasCache("actor", actores);
     
-    public ActorControlador(Connection conexion) {
-        this.conexion = conexion;
-        this.actores = new ArrayList<>();
-        cargarActores();
+    public ActorControlador() {
+        // Con una instantánea en disco solo se leen de la tabla los cambios posteriores a ella
+        long inicio = System.nanoTime();
+        if (instantanea.restaurar()) {
+            estadisticas.registrarCarga(inicio);
+        } else {
+            cargarActores();
+        }
+        RefrescoPeriodico.registrar(refresco);
     }
     
     /**
      * Carga los actores de la base de datos
      */
     private void cargarActores() {
+        long inicio = System.nanoTime();
+        refresco.marcarCarga();
         try {
-            actores.clear();
+            List<Actor> cargados = new ArrayList<>();
             String sql = "SELECT * FROM actor";
             
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 
                 while (rs.next()) {
-                    Actor actor = new Actor();
-                    actor.setId(rs.getInt("actor_id"));
-                    actor.setNombrePrimer(rs.getString("first_name"));
-                    actor.setApellido(rs.getString("last_name"));
-                    actor.setUltimaActualizacion(rs.getTimestamp("last_update"));
-                    actor.setFechaCreacion(rs.getTimestamp("last_update")); // No hay campo create_date en actor
-                    actor.setActivo(true); // No hay campo active en actor
-                    
-                    actores.add(actor);
+                    cargados.add(mapearActor(rs));
                 }
             }
             
-            Logger.info("Actores cargados: " + actores.size());
+            // Se reemplaza todo de una vez; los lectores nunca ven la caché a medio cargar
+            actores.reemplazarTodo(cargados);
+            Logger.info("Actores cargados: " + actores.tamanio());
+            estadisticas.registrarCarga(inicio);
         } catch (SQLException e) {
             Logger.error("Error al cargar actores: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * Crea un actor a partir de la fila actual
+     */
+    private Actor mapearActor(ResultSet rs) throws SQLException {
+        Actor actor = new Actor();
+        actor.setId(rs.getInt("actor_id"));
+        actor.setNombrePrimer(rs.getString("first_name"));
+        actor.setApellido(rs.getString("last_name"));
+        actor.setUltimaActualizacion(rs.getTimestamp("last_update"));
+        actor.setFechaCreacion(rs.getTimestamp("last_update")); // No hay campo create_date en actor
+        actor.setActivo(true); // No hay campo active en actor
+        return actor;
+    }
+    
+    private static void escribirActor(Actor actor, InstantaneaCache.Escritor escritor) throws IOException {
+        escritor.escribirEntidad(actor);
+        escritor.escribirTexto(actor.getNombrePrimer());
+        escritor.escribirTexto(actor.getApellido());
+    }
+    
+    private static Actor leerActor(InstantaneaCache.Lector lector) {
+        Actor actor = lector.leerEntidad(new Actor());
+        actor.setNombrePrimer(lector.leerTexto());
+        actor.setApellido(lector.leerTexto());
+        return actor;
+    }
+    
     @Override
     public boolean post(Actor actor) {
         String sql = "INSERT INTO actor (first_name, last_name) VALUES (?, ?)";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, actor.getNombrePrimer());
-            stmt.setString(2, actor.getApellido());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            asignarInsercion(stmt, actor);
             
             int filasAfectadas = stmt.executeUpdate();
             
@@ -70,10 +117,12 @@ public class ActorControlador implements iDatapost<Actor> {
                     if (generatedKeys.next()) {
                         actor.setId(generatedKeys.getInt(1));
                         actor.setUltimaActualizacion(new Date(System.currentTimeMillis()));
-                        actores.add(actor);
+                        actores.guardar(actor);
                         Logger.info("Actor creado con ID: " + actor.getId());
                     }
                 }
+                // Si la transacción en curso se revierte, la caché local se vuelve a cargar
+                ContextoBaseDatos.registrarEscritura(this, this::cargarActores);
                 return true;
             }
         } catch (SQLException e) {
@@ -84,29 +133,66 @@ public class ActorControlador implements iDatapost<Actor> {
         return false;
     }
     
+    @Override
+    public boolean postAll(List<Actor> nuevos) {
+        if (!OperacionesEnLote.validar(nuevos, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "INSERT INTO actor (first_name, last_name) VALUES (?, ?)";
+        
+        try {
+            OperacionesEnLote.insertar(sql, nuevos, this::asignarInsercion);
+        } catch (SQLException e) {
+            Logger.error("Error al crear actores en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        Date ahora = new Date(System.currentTimeMillis());
+        for (Actor actor : nuevos) {
+            actor.setUltimaActualizacion(ahora);
+        }
+        actores.guardarTodas(nuevos);
+        Logger.info("Actores creados en lote: " + nuevos.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarActores);
+        return true;
+    }
+    
+    /**
+     * Comprueba las columnas que escriben el INSERT y el UPDATE: first_name y last_name
+     */
+    private boolean columnasValidas(Actor actor) {
+        return actor.getNombrePrimer() != null && !actor.getNombrePrimer().isEmpty() &&
+               actor.getApellido() != null && !actor.getApellido().isEmpty();
+    }
+    
+    /**
+     * Asigna los parámetros del INSERT (compartido por post y postAll)
+     */
+    private void asignarInsercion(PreparedStatement stmt, Actor actor) throws SQLException {
+        stmt.setString(1, actor.getNombrePrimer());
+        stmt.setString(2, actor.getApellido());
+    }
+    
     @Override
     public boolean put(Actor actor) {
         String sql = "UPDATE actor SET first_name = ?, last_name = ? WHERE actor_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
-            stmt.setString(1, actor.getNombrePrimer());
-            stmt.setString(2, actor.getApellido());
-            stmt.setInt(3, actor.getId());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
+            asignarActualizacion(stmt, actor);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
                 actor.actualizarFecha();
                 
-                // Actualizar en la lista local
-                for (int i = 0; i < actores.size(); i++) {
-                    if (actores.get(i).getId() == actor.getId()) {
-                        actores.set(i, actor);
-                        break;
-                    }
-                }
+                // Actualizar en la caché local
+                actores.guardar(actor);
                 
                 Logger.info("Actor actualizado con ID: " + actor.getId());
+                ContextoBaseDatos.registrarEscritura(this, this::cargarActores);
                 return true;
             }
         } catch (SQLException e) {
@@ -117,22 +203,59 @@ public class ActorControlador implements iDatapost<Actor> {
         return false;
     }
     
+    @Override
+    public boolean putAll(List<Actor> modificados) {
+        if (!OperacionesEnLote.validar(modificados, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "UPDATE actor SET first_name = ?, last_name = ? WHERE actor_id = ?";
+        
+        List<Actor> actualizados;
+        try {
+            actualizados = OperacionesEnLote.actualizar(sql, modificados, this::asignarActualizacion);
+        } catch (SQLException e) {
+            Logger.error("Error al actualizar actores en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        for (Actor actor : actualizados) {
+            actor.actualizarFecha();
+        }
+        actores.guardarTodas(actualizados);
+        Logger.info("Actores actualizados en lote: " + actualizados.size() + " de " + modificados.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarActores);
+        return true;
+    }
+    
+    /**
+     * Asigna los parámetros del UPDATE (compartido por put y putAll)
+     */
+    private void asignarActualizacion(PreparedStatement stmt, Actor actor) throws SQLException {
+        stmt.setString(1, actor.getNombrePrimer());
+        stmt.setString(2, actor.getApellido());
+        stmt.setInt(3, actor.getId());
+    }
+    
     @Override
     public boolean delete(int id) {
         // En este caso, como la tabla actor no tiene un campo 'active',
         // realmente eliminamos el registro en lugar de marcarlo como inactivo
         String sql = "DELETE FROM actor WHERE actor_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
-                // Eliminar de la lista local
-                actores.removeIf(a -> a.getId() == id);
+                // Eliminar de la caché local
+                actores.quitar(id);
                 
                 Logger.info("Actor eliminado con ID: " + id);
+                ContextoBaseDatos.registrarEscritura(this, this::cargarActores);
                 return true;
             }
         } catch (SQLException e) {
@@ -143,33 +266,51 @@ public class ActorControlador implements iDatapost<Actor> {
         return false;
     }
     
+    @Override
+    public boolean deleteAll(int... ids) {
+        if (!OperacionesEnLote.validarIds(ids)) {
+            return false;
+        }
+        
+        int filasAfectadas;
+        try {
+            filasAfectadas = OperacionesEnLote.porIds("DELETE FROM actor WHERE actor_id IN ", ids);
+        } catch (SQLException e) {
+            Logger.error("Error al eliminar actores en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        actores.quitarTodas(ids);
+        Logger.info("Actores eliminados en lote: " + filasAfectadas);
+        ContextoBaseDatos.registrarEscritura(this, this::cargarActores);
+        return true;
+    }
+    
     @Override
     public Actor get(int id) {
-        // Primero buscamos en la lista local
-        for (Actor actor : actores) {
-            if (actor.getId() == id) {
-                return actor;
-            }
+        // Primero buscamos en la caché local
+        Actor enCache = actores.obtener(id);
+        if (enCache != null) {
+            estadisticas.registrarAcierto();
+            return enCache;
         }
+        estadisticas.registrarFallo();
         
         // Si no lo encontramos, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT * FROM actor WHERE actor_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Actor actor = new Actor();
-                    actor.setId(rs.getInt("actor_id"));
-                    actor.setNombrePrimer(rs.getString("first_name"));
-                    actor.setApellido(rs.getString("last_name"));
-                    actor.setUltimaActualizacion(rs.getTimestamp("last_update"));
-                    actor.setFechaCreacion(rs.getTimestamp("last_update")); // No hay campo create_date en actor
-                    actor.setActivo(true); // No hay campo active en actor
+                    Actor actor = mapearActor(rs);
                     
-                    // Añadir a la lista local
-                    actores.add(actor);
+                    // Añadir a la caché local
+                    actores.guardar(actor);
                     
                     return actor;
                 }
@@ -185,13 +326,16 @@ public class ActorControlador implements iDatapost<Actor> {
     @Override
     public List<Actor> get() {
         // Si la lista ya está cargada, la devolvemos
-        if (!actores.isEmpty()) {
-            return new ArrayList<>(actores);
+        if (!actores.estaVacia()) {
+            estadisticas.registrarAcierto();
+            return actores.valores();
         }
+        estadisticas.registrarFallo();
+        estadisticas.registrarConsultaBD();
         
         // Si no, cargamos los actores y devolvemos la lista
         cargarActores();
-        return new ArrayList<>(actores);
+        return actores.valores();
     }
     
     @Override
@@ -199,8 +343,8 @@ public class ActorControlador implements iDatapost<Actor> {
         List<Actor> resultado = new ArrayList<>();
         String criterio = criterios[0].toLowerCase();
         
-        // Primero buscamos en la lista local
-        for (Actor actor : actores) {
+        // Primero buscamos en la caché local
+        for (Actor actor : actores.valores()) {
             if (actor.getNombrePrimer().toLowerCase().contains(criterio) || 
                 actor.getApellido().toLowerCase().contains(criterio)) {
                 resultado.add(actor);
@@ -209,32 +353,27 @@ public class ActorControlador implements iDatapost<Actor> {
         
         // Si encontramos resultados, los devolvemos
         if (!resultado.isEmpty()) {
+            estadisticas.registrarAcierto();
             return resultado;
         }
+        estadisticas.registrarFallo();
         
         // Si no, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT * FROM actor WHERE LOWER(first_name) LIKE ? OR LOWER(last_name) LIKE ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setString(1, "%" + criterio + "%");
             stmt.setString(2, "%" + criterio + "%");
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Actor actor = new Actor();
-                    actor.setId(rs.getInt("actor_id"));
-                    actor.setNombrePrimer(rs.getString("first_name"));
-                    actor.setApellido(rs.getString("last_name"));
-                    actor.setUltimaActualizacion(rs.getTimestamp("last_update"));
-                    actor.setFechaCreacion(rs.getTimestamp("last_update")); // No hay campo create_date en actor
-                    actor.setActivo(true); // No hay campo active en actor
-                    
+                    Actor actor = mapearActor(rs);
                     resultado.add(actor);
                     
-                    // Añadir a la lista local si no existe
-                    if (actores.stream().noneMatch(a -> a.getId() == actor.getId())) {
-                        actores.add(actor);
-                    }
+                    // Añadir a la caché local si no existe
+                    actores.guardarSiFalta(actor);
                 }
             }
         } catch (SQLException e) {
@@ -245,6 +384,27 @@ public class ActorControlador implements iDatapost<Actor> {
         return resultado;
     }
     
+    @Override
+    public Stream<Actor> stream() {
+        return FlujoFilas.abrir("SELECT * FROM actor", this::mapearActor);
+    }
+    
+    @Override
+    public Pagina<Actor> page(int despuesDeId, int tamanio) {
+        try {
+            return leerPagina(despuesDeId, tamanio);
+        } catch (SQLException e) {
+            Logger.error("Error al obtener página de actores: " + e.getMessage());
+            e.printStackTrace();
+            return Pagina.vacia();
+        }
+    }
+    
+    private Pagina<Actor> leerPagina(int despuesDeId, int tamanio) throws SQLException {
+        String sql = "SELECT * FROM actor WHERE actor_id > ? ORDER BY actor_id LIMIT ?";
+        return Pagina.leer(sql, this::mapearActor, Actor::getId, despuesDeId, tamanio);
+    }
+    
     /**
      * Método para obtener estadísticas de actores
      * @return Mapa con estadísticas
@@ -254,7 +414,7 @@ public class ActorControlador implements iDatapost<Actor> {
         
         try {
             // Total de actores
-            estadisticas.put("totalActores", actores.size());
+            estadisticas.put("totalActores", actores.tamanio());
             
             // Actores con más películas
             String sqlTopActores = "SELECT a.actor_id, a.first_name, a.last_name, COUNT(fa.film_id) AS total_peliculas " +
@@ -265,7 +425,8 @@ public class ActorControlador implements iDatapost<Actor> {
                                   "LIMIT 5";
             
             List<Map<String, Object>> topActores = new ArrayList<>();
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sqlTopActores)) {
                 while (rs.next()) {
                     Map<String, Object> actor = new HashMap<>();
@@ -286,4 +447,12 @@ public class ActorControlador implements iDatapost<Actor> {
         
         return estadisticas;
     }
+    
+    /**
+     * Obtiene las estadísticas de uso de la caché de actores
+     * @return Mapa con aciertos, fallos, consultas a la base de datos, cargas y entradas
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        return estadisticas.obtener();
+    }
 }
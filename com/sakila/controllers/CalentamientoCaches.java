@@ -0,0 +1,64 @@
+package com.sakila.controllers;
+
+import com.sakila.data.EjecutorAsincrono;
+import com.sakila.utils.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+
+/**
+ * Carga en paralelo las cachés de todos los controladores al arrancar, cada tabla con
+ * su propia conexión del pool, para que el arranque tarde lo que la tabla más lenta
+ * y no la suma de todas.
+ * <p>
+ * Las dependencias las resuelve el propio registro: ciudades espera a que termine
+ * países e inventario a películas, mientras el resto carga a la vez.
+ * @author Nicolas Zierow Fermin
+ */
+public final class CalentamientoCaches {
+
+    private CalentamientoCaches() {
+    }
+
+    /**
+     * Crea todos los controladores compartidos en paralelo y espera a que terminen
+     * @return Milisegundos que tardó cada tabla (con la espera de sus dependencias), en orden de lanzamiento
+     */
+    public static Map<String, Long> calentar() {
+        Map<String, Supplier<?>> tablas = new LinkedHashMap<>();
+        tablas.put("actor", RegistroControladores::getActorControlador);
+        tablas.put("film", RegistroControladores::getPeliculaControlador);
+        tablas.put("country", RegistroControladores::getCountryControlador);
+        tablas.put("city", RegistroControladores::getCityControlador);
+        tablas.put("customer", RegistroControladores::getClienteControlador);
+        tablas.put("inventory", RegistroControladores::getInventarioControlador);
+
+        long inicio = System.nanoTime();
+        Map<String, CompletableFuture<Long>> cargas = new LinkedHashMap<>();
+        for (Map.Entry<String, Supplier<?>> tabla : tablas.entrySet()) {
+            Supplier<?> crear = tabla.getValue();
+            cargas.put(tabla.getKey(), EjecutorAsincrono.ejecutar(() -> {
+                long comienzo = System.nanoTime();
+                crear.get();
+                return (System.nanoTime() - comienzo) / 1_000_000;
+            }));
+        }
+
+        Map<String, Long> tiempos = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Long>> carga : cargas.entrySet()) {
+            try {
+                long ms = carga.getValue().join();
+                tiempos.put(carga.getKey(), ms);
+                Logger.info("Caché de " + carga.getKey() + " lista en " + ms + " ms");
+            } catch (CompletionException e) {
+                Logger.error("Error al cargar la caché de " + carga.getKey() + ": " + e.getCause());
+            }
+        }
+
+        Logger.info("Cachés cargadas en paralelo en " + (System.nanoTime() - inicio) / 1_000_000 + " ms");
+        return tiempos;
+    }
+}
@@ -1,33 +1,57 @@
 package com.sakila.controllers;
 
-import com.sakila.data.iDatapost;
+import com.sakila.data.CacheEntidades;
+import com.sakila.data.ContextoBaseDatos;
+import com.sakila.data.EstadisticasCache;
+import com.sakila.data.EstimadorTamanio;
+import com.sakila.data.FlujoFilas;
+import com.sakila.data.InstantaneaCache;
+import com.sakila.data.OperacionesEnLote;
+import com.sakila.data.Pagina;
+import com.sakila.data.RefrescoIncremental;
+import com.sakila.data.RefrescoPeriodico;
+import com.sakila.data.iDatapostAsync;
 import com.sakila.models.City;
 import com.sakila.models.Country;
 import com.sakila.utils.Logger;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Controlador para manejar operaciones de City en la base de datos
  * @author Nicolas Zierow Fermin
  */
-public class CityControlador implements iDatapost<City> {
-    private Connection conexion;
-    private List<City> ciudades;
-    private CountryControlador countryControlador;
+public class CityControlador implements iDatapostAsync<City> {
+    private final CacheEntidades<City> ciudades = new CacheEntidades<>("ciudades", EstimadorTamanio::ciudad);
+    private final RefrescoIncremental<City> refresco = new RefrescoIncremental<>("city", "city_id",
+            "SELECT c.city_id, c.city, c.country_id, c.last_update, co.country " +
+            "FROM city c JOIN country co ON c.country_id = co.country_id " +
+            "WHERE c.last_update >= ?",
+            this::mapearCity, ciudades, true);
+    private final InstantaneaCache<City> instantanea = new InstantaneaCache<>(refresco, ciudades,
+            CityControlador::escribirCity, this::leerCity);
+    private final EstadisticasCache estadisticas = new EstadisticasCache("city", ciudades);
+    private final CountryControlador countryControlador;
     
-    public CityControlador(Connection conexion) {
-        this.conexion = conexion;
-        this.ciudades = new ArrayList<>();
-        // Inicializar el controlador de países solo si es necesario
-        if (countryControlador == null) {
-            this.countryControlador = new CountryControlador(conexion);
+    /**
+     * Constructor
+     * @param countryControlador Controlador de países compartido
+     */
+    public CityControlador(CountryControlador countryControlador) {
+        this.countryControlador = countryControlador;
+        long inicio = System.nanoTime();
+        if (instantanea.restaurar()) {
+            estadisticas.registrarCarga(inicio);
+        } else {
+            cargarCiudades();
         }
-        cargarCiudades();
+        RefrescoPeriodico.registrar(refresco);
     }
     
     /**
@@ -42,49 +66,88 @@ public class CityControlador implements iDatapost<City> {
      * Carga las ciudades de la base de datos
      */
     private void cargarCiudades() {
+        long inicio = System.nanoTime();
+        refresco.marcarCarga();
         try {
-            ciudades.clear();
+            List<City> cargados = new ArrayList<>();
             String sql = "SELECT c.city_id, c.city, c.country_id, c.last_update, " +
                          "co.country " +
                          "FROM city c " +
                          "JOIN country co ON c.country_id = co.country_id";
             
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 
                 while (rs.next()) {
-                    int cityId = rs.getInt("city_id");
-                    String cityName = rs.getString("city");
-                    int countryId = rs.getInt("country_id");
-                    String countryName = rs.getString("country");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
+                    City city = mapearCity(rs);
                     
-                    Country country = new Country(countryId, countryName);
-                    country.setUltimaActualizacion(lastUpdate);
-                    
-                    City city = new City(cityId, cityName, country);
-                    city.setUltimaActualizacion(lastUpdate);
-                    city.setFechaCreacion(lastUpdate); // No hay campo create_date en city
-                    city.setActivo(true); // No hay campo active en city
-                    
-                    ciudades.add(city);
+                    cargados.add(city);
                 }
             }
             
-            Logger.info("Ciudades cargadas: " + ciudades.size());
+            ciudades.reemplazarTodo(cargados);
+            Logger.info("Ciudades cargadas: " + ciudades.tamanio());
+            estadisticas.registrarCarga(inicio);
         } catch (SQLException e) {
             Logger.error("Error al cargar ciudades: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * Crea una ciudad (con su país) a partir de la fila actual
+     */
+    private City mapearCity(ResultSet rs) throws SQLException {
+        int cityId = rs.getInt("city_id");
+        String cityName = rs.getString("city");
+        int countryId = rs.getInt("country_id");
+        String countryName = rs.getString("country");
+        Timestamp lastUpdate = rs.getTimestamp("last_update");
+        
+        // Todas las ciudades de un país comparten la instancia de la caché de países
+        Country country = countryControlador.obtenerCompartido(countryId, id -> {
+            Country nuevo = new Country(id, countryName);
+            nuevo.setUltimaActualizacion(lastUpdate);
+            return nuevo;
+        });
+        
+        City city = new City(cityId, cityName, country);
+        city.setUltimaActualizacion(lastUpdate);
+        city.setFechaCreacion(lastUpdate); // No hay campo create_date en city
+        city.setActivo(true); // No hay campo active en city
+        return city;
+    }
+    
+    private static void escribirCity(City city, InstantaneaCache.Escritor escritor) throws IOException {
+        escritor.escribirEntidad(city);
+        escritor.escribirTexto(city.getCity());
+        Country country = city.getCountry();
+        escritor.escribirInt(country != null ? country.getId() : 0);
+        escritor.escribirTexto(country != null ? country.getCountry() : null);
+    }
+    
+    /**
+     * Lee una ciudad de la instantánea; el país se comparte con la caché de países como en mapearCity
+     */
+    private City leerCity(InstantaneaCache.Lector lector) {
+        City city = lector.leerEntidad(new City());
+        city.setCity(lector.leerTexto());
+        int countryId = lector.leerInt();
+        String countryName = lector.leerTexto();
+        if (countryId > 0) {
+            city.setCountry(countryControlador.obtenerCompartido(countryId, id -> new Country(id, countryName)));
+        }
+        return city;
+    }
+    
     @Override
     public boolean post(City city) {
         String sql = "INSERT INTO city (city, country_id) VALUES (?, ?)";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, city.getCity());
-            stmt.setInt(2, city.getCountry().getId());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            asignarInsercion(stmt, city);
             
             int filasAfectadas = stmt.executeUpdate();
             
@@ -93,10 +156,12 @@ public class CityControlador implements iDatapost<City> {
                     if (generatedKeys.next()) {
                         city.setId(generatedKeys.getInt(1));
                         city.setUltimaActualizacion(new Date(System.currentTimeMillis()));
-                        ciudades.add(city);
+                        ciudades.guardar(city);
                         Logger.info("Ciudad creada con ID: " + city.getId());
                     }
                 }
+                // Si la transacción en curso se revierte, la caché local se vuelve a cargar
+                ContextoBaseDatos.registrarEscritura(this, this::cargarCiudades);
                 return true;
             }
         } catch (SQLException e) {
@@ -107,29 +172,66 @@ public class CityControlador implements iDatapost<City> {
         return false;
     }
     
+    @Override
+    public boolean postAll(List<City> nuevos) {
+        if (!OperacionesEnLote.validar(nuevos, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "INSERT INTO city (city, country_id) VALUES (?, ?)";
+        
+        try {
+            OperacionesEnLote.insertar(sql, nuevos, this::asignarInsercion);
+        } catch (SQLException e) {
+            Logger.error("Error al crear ciudades en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        Date ahora = new Date(System.currentTimeMillis());
+        for (City city : nuevos) {
+            city.setUltimaActualizacion(ahora);
+        }
+        ciudades.guardarTodas(nuevos);
+        Logger.info("Ciudades creadas en lote: " + nuevos.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarCiudades);
+        return true;
+    }
+    
+    /**
+     * Comprueba las columnas que escriben el INSERT y el UPDATE: city y country_id
+     */
+    private boolean columnasValidas(City city) {
+        return city.getCity() != null && !city.getCity().isEmpty() &&
+               city.getCountry() != null && city.getCountry().getId() > 0;
+    }
+    
+    /**
+     * Asigna los parámetros del INSERT (compartido por post y postAll)
+     */
+    private void asignarInsercion(PreparedStatement stmt, City city) throws SQLException {
+        stmt.setString(1, city.getCity());
+        stmt.setInt(2, city.getCountry().getId());
+    }
+    
     @Override
     public boolean put(City city) {
         String sql = "UPDATE city SET city = ?, country_id = ? WHERE city_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
-            stmt.setString(1, city.getCity());
-            stmt.setInt(2, city.getCountry().getId());
-            stmt.setInt(3, city.getId());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
+            asignarActualizacion(stmt, city);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
                 city.actualizarFecha();
                 
-                // Actualizar en la lista local
-                for (int i = 0; i < ciudades.size(); i++) {
-                    if (ciudades.get(i).getId() == city.getId()) {
-                        ciudades.set(i, city);
-                        break;
-                    }
-                }
+                // Actualizar en la caché local
+                ciudades.guardar(city);
                 
                 Logger.info("Ciudad actualizada con ID: " + city.getId());
+                ContextoBaseDatos.registrarEscritura(this, this::cargarCiudades);
                 return true;
             }
         } catch (SQLException e) {
@@ -140,22 +242,59 @@ public class CityControlador implements iDatapost<City> {
         return false;
     }
     
+    @Override
+    public boolean putAll(List<City> modificados) {
+        if (!OperacionesEnLote.validar(modificados, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "UPDATE city SET city = ?, country_id = ? WHERE city_id = ?";
+        
+        List<City> actualizados;
+        try {
+            actualizados = OperacionesEnLote.actualizar(sql, modificados, this::asignarActualizacion);
+        } catch (SQLException e) {
+            Logger.error("Error al actualizar ciudades en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        for (City city : actualizados) {
+            city.actualizarFecha();
+        }
+        ciudades.guardarTodas(actualizados);
+        Logger.info("Ciudades actualizadas en lote: " + actualizados.size() + " de " + modificados.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarCiudades);
+        return true;
+    }
+    
+    /**
+     * Asigna los parámetros del UPDATE (compartido por put y putAll)
+     */
+    private void asignarActualizacion(PreparedStatement stmt, City city) throws SQLException {
+        stmt.setString(1, city.getCity());
+        stmt.setInt(2, city.getCountry().getId());
+        stmt.setInt(3, city.getId());
+    }
+    
     @Override
     public boolean delete(int id) {
         // En este caso, como la tabla city no tiene un campo 'active',
         // realmente eliminamos el registro en lugar de marcarlo como inactivo
         String sql = "DELETE FROM city WHERE city_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
-                // Eliminar de la lista local
-                ciudades.removeIf(c -> c.getId() == id);
+                // Eliminar de la caché local
+                ciudades.quitar(id);
                 
                 Logger.info("Ciudad eliminada con ID: " + id);
+                ContextoBaseDatos.registrarEscritura(this, this::cargarCiudades);
                 return true;
             }
         } catch (SQLException e) {
@@ -166,43 +305,55 @@ public class CityControlador implements iDatapost<City> {
         return false;
     }
     
+    @Override
+    public boolean deleteAll(int... ids) {
+        if (!OperacionesEnLote.validarIds(ids)) {
+            return false;
+        }
+        
+        int filasAfectadas;
+        try {
+            filasAfectadas = OperacionesEnLote.porIds("DELETE FROM city WHERE city_id IN ", ids);
+        } catch (SQLException e) {
+            Logger.error("Error al eliminar ciudades en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        ciudades.quitarTodas(ids);
+        Logger.info("Ciudades eliminadas en lote: " + filasAfectadas);
+        ContextoBaseDatos.registrarEscritura(this, this::cargarCiudades);
+        return true;
+    }
+    
     @Override
     public City get(int id) {
-        // Primero buscamos en la lista local
-        for (City city : ciudades) {
-            if (city.getId() == id) {
-                return city;
-            }
+        // Primero buscamos en la caché local
+        City enCache = ciudades.obtener(id);
+        if (enCache != null) {
+            estadisticas.registrarAcierto();
+            return enCache;
         }
+        estadisticas.registrarFallo();
         
         // Si no lo encontramos, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT c.city_id, c.city, c.country_id, c.last_update, " +
                      "co.country " +
                      "FROM city c " +
                      "JOIN country co ON c.country_id = co.country_id " +
                      "WHERE c.city_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    int cityId = rs.getInt("city_id");
-                    String cityName = rs.getString("city");
-                    int countryId = rs.getInt("country_id");
-                    String countryName = rs.getString("country");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    Country country = new Country(countryId, countryName);
-                    country.setUltimaActualizacion(lastUpdate);
+                    City city = mapearCity(rs);
                     
-                    City city = new City(cityId, cityName, country);
-                    city.setUltimaActualizacion(lastUpdate);
-                    city.setFechaCreacion(lastUpdate); // No hay campo create_date en city
-                    city.setActivo(true); // No hay campo active en city
-                    
-                    // Añadir a la lista local
-                    ciudades.add(city);
+                    // Añadir a la caché local
+                    ciudades.guardar(city);
                     
                     return city;
                 }
@@ -218,13 +369,16 @@ public class CityControlador implements iDatapost<City> {
     @Override
     public List<City> get() {
         // Si la lista ya está cargada, la devolvemos
-        if (!ciudades.isEmpty()) {
-            return new ArrayList<>(ciudades);
+        if (!ciudades.estaVacia()) {
+            estadisticas.registrarAcierto();
+            return ciudades.valores();
         }
+        estadisticas.registrarFallo();
+        estadisticas.registrarConsultaBD();
         
         // Si no, cargamos las ciudades y devolvemos la lista
         cargarCiudades();
-        return new ArrayList<>(ciudades);
+        return ciudades.valores();
     }
     
     @Override
@@ -232,8 +386,8 @@ public class CityControlador implements iDatapost<City> {
         List<City> resultado = new ArrayList<>();
         String criterio = criterios[0].toLowerCase();
         
-        // Primero buscamos en la lista local
-        for (City city : ciudades) {
+        // Primero buscamos en la caché local
+        for (City city : ciudades.valores()) {
             if (city.getCity().toLowerCase().contains(criterio) || 
                 city.getCountry().getCountry().toLowerCase().contains(criterio)) {
                 resultado.add(city);
@@ -242,42 +396,32 @@ public class CityControlador implements iDatapost<City> {
         
         // Si encontramos resultados, los devolvemos
         if (!resultado.isEmpty()) {
+            estadisticas.registrarAcierto();
             return resultado;
         }
+        estadisticas.registrarFallo();
         
         // Si no, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT c.city_id, c.city, c.country_id, c.last_update, " +
                      "co.country " +
                      "FROM city c " +
                      "JOIN country co ON c.country_id = co.country_id " +
                      "WHERE LOWER(c.city) LIKE ? OR LOWER(co.country) LIKE ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setString(1, "%" + criterio + "%");
             stmt.setString(2, "%" + criterio + "%");
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int cityId = rs.getInt("city_id");
-                    String cityName = rs.getString("city");
-                    int countryId = rs.getInt("country_id");
-                    String countryName = rs.getString("country");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    Country country = new Country(countryId, countryName);
-                    country.setUltimaActualizacion(lastUpdate);
-                    
-                    City city = new City(cityId, cityName, country);
-                    city.setUltimaActualizacion(lastUpdate);
-                    city.setFechaCreacion(lastUpdate); // No hay campo create_date en city
-                    city.setActivo(true); // No hay campo active en city
+                    City city = mapearCity(rs);
                     
                     resultado.add(city);
                     
-                    // Añadir a la lista local si no existe
-                    if (ciudades.stream().noneMatch(c -> c.getId() == city.getId())) {
-                        ciudades.add(city);
-                    }
+                    // Añadir a la caché local si no existe
+                    ciudades.guardarSiFalta(city);
                 }
             }
         } catch (SQLException e) {
@@ -288,6 +432,30 @@ public class CityControlador implements iDatapost<City> {
         return resultado;
     }
     
+    @Override
+    public Stream<City> stream() {
+        return FlujoFilas.abrir("SELECT c.city_id, c.city, c.country_id, c.last_update, co.country " +
+                                 "FROM city c JOIN country co ON c.country_id = co.country_id", this::mapearCity);
+    }
+    
+    @Override
+    public Pagina<City> page(int despuesDeId, int tamanio) {
+        try {
+            return leerPagina(despuesDeId, tamanio);
+        } catch (SQLException e) {
+            Logger.error("Error al obtener página de ciudades: " + e.getMessage());
+            e.printStackTrace();
+            return Pagina.vacia();
+        }
+    }
+    
+    private Pagina<City> leerPagina(int despuesDeId, int tamanio) throws SQLException {
+        String sql = "SELECT c.city_id, c.city, c.country_id, c.last_update, co.country " +
+                     "FROM city c JOIN country co ON c.country_id = co.country_id " +
+                     "WHERE c.city_id > ? ORDER BY c.city_id LIMIT ?";
+        return Pagina.leer(sql, this::mapearCity, City::getId, despuesDeId, tamanio);
+    }
+    
     /**
      * Obtiene las ciudades por país
      * @param countryId ID del país
@@ -296,8 +464,8 @@ public class CityControlador implements iDatapost<City> {
     public List<City> getCiudadesPorPais(int countryId) {
         List<City> resultado = new ArrayList<>();
         
-        // Primero buscamos en la lista local
-        for (City city : ciudades) {
+        // Primero buscamos en la caché local
+        for (City city : ciudades.valores()) {
             if (city.getCountry().getId() == countryId) {
                 resultado.add(city);
             }
@@ -305,40 +473,31 @@ public class CityControlador implements iDatapost<City> {
         
         // Si encontramos resultados, los devolvemos
         if (!resultado.isEmpty()) {
+            estadisticas.registrarAcierto();
             return resultado;
         }
+        estadisticas.registrarFallo();
         
         // Si no, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT c.city_id, c.city, c.country_id, c.last_update, " +
                      "co.country " +
                      "FROM city c " +
                      "JOIN country co ON c.country_id = co.country_id " +
                      "WHERE c.country_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, countryId);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int cityId = rs.getInt("city_id");
-                    String cityName = rs.getString("city");
-                    String countryName = rs.getString("country");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    Country country = new Country(countryId, countryName);
-                    country.setUltimaActualizacion(lastUpdate);
-                    
-                    City city = new City(cityId, cityName, country);
-                    city.setUltimaActualizacion(lastUpdate);
-                    city.setFechaCreacion(lastUpdate); // No hay campo create_date en city
-                    city.setActivo(true); // No hay campo active en city
+                    City city = mapearCity(rs);
                     
                     resultado.add(city);
                     
-                    // Añadir a la lista local si no existe
-                    if (ciudades.stream().noneMatch(c -> c.getId() == city.getId())) {
-                        ciudades.add(city);
-                    }
+                    // Añadir a la caché local si no existe
+                    ciudades.guardarSiFalta(city);
                 }
             }
         } catch (SQLException e) {
@@ -358,7 +517,7 @@ public class CityControlador implements iDatapost<City> {
         
         try {
             // Total de ciudades
-            estadisticas.put("totalCiudades", ciudades.size());
+            estadisticas.put("totalCiudades", ciudades.tamanio());
             
             // Ciudades por país
             String sqlCiudadesPorPais = "SELECT co.country_id, co.country, COUNT(c.city_id) AS total " +
@@ -368,7 +527,8 @@ public class CityControlador implements iDatapost<City> {
                                        "ORDER BY total DESC";
             
             Map<String, Integer> ciudadesPorPais = new HashMap<>();
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sqlCiudadesPorPais)) {
                 while (rs.next()) {
                     String pais = rs.getString("country");
@@ -386,4 +546,12 @@ public class CityControlador implements iDatapost<City> {
         
         return estadisticas;
     }
+    
+    /**
+     * Obtiene las estadísticas de uso de la caché de ciudades
+     * @return Mapa con aciertos, fallos, consultas a la base de datos, cargas y entradas
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        return estadisticas.obtener();
+    }
 }
@@ -1,102 +1,184 @@
 package com.sakila.controllers;
 
-import com.sakila.data.iDatapost;
+import com.sakila.data.CacheAcotada;
+import com.sakila.data.ContextoBaseDatos;
+import com.sakila.data.EstimadorTamanio;
+import com.sakila.data.EjecutorAsincrono;
+import com.sakila.data.FiltroInexistentes;
+import com.sakila.data.EstadisticasCache;
+import com.sakila.data.FlujoFilas;
+import com.sakila.data.InstantaneaCache;
+import com.sakila.data.NivelSuave;
+import com.sakila.data.OperacionesEnLote;
+import com.sakila.data.Pagina;
+import com.sakila.data.RefrescoIncremental;
+import com.sakila.data.RefrescoPeriodico;
+import com.sakila.data.iCacheEntidades;
+import com.sakila.data.iDatapostAsync;
 import com.sakila.models.Cliente;
 import com.sakila.models.Store;
 import com.sakila.models.Address;
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.IntObjectMap;
 import com.sakila.utils.Logger;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Controlador para manejar operaciones de Cliente en la base de datos
  * @author Nicolas Zierow Fermin
  */
-public class ClienteControlador implements iDatapost<Cliente> {
-    private Connection conexion;
-    private List<Cliente> clientes;
-    
-    public ClienteControlador(Connection conexion) {
-        this.conexion = conexion;
-        this.clientes = new ArrayList<>();
-        cargarClientes();
+public class ClienteControlador implements iDatapostAsync<Cliente> {
+    private static final int TAMANIO_LOTE_CARGA = 500;
+    private static final int MAXIMO_CACHE_POR_DEFECTO = 10000;
+    private static final int MAXIMO_HISTORIALES_POR_DEFECTO = 10000;
+    private static final long DEFAULT_VIDA_HISTORIALES_MS = 60000;
+    
+    // Acotada (cache.clientes.max o cache.clientes.bytes): la tabla puede ser mucho mayor que la memoria disponible
+    private final iCacheEntidades<Cliente> clientes =
+            CacheAcotada.desdeConfiguracion("clientes", MAXIMO_CACHE_POR_DEFECTO, EstimadorTamanio::cliente);
+    // La caché es acotada: sin el filtro, cualquier ID fuera de ella obliga a consultar
+    private final FiltroInexistentes inexistentes = new FiltroInexistentes("customer", "customer_id");
+    private final RefrescoIncremental<Cliente> refresco = new RefrescoIncremental<>("customer", "customer_id",
+            "SELECT c.customer_id, c.store_id, c.first_name, c.last_name, c.email, " +
+            "c.address_id, c.active, c.create_date, c.last_update, a.address " +
+            "FROM customer c JOIN address a ON c.address_id = a.address_id " +
+            "WHERE c.last_update >= ?",
+            this::mapearCliente, clientes, false, inexistentes);
+    private final InstantaneaCache<Cliente> instantanea = new InstantaneaCache<>(refresco, clientes,
+            ClienteControlador::escribirCliente, ClienteControlador::leerCliente);
+    private final EstadisticasCache estadisticas = new EstadisticasCache("customer", clientes);
+    // Alquileres ya consultados, con referencias blandas: el GC los libera si falta memoria.
+    // Otras aplicaciones registran alquileres, así que caducan a los cache.alquileres.ms
+    private final NivelSuave<List<Map<String, Object>>> historiales =
+            NivelSuave.desdeConfiguracion("alquileres", MAXIMO_HISTORIALES_POR_DEFECTO,
+                    DatabaseConnection.getConfigNumber("cache.alquileres.ms", DEFAULT_VIDA_HISTORIALES_MS));
+    
+    public ClienteControlador() {
+        long inicio = System.nanoTime();
+        if (instantanea.restaurar()) {
+            estadisticas.registrarCarga(inicio);
+        } else {
+            cargarClientes();
+        }
+        inexistentes.cargar();
+        RefrescoPeriodico.registrar(refresco);
     }
     
     /**
      * Carga los clientes de la base de datos
      */
     private void cargarClientes() {
+        long inicio = System.nanoTime();
+        refresco.marcarCarga();
         try {
-            clientes.clear();
-            String sql = "SELECT c.customer_id, c.store_id, c.first_name, c.last_name, c.email, " +
-                        "c.address_id, c.active, c.create_date, c.last_update, " +
-                        "a.address " +
-                        "FROM customer c " +
-                        "JOIN address a ON c.address_id = a.address_id " +
-                        "LIMIT 100"; // Limitamos para no cargar demasiados registros
-            
-            try (Statement stmt = conexion.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                
-                while (rs.next()) {
-                    int customerId = rs.getInt("customer_id");
-                    int storeId = rs.getInt("store_id");
-                    String firstName = rs.getString("first_name");
-                    String lastName = rs.getString("last_name");
-                    String email = rs.getString("email");
-                    int addressId = rs.getInt("address_id");
-                    String addressText = rs.getString("address");
-                    boolean active = rs.getBoolean("active");
-                    Timestamp createDate = rs.getTimestamp("create_date");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    // Creamos un Store simple (sin todos los detalles)
-                    Store store = new Store();
-                    store.setId(storeId);
-                    
-                    // Creamos un Address simple (sin todos los detalles)
-                    Address address = new Address();
-                    address.setId(addressId);
-                    address.setAddress(addressText);
-                    
-                    Cliente cliente = new Cliente();
-                    cliente.setId(customerId);
-                    cliente.setTienda(store);
-                    cliente.setPrimerNombre(firstName);
-                    cliente.setApellido(lastName);
-                    cliente.setCorreoElectronico(email);
-                    cliente.setDireccion(address);
-                    cliente.setActivo(active);
-                    cliente.setFechaCreacion(createDate);
-                    cliente.setUltimaActualizacion(lastUpdate);
-                    
-                    clientes.add(cliente);
-                }
+            // Se precarga por páginas de clave, sin OFFSET, solo hasta llenar la caché;
+            // el resto de filas entra bajo demanda desde get(int)
+            Pagina<Cliente> pagina = leerPagina(0, TAMANIO_LOTE_CARGA);
+            clientes.reemplazarTodo(pagina.getElementos());
+            while (pagina.hayMas() && !clientes.estaLlena()) {
+                pagina = leerPagina(pagina.getSiguiente(), TAMANIO_LOTE_CARGA);
+                clientes.guardarTodas(pagina.getElementos());
             }
-            
-            Logger.info("Clientes cargados: " + clientes.size());
+            Logger.info("Clientes cargados: " + clientes.tamanio());
+            estadisticas.registrarCarga(inicio);
         } catch (SQLException e) {
             Logger.error("Error al cargar clientes: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * Crea un cliente (con tienda y dirección simples) a partir de la fila actual
+     */
+    private Cliente mapearCliente(ResultSet rs) throws SQLException {
+        int customerId = rs.getInt("customer_id");
+        int storeId = rs.getInt("store_id");
+        String firstName = rs.getString("first_name");
+        String lastName = rs.getString("last_name");
+        String email = rs.getString("email");
+        int addressId = rs.getInt("address_id");
+        String addressText = rs.getString("address");
+        boolean active = rs.getBoolean("active");
+        Timestamp createDate = rs.getTimestamp("create_date");
+        Timestamp lastUpdate = rs.getTimestamp("last_update");
+        
+        // Creamos un Store simple (sin todos los detalles)
+        Store store = new Store();
+        store.setId(storeId);
+        
+        // Creamos un Address simple (sin todos los detalles)
+        Address address = new Address();
+        address.setId(addressId);
+        address.setAddress(addressText);
+        
+        Cliente cliente = new Cliente();
+        cliente.setId(customerId);
+        cliente.setTienda(store);
+        cliente.setPrimerNombre(firstName);
+        cliente.setApellido(lastName);
+        cliente.setCorreoElectronico(email);
+        cliente.setDireccion(address);
+        cliente.setActivo(active);
+        cliente.setFechaCreacion(createDate);
+        cliente.setUltimaActualizacion(lastUpdate);
+        return cliente;
+    }
+    
+    private static void escribirCliente(Cliente cliente, InstantaneaCache.Escritor escritor) throws IOException {
+        escritor.escribirEntidad(cliente);
+        escritor.escribirInt(cliente.getTienda() != null ? cliente.getTienda().getId() : 0);
+        escritor.escribirTexto(cliente.getPrimerNombre());
+        escritor.escribirTexto(cliente.getApellido());
+        escritor.escribirTexto(cliente.getCorreoElectronico());
+        Address direccion = cliente.getDireccion();
+        escritor.escribirInt(direccion != null ? direccion.getId() : 0);
+        escritor.escribirTexto(direccion != null ? direccion.getAddress() : null);
+    }
+    
+    /**
+     * Lee un cliente de la instantánea, con tienda y dirección simples como en mapearCliente
+     */
+    private static Cliente leerCliente(InstantaneaCache.Lector lector) {
+        Cliente cliente = lector.leerEntidad(new Cliente());
+        int storeId = lector.leerInt();
+        if (storeId > 0) {
+            Store store = new Store();
+            store.setId(storeId);
+            cliente.setTienda(store);
+        }
+        cliente.setPrimerNombre(lector.leerTexto());
+        cliente.setApellido(lector.leerTexto());
+        cliente.setCorreoElectronico(lector.leerTexto());
+        int addressId = lector.leerInt();
+        String addressText = lector.leerTexto();
+        if (addressId > 0) {
+            Address address = new Address();
+            address.setId(addressId);
+            address.setAddress(addressText);
+            cliente.setDireccion(address);
+        }
+        return cliente;
+    }
+    
     @Override
     public boolean post(Cliente cliente) {
         String sql = "INSERT INTO customer (store_id, first_name, last_name, email, address_id, active, create_date) " +
                     "VALUES (?, ?, ?, ?, ?, ?, NOW())";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setInt(1, cliente.getTienda().getId());
-            stmt.setString(2, cliente.getPrimerNombre());
-            stmt.setString(3, cliente.getApellido());
-            stmt.setString(4, cliente.getCorreoElectronico());
-            stmt.setInt(5, cliente.getDireccion().getId());
-            stmt.setBoolean(6, cliente.isActivo());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            asignarInsercion(stmt, cliente);
             
             int filasAfectadas = stmt.executeUpdate();
             
@@ -104,12 +186,15 @@ public class ClienteControlador implements iDatapost<Cliente> {
                 try (ResultSet generatedKeys = stmt.getGeneratedKeys()) {
                     if (generatedKeys.next()) {
                         cliente.setId(generatedKeys.getInt(1));
+                        inexistentes.registrar(cliente.getId());
                         cliente.setFechaCreacion(new Date(System.currentTimeMillis()));
                         cliente.setUltimaActualizacion(new Date(System.currentTimeMillis()));
-                        clientes.add(cliente);
+                        clientes.guardar(cliente);
                         Logger.info("Cliente creado con ID: " + cliente.getId());
                     }
                 }
+                // Si la transacción en curso se revierte, la caché local se vuelve a cargar
+                ContextoBaseDatos.registrarEscritura(this, this::cargarClientes);
                 return true;
             }
         } catch (SQLException e) {
@@ -120,35 +205,77 @@ public class ClienteControlador implements iDatapost<Cliente> {
         return false;
     }
     
+    @Override
+    public boolean postAll(List<Cliente> nuevos) {
+        if (!OperacionesEnLote.validar(nuevos, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "INSERT INTO customer (store_id, first_name, last_name, email, address_id, active, create_date) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, NOW())";
+        
+        try {
+            OperacionesEnLote.insertar(sql, nuevos, this::asignarInsercion);
+        } catch (SQLException e) {
+            Logger.error("Error al crear clientes en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        Date ahora = new Date(System.currentTimeMillis());
+        for (Cliente cliente : nuevos) {
+            cliente.setFechaCreacion(ahora);
+            cliente.setUltimaActualizacion(ahora);
+            inexistentes.registrar(cliente.getId());
+        }
+        clientes.guardarTodas(nuevos);
+        Logger.info("Clientes creados en lote: " + nuevos.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarClientes);
+        return true;
+    }
+    
+    /**
+     * Comprueba las columnas que escriben el INSERT y el UPDATE: store_id, first_name, last_name y address_id
+     */
+    private boolean columnasValidas(Cliente cliente) {
+        return cliente.getTienda() != null && cliente.getTienda().getId() > 0 &&
+               cliente.getPrimerNombre() != null && !cliente.getPrimerNombre().isEmpty() &&
+               cliente.getApellido() != null && !cliente.getApellido().isEmpty() &&
+               cliente.getDireccion() != null && cliente.getDireccion().getId() > 0;
+    }
+    
+    /**
+     * Asigna los parámetros del INSERT (compartido por post y postAll)
+     */
+    private void asignarInsercion(PreparedStatement stmt, Cliente cliente) throws SQLException {
+        stmt.setInt(1, cliente.getTienda().getId());
+        stmt.setString(2, cliente.getPrimerNombre());
+        stmt.setString(3, cliente.getApellido());
+        stmt.setString(4, cliente.getCorreoElectronico());
+        stmt.setInt(5, cliente.getDireccion().getId());
+        stmt.setBoolean(6, cliente.isActivo());
+    }
+    
     @Override
     public boolean put(Cliente cliente) {
         String sql = "UPDATE customer SET store_id = ?, first_name = ?, last_name = ?, email = ?, " +
                     "address_id = ?, active = ? " +
                     "WHERE customer_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
-            stmt.setInt(1, cliente.getTienda().getId());
-            stmt.setString(2, cliente.getPrimerNombre());
-            stmt.setString(3, cliente.getApellido());
-            stmt.setString(4, cliente.getCorreoElectronico());
-            stmt.setInt(5, cliente.getDireccion().getId());
-            stmt.setBoolean(6, cliente.isActivo());
-            stmt.setInt(7, cliente.getId());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
+            asignarActualizacion(stmt, cliente);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
                 cliente.actualizarFecha();
                 
-                // Actualizar en la lista local
-                for (int i = 0; i < clientes.size(); i++) {
-                    if (clientes.get(i).getId() == cliente.getId()) {
-                        clientes.set(i, cliente);
-                        break;
-                    }
-                }
+                // Actualizar en la caché local
+                clientes.guardar(cliente);
                 
                 Logger.info("Cliente actualizado con ID: " + cliente.getId());
+                ContextoBaseDatos.registrarEscritura(this, this::cargarClientes);
                 return true;
             }
         } catch (SQLException e) {
@@ -159,28 +286,69 @@ public class ClienteControlador implements iDatapost<Cliente> {
         return false;
     }
     
+    @Override
+    public boolean putAll(List<Cliente> modificados) {
+        if (!OperacionesEnLote.validar(modificados, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "UPDATE customer SET store_id = ?, first_name = ?, last_name = ?, email = ?, " +
+                    "address_id = ?, active = ? " +
+                    "WHERE customer_id = ?";
+        
+        List<Cliente> actualizados;
+        try {
+            actualizados = OperacionesEnLote.actualizar(sql, modificados, this::asignarActualizacion);
+        } catch (SQLException e) {
+            Logger.error("Error al actualizar clientes en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        for (Cliente cliente : actualizados) {
+            cliente.actualizarFecha();
+        }
+        clientes.guardarTodas(actualizados);
+        Logger.info("Clientes actualizados en lote: " + actualizados.size() + " de " + modificados.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarClientes);
+        return true;
+    }
+    
+    /**
+     * Asigna los parámetros del UPDATE (compartido por put y putAll)
+     */
+    private void asignarActualizacion(PreparedStatement stmt, Cliente cliente) throws SQLException {
+        stmt.setInt(1, cliente.getTienda().getId());
+        stmt.setString(2, cliente.getPrimerNombre());
+        stmt.setString(3, cliente.getApellido());
+        stmt.setString(4, cliente.getCorreoElectronico());
+        stmt.setInt(5, cliente.getDireccion().getId());
+        stmt.setBoolean(6, cliente.isActivo());
+        stmt.setInt(7, cliente.getId());
+    }
+    
     @Override
     public boolean delete(int id) {
         // En este caso, como la tabla customer tiene un campo 'active',
         // marcamos el cliente como inactivo en lugar de eliminarlo
         String sql = "UPDATE customer SET active = 0 WHERE customer_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
-                // Actualizar en la lista local
-                for (Cliente cliente : clientes) {
-                    if (cliente.getId() == id) {
-                        cliente.setActivo(false);
-                        cliente.actualizarFecha();
-                        break;
-                    }
+                // Actualizar en la caché local
+                Cliente cliente = clientes.obtener(id);
+                if (cliente != null) {
+                    cliente.setActivo(false);
+                    cliente.actualizarFecha();
                 }
                 
                 Logger.info("Cliente marcado como inactivo con ID: " + id);
+                ContextoBaseDatos.registrarEscritura(this, this::cargarClientes);
                 return true;
             }
         } catch (SQLException e) {
@@ -192,15 +360,48 @@ public class ClienteControlador implements iDatapost<Cliente> {
     }
     
     @Override
-    public Cliente get(int id) {
-        // Primero buscamos en la lista local
-        for (Cliente cliente : clientes) {
-            if (cliente.getId() == id) {
-                return cliente;
+    public boolean deleteAll(int... ids) {
+        if (!OperacionesEnLote.validarIds(ids)) {
+            return false;
+        }
+        
+        int filasAfectadas;
+        try {
+            filasAfectadas = OperacionesEnLote.porIds("UPDATE customer SET active = 0 WHERE customer_id IN ", ids);
+        } catch (SQLException e) {
+            Logger.error("Error al marcar clientes como inactivos en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        for (int id : ids) {
+            Cliente cliente = clientes.obtener(id);
+            if (cliente != null) {
+                cliente.setActivo(false);
+                cliente.actualizarFecha();
             }
         }
+        Logger.info("Clientes marcados como inactivos en lote: " + filasAfectadas);
+        ContextoBaseDatos.registrarEscritura(this, this::cargarClientes);
+        return true;
+    }
+    
+    @Override
+    public Cliente get(int id) {
+        // Primero buscamos en la caché local
+        Cliente enCache = clientes.obtener(id);
+        if (enCache != null) {
+            estadisticas.registrarAcierto();
+            return enCache;
+        }
+        estadisticas.registrarFallo();
+        
+        if (!inexistentes.puedeExistir(id)) {
+            return null;
+        }
         
         // Si no lo encontramos, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT c.customer_id, c.store_id, c.first_name, c.last_name, c.email, " +
                     "c.address_id, c.active, c.create_date, c.last_update, " +
                     "a.address " +
@@ -208,47 +409,20 @@ public class ClienteControlador implements iDatapost<Cliente> {
                     "JOIN address a ON c.address_id = a.address_id " +
                     "WHERE c.customer_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    int customerId = rs.getInt("customer_id");
-                    int storeId = rs.getInt("store_id");
-                    String firstName = rs.getString("first_name");
-                    String lastName = rs.getString("last_name");
-                    String email = rs.getString("email");
-                    int addressId = rs.getInt("address_id");
-                    String addressText = rs.getString("address");
-                    boolean active = rs.getBoolean("active");
-                    Timestamp createDate = rs.getTimestamp("create_date");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    // Creamos un Store simple (sin todos los detalles)
-                    Store store = new Store();
-                    store.setId(storeId);
+                    Cliente cliente = mapearCliente(rs);
                     
-                    // Creamos un Address simple (sin todos los detalles)
-                    Address address = new Address();
-                    address.setId(addressId);
-                    address.setAddress(addressText);
-                    
-                    Cliente cliente = new Cliente();
-                    cliente.setId(customerId);
-                    cliente.setTienda(store);
-                    cliente.setPrimerNombre(firstName);
-                    cliente.setApellido(lastName);
-                    cliente.setCorreoElectronico(email);
-                    cliente.setDireccion(address);
-                    cliente.setActivo(active);
-                    cliente.setFechaCreacion(createDate);
-                    cliente.setUltimaActualizacion(lastUpdate);
-                    
-                    // Añadir a la lista local
-                    clientes.add(cliente);
+                    // Añadir a la caché local
+                    clientes.guardar(cliente);
                     
                     return cliente;
                 }
+                inexistentes.anotarInexistente(id);
             }
         } catch (SQLException e) {
             Logger.error("Error al obtener cliente por ID: " + e.getMessage());
@@ -260,14 +434,11 @@ public class ClienteControlador implements iDatapost<Cliente> {
     
     @Override
     public List<Cliente> get() {
-        // Si la lista ya está cargada, la devolvemos
-        if (!clientes.isEmpty()) {
-            return new ArrayList<>(clientes);
+        // La caché solo guarda parte de la tabla: el listado completo se lee en flujo
+        estadisticas.registrarConsultaBD();
+        try (Stream<Cliente> todos = stream()) {
+            return todos.collect(Collectors.toList());
         }
-        
-        // Si no, cargamos los clientes y devolvemos la lista
-        cargarClientes();
-        return new ArrayList<>(clientes);
     }
     
     @Override
@@ -275,21 +446,8 @@ public class ClienteControlador implements iDatapost<Cliente> {
         List<Cliente> resultado = new ArrayList<>();
         String criterio = criterios[0].toLowerCase();
         
-        // Primero buscamos en la lista local
-        for (Cliente cliente : clientes) {
-            if (cliente.getPrimerNombre().toLowerCase().contains(criterio) || 
-                cliente.getApellido().toLowerCase().contains(criterio) || 
-                cliente.getCorreoElectronico().toLowerCase().contains(criterio)) {
-                resultado.add(cliente);
-            }
-        }
-        
-        // Si encontramos resultados, los devolvemos
-        if (!resultado.isEmpty()) {
-            return resultado;
-        }
-        
-        // Si no, buscamos en la base de datos
+        // La caché no tiene todos los clientes, así que la búsqueda va siempre a la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT c.customer_id, c.store_id, c.first_name, c.last_name, c.email, " +
                     "c.address_id, c.active, c.create_date, c.last_update, " +
                     "a.address " +
@@ -297,50 +455,20 @@ public class ClienteControlador implements iDatapost<Cliente> {
                     "JOIN address a ON c.address_id = a.address_id " +
                     "WHERE LOWER(c.first_name) LIKE ? OR LOWER(c.last_name) LIKE ? OR LOWER(c.email) LIKE ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setString(1, "%" + criterio + "%");
             stmt.setString(2, "%" + criterio + "%");
             stmt.setString(3, "%" + criterio + "%");
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int customerId = rs.getInt("customer_id");
-                    int storeId = rs.getInt("store_id");
-                    String firstName = rs.getString("first_name");
-                    String lastName = rs.getString("last_name");
-                    String email = rs.getString("email");
-                    int addressId = rs.getInt("address_id");
-                    String addressText = rs.getString("address");
-                    boolean active = rs.getBoolean("active");
-                    Timestamp createDate = rs.getTimestamp("create_date");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    // Creamos un Store simple (sin todos los detalles)
-                    Store store = new Store();
-                    store.setId(storeId);
-                    
-                    // Creamos un Address simple (sin todos los detalles)
-                    Address address = new Address();
-                    address.setId(addressId);
-                    address.setAddress(addressText);
-                    
-                    Cliente cliente = new Cliente();
-                    cliente.setId(customerId);
-                    cliente.setTienda(store);
-                    cliente.setPrimerNombre(firstName);
-                    cliente.setApellido(lastName);
-                    cliente.setCorreoElectronico(email);
-                    cliente.setDireccion(address);
-                    cliente.setActivo(active);
-                    cliente.setFechaCreacion(createDate);
-                    cliente.setUltimaActualizacion(lastUpdate);
+                    Cliente cliente = mapearCliente(rs);
                     
                     resultado.add(cliente);
                     
-                    // Añadir a la lista local si no existe
-                    if (clientes.stream().noneMatch(c -> c.getId() == cliente.getId())) {
-                        clientes.add(cliente);
-                    }
+                    // Añadir a la caché local si no existe
+                    clientes.guardarSiFalta(cliente);
                 }
             }
         } catch (SQLException e) {
@@ -351,12 +479,43 @@ public class ClienteControlador implements iDatapost<Cliente> {
         return resultado;
     }
     
+    @Override
+    public Stream<Cliente> stream() {
+        return FlujoFilas.abrir("SELECT c.customer_id, c.store_id, c.first_name, c.last_name, c.email, " +
+                                 "c.address_id, c.active, c.create_date, c.last_update, a.address " +
+                                 "FROM customer c JOIN address a ON c.address_id = a.address_id", this::mapearCliente);
+    }
+    
+    @Override
+    public Pagina<Cliente> page(int despuesDeId, int tamanio) {
+        try {
+            return leerPagina(despuesDeId, tamanio);
+        } catch (SQLException e) {
+            Logger.error("Error al obtener página de clientes: " + e.getMessage());
+            e.printStackTrace();
+            return Pagina.vacia();
+        }
+    }
+    
+    private Pagina<Cliente> leerPagina(int despuesDeId, int tamanio) throws SQLException {
+        String sql = "SELECT c.customer_id, c.store_id, c.first_name, c.last_name, c.email, " +
+                     "c.address_id, c.active, c.create_date, c.last_update, a.address " +
+                     "FROM customer c JOIN address a ON c.address_id = a.address_id " +
+                     "WHERE c.customer_id > ? ORDER BY c.customer_id LIMIT ?";
+        return Pagina.leer(sql, this::mapearCliente, Cliente::getId, despuesDeId, tamanio);
+    }
+    
     /**
      * Obtiene los alquileres de un cliente
      * @param idCliente ID del cliente
-     * @return Lista de alquileres
+     * @return Lista de alquileres (no modificable)
      */
     public List<Map<String, Object>> obtenerAlquileresDeCliente(int idCliente) {
+        List<Map<String, Object>> guardados = historiales.obtener(idCliente);
+        if (guardados != null) {
+            return guardados;
+        }
+        
         List<Map<String, Object>> alquileres = new ArrayList<>();
         
         String sql = "SELECT r.rental_id, r.rental_date, r.return_date, f.title, p.amount " +
@@ -367,7 +526,8 @@ public class ClienteControlador implements iDatapost<Cliente> {
                     "WHERE r.customer_id = ? " +
                     "ORDER BY r.rental_date DESC";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, idCliente);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -382,11 +542,34 @@ public class ClienteControlador implements iDatapost<Cliente> {
                     alquileres.add(alquiler);
                 }
             }
+            List<Map<String, Object>> historial = Collections.unmodifiableList(alquileres);
+            historiales.guardar(idCliente, historial);
+            return historial;
         } catch (SQLException e) {
             Logger.error("Error al obtener alquileres del cliente: " + e.getMessage());
             e.printStackTrace();
         }
         
+        return Collections.unmodifiableList(alquileres);
+    }
+    
+    /**
+     * Obtiene los alquileres de varios clientes lanzando las consultas en paralelo
+     * @param idsClientes IDs de los clientes
+     * @return Mapa de ID de cliente a su lista de alquileres
+     */
+    public Map<Integer, List<Map<String, Object>>> obtenerAlquileresDeClientes(List<Integer> idsClientes) {
+        IntObjectMap<CompletableFuture<List<Map<String, Object>>>> consultas = new IntObjectMap<>(idsClientes.size());
+        for (int idCliente : idsClientes) {
+            if (!consultas.containsKey(idCliente)) {
+                consultas.put(idCliente, EjecutorAsincrono.ejecutar(() -> obtenerAlquileresDeCliente(idCliente)));
+            }
+        }
+        
+        Map<Integer, List<Map<String, Object>>> alquileres = new LinkedHashMap<>();
+        for (int idCliente : idsClientes) {
+            alquileres.computeIfAbsent(idCliente, id -> consultas.get(id).join());
+        }
         return alquileres;
     }
     
@@ -400,7 +583,8 @@ public class ClienteControlador implements iDatapost<Cliente> {
         try {
             // Total de clientes
             String sqlTotal = "SELECT COUNT(*) AS total FROM customer";
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sqlTotal)) {
                 if (rs.next()) {
                     estadisticas.put("totalClientes", rs.getInt("total"));
@@ -409,7 +593,8 @@ public class ClienteControlador implements iDatapost<Cliente> {
             
             // Clientes activos vs inactivos
             String sqlActivos = "SELECT active, COUNT(*) AS total FROM customer GROUP BY active";
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sqlActivos)) {
                 while (rs.next()) {
                     boolean activo = rs.getBoolean("active");
@@ -426,7 +611,8 @@ public class ClienteControlador implements iDatapost<Cliente> {
             // Clientes por tienda
             String sqlTiendas = "SELECT store_id, COUNT(*) AS total FROM customer GROUP BY store_id";
             Map<Integer, Integer> clientesPorTienda = new HashMap<>();
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sqlTiendas)) {
                 while (rs.next()) {
                     int idTienda = rs.getInt("store_id");
@@ -444,6 +630,19 @@ public class ClienteControlador implements iDatapost<Cliente> {
         return estadisticas;
     }
     
+    /**
+     * Obtiene las estadísticas de uso de la caché de clientes
+     * @return Mapa con aciertos, fallos, consultas a la base de datos, cargas y entradas,
+     *         en "filtro" los IDs descartados sin consultar la base de datos y en "alquileres"
+     *         la caché blanda de historiales de alquiler
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        Map<String, Object> resultado = estadisticas.obtener();
+        resultado.put("filtro", inexistentes.obtenerEstadisticas());
+        resultado.put("alquileres", historiales.obtenerEstadisticas());
+        return resultado;
+    }
+    
     // Métodos de compatibilidad con el código existente
     
     /**
@@ -1,63 +1,111 @@
 package com.sakila.controllers;
 
-import com.sakila.data.iDatapost;
+import com.sakila.data.CacheEntidades;
+import com.sakila.data.ContextoBaseDatos;
+import com.sakila.data.EstadisticasCache;
+import com.sakila.data.EstimadorTamanio;
+import com.sakila.data.FlujoFilas;
+import com.sakila.data.InstantaneaCache;
+import com.sakila.data.OperacionesEnLote;
+import com.sakila.data.Pagina;
+import com.sakila.data.RefrescoIncremental;
+import com.sakila.data.RefrescoPeriodico;
+import com.sakila.data.iDatapostAsync;
 import com.sakila.models.Country;
 import com.sakila.utils.Logger;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
 
 /**
  * Controlador para manejar operaciones de Country en la base de datos
  * @author Nicolas Zierow Fermin
  */
-public class CountryControlador implements iDatapost<Country> {
-    private Connection conexion;
-    private List<Country> paises;
+public class CountryControlador implements iDatapostAsync<Country> {
+    private final CacheEntidades<Country> paises = new CacheEntidades<>("paises", EstimadorTamanio::pais);
+    private final RefrescoIncremental<Country> refresco = new RefrescoIncremental<>("country", "country_id",
+            "SELECT * FROM country WHERE last_update >= ?",
+            this::mapearCountry, paises, true);
+    private final InstantaneaCache<Country> instantanea = new InstantaneaCache<>(refresco, paises,
+            CountryControlador::escribirCountry, CountryControlador::leerCountry);
+    private final EstadisticasCache estadisticas = new EstadisticasCache("country", paises);
     
-    public CountryControlador(Connection conexion) {
-        this.conexion = conexion;
-        this.paises = new ArrayList<>();
-        cargarPaises();
+    public CountryControlador() {
+        long inicio = System.nanoTime();
+        if (instantanea.restaurar()) {
+            estadisticas.registrarCarga(inicio);
+        } else {
+            cargarPaises();
+        }
+        RefrescoPeriodico.registrar(refresco);
     }
     
     /**
      * Carga los países de la base de datos
      */
     private void cargarPaises() {
+        long inicio = System.nanoTime();
+        refresco.marcarCarga();
         try {
-            paises.clear();
+            List<Country> cargados = new ArrayList<>();
             String sql = "SELECT * FROM country";
             
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 
                 while (rs.next()) {
-                    Country country = new Country();
-                    country.setId(rs.getInt("country_id"));
-                    country.setCountry(rs.getString("country"));
-                    country.setUltimaActualizacion(rs.getTimestamp("last_update"));
-                    country.setFechaCreacion(rs.getTimestamp("last_update")); // No hay campo create_date en country
-                    country.setActivo(true); // No hay campo active en country
+                    Country country = mapearCountry(rs);
                     
-                    paises.add(country);
+                    cargados.add(country);
                 }
             }
             
-            Logger.info("Países cargados: " + paises.size());
+            paises.reemplazarTodo(cargados);
+            Logger.info("Países cargados: " + paises.tamanio());
+            estadisticas.registrarCarga(inicio);
         } catch (SQLException e) {
             Logger.error("Error al cargar países: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * Crea un país a partir de la fila actual
+     */
+    private Country mapearCountry(ResultSet rs) throws SQLException {
+        Country country = new Country();
+        country.setId(rs.getInt("country_id"));
+        country.setCountry(rs.getString("country"));
+        country.setUltimaActualizacion(rs.getTimestamp("last_update"));
+        country.setFechaCreacion(rs.getTimestamp("last_update")); // No hay campo create_date en country
+        country.setActivo(true); // No hay campo active en country
+        return country;
+    }
+    
+    private static void escribirCountry(Country country, InstantaneaCache.Escritor escritor) throws IOException {
+        escritor.escribirEntidad(country);
+        escritor.escribirTexto(country.getCountry());
+    }
+    
+    private static Country leerCountry(InstantaneaCache.Lector lector) {
+        Country country = lector.leerEntidad(new Country());
+        country.setCountry(lector.leerTexto());
+        return country;
+    }
+    
     @Override
     public boolean post(Country country) {
         String sql = "INSERT INTO country (country) VALUES (?)";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, country.getCountry());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            asignarInsercion(stmt, country);
             
             int filasAfectadas = stmt.executeUpdate();
             
@@ -66,10 +114,12 @@ public class CountryControlador implements iDatapost<Country> {
                     if (generatedKeys.next()) {
                         country.setId(generatedKeys.getInt(1));
                         country.setUltimaActualizacion(new Date(System.currentTimeMillis()));
-                        paises.add(country);
+                        paises.guardar(country);
                         Logger.info("País creado con ID: " + country.getId());
                     }
                 }
+                // Si la transacción en curso se revierte, la caché local se vuelve a cargar
+                ContextoBaseDatos.registrarEscritura(this, this::cargarPaises);
                 return true;
             }
         } catch (SQLException e) {
@@ -80,28 +130,64 @@ public class CountryControlador implements iDatapost<Country> {
         return false;
     }
     
+    @Override
+    public boolean postAll(List<Country> nuevos) {
+        if (!OperacionesEnLote.validar(nuevos, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "INSERT INTO country (country) VALUES (?)";
+        
+        try {
+            OperacionesEnLote.insertar(sql, nuevos, this::asignarInsercion);
+        } catch (SQLException e) {
+            Logger.error("Error al crear países en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        Date ahora = new Date(System.currentTimeMillis());
+        for (Country country : nuevos) {
+            country.setUltimaActualizacion(ahora);
+        }
+        paises.guardarTodas(nuevos);
+        Logger.info("Países creados en lote: " + nuevos.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarPaises);
+        return true;
+    }
+    
+    /**
+     * Comprueba las columnas que escriben el INSERT y el UPDATE: country
+     */
+    private boolean columnasValidas(Country country) {
+        return country.getCountry() != null && !country.getCountry().isEmpty();
+    }
+    
+    /**
+     * Asigna los parámetros del INSERT (compartido por post y postAll)
+     */
+    private void asignarInsercion(PreparedStatement stmt, Country country) throws SQLException {
+        stmt.setString(1, country.getCountry());
+    }
+    
     @Override
     public boolean put(Country country) {
         String sql = "UPDATE country SET country = ? WHERE country_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
-            stmt.setString(1, country.getCountry());
-            stmt.setInt(2, country.getId());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
+            asignarActualizacion(stmt, country);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
                 country.actualizarFecha();
                 
-                // Actualizar en la lista local
-                for (int i = 0; i < paises.size(); i++) {
-                    if (paises.get(i).getId() == country.getId()) {
-                        paises.set(i, country);
-                        break;
-                    }
-                }
+                // Actualizar en la caché local
+                paises.guardar(country);
                 
                 Logger.info("País actualizado con ID: " + country.getId());
+                ContextoBaseDatos.registrarEscritura(this, this::cargarPaises);
                 return true;
             }
         } catch (SQLException e) {
@@ -112,22 +198,58 @@ public class CountryControlador implements iDatapost<Country> {
         return false;
     }
     
+    @Override
+    public boolean putAll(List<Country> modificados) {
+        if (!OperacionesEnLote.validar(modificados, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "UPDATE country SET country = ? WHERE country_id = ?";
+        
+        List<Country> actualizados;
+        try {
+            actualizados = OperacionesEnLote.actualizar(sql, modificados, this::asignarActualizacion);
+        } catch (SQLException e) {
+            Logger.error("Error al actualizar países en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        for (Country country : actualizados) {
+            country.actualizarFecha();
+        }
+        paises.guardarTodas(actualizados);
+        Logger.info("Países actualizados en lote: " + actualizados.size() + " de " + modificados.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarPaises);
+        return true;
+    }
+    
+    /**
+     * Asigna los parámetros del UPDATE (compartido por put y putAll)
+     */
+    private void asignarActualizacion(PreparedStatement stmt, Country country) throws SQLException {
+        stmt.setString(1, country.getCountry());
+        stmt.setInt(2, country.getId());
+    }
+    
     @Override
     public boolean delete(int id) {
         // En este caso, como la tabla country no tiene un campo 'active',
         // realmente eliminamos el registro en lugar de marcarlo como inactivo
         String sql = "DELETE FROM country WHERE country_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
-                // Eliminar de la lista local
-                paises.removeIf(p -> p.getId() == id);
+                // Eliminar de la caché local
+                paises.quitar(id);
                 
                 Logger.info("País eliminado con ID: " + id);
+                ContextoBaseDatos.registrarEscritura(this, this::cargarPaises);
                 return true;
             }
         } catch (SQLException e) {
@@ -138,32 +260,69 @@ public class CountryControlador implements iDatapost<Country> {
         return false;
     }
     
+    @Override
+    public boolean deleteAll(int... ids) {
+        if (!OperacionesEnLote.validarIds(ids)) {
+            return false;
+        }
+        
+        int filasAfectadas;
+        try {
+            filasAfectadas = OperacionesEnLote.porIds("DELETE FROM country WHERE country_id IN ", ids);
+        } catch (SQLException e) {
+            Logger.error("Error al eliminar países en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        paises.quitarTodas(ids);
+        Logger.info("Países eliminados en lote: " + filasAfectadas);
+        ContextoBaseDatos.registrarEscritura(this, this::cargarPaises);
+        return true;
+    }
+    
+    /**
+     * Instancia compartida de un país para las entidades que lo referencian (ciudades).
+     * Lee solo la caché: no consulta la base de datos ni cuenta en las estadísticas.
+     * Si el país no está (alta posterior a la carga) se crea una vez, se guarda en la caché
+     * y se comparte desde entonces
+     * @param id ID del país
+     * @param crear Crea el país con los datos que ya tiene quien lo pide
+     * @return País de la caché
+     */
+    public Country obtenerCompartido(int id, IntFunction<Country> crear) {
+        Country enCache = paises.obtener(id);
+        if (enCache != null) {
+            return enCache;
+        }
+        paises.guardarSiFalta(crear.apply(id));
+        return paises.obtener(id);
+    }
+    
     @Override
     public Country get(int id) {
-        // Primero buscamos en la lista local
-        for (Country country : paises) {
-            if (country.getId() == id) {
-                return country;
-            }
+        // Primero buscamos en la caché local
+        Country enCache = paises.obtener(id);
+        if (enCache != null) {
+            estadisticas.registrarAcierto();
+            return enCache;
         }
+        estadisticas.registrarFallo();
         
         // Si no lo encontramos, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT * FROM country WHERE country_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    Country country = new Country();
-                    country.setId(rs.getInt("country_id"));
-                    country.setCountry(rs.getString("country"));
-                    country.setUltimaActualizacion(rs.getTimestamp("last_update"));
-                    country.setFechaCreacion(rs.getTimestamp("last_update")); // No hay campo create_date en country
-                    country.setActivo(true); // No hay campo active en country
+                    Country country = mapearCountry(rs);
                     
-                    // Añadir a la lista local
-                    paises.add(country);
+                    // Añadir a la caché local
+                    paises.guardar(country);
                     
                     return country;
                 }
@@ -179,13 +338,16 @@ public class CountryControlador implements iDatapost<Country> {
     @Override
     public List<Country> get() {
         // Si la lista ya está cargada, la devolvemos
-        if (!paises.isEmpty()) {
-            return new ArrayList<>(paises);
+        if (!paises.estaVacia()) {
+            estadisticas.registrarAcierto();
+            return paises.valores();
         }
+        estadisticas.registrarFallo();
+        estadisticas.registrarConsultaBD();
         
         // Si no, cargamos los países y devolvemos la lista
         cargarPaises();
-        return new ArrayList<>(paises);
+        return paises.valores();
     }
     
     @Override
@@ -193,8 +355,8 @@ public class CountryControlador implements iDatapost<Country> {
         List<Country> resultado = new ArrayList<>();
         String criterio = criterios[0].toLowerCase();
         
-        // Primero buscamos en la lista local
-        for (Country country : paises) {
+        // Primero buscamos en la caché local
+        for (Country country : paises.valores()) {
             if (country.getCountry().toLowerCase().contains(criterio)) {
                 resultado.add(country);
             }
@@ -202,30 +364,27 @@ public class CountryControlador implements iDatapost<Country> {
         
         // Si encontramos resultados, los devolvemos
         if (!resultado.isEmpty()) {
+            estadisticas.registrarAcierto();
             return resultado;
         }
+        estadisticas.registrarFallo();
         
         // Si no, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT * FROM country WHERE LOWER(country) LIKE ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setString(1, "%" + criterio + "%");
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    Country country = new Country();
-                    country.setId(rs.getInt("country_id"));
-                    country.setCountry(rs.getString("country"));
-                    country.setUltimaActualizacion(rs.getTimestamp("last_update"));
-                    country.setFechaCreacion(rs.getTimestamp("last_update")); // No hay campo create_date en country
-                    country.setActivo(true); // No hay campo active en country
+                    Country country = mapearCountry(rs);
                     
                     resultado.add(country);
                     
-                    // Añadir a la lista local si no existe
-                    if (paises.stream().noneMatch(p -> p.getId() == country.getId())) {
-                        paises.add(country);
-                    }
+                    // Añadir a la caché local si no existe
+                    paises.guardarSiFalta(country);
                 }
             }
         } catch (SQLException e) {
@@ -235,4 +394,33 @@ public class CountryControlador implements iDatapost<Country> {
         
         return resultado;
     }
+    
+    @Override
+    public Stream<Country> stream() {
+        return FlujoFilas.abrir("SELECT * FROM country", this::mapearCountry);
+    }
+    
+    @Override
+    public Pagina<Country> page(int despuesDeId, int tamanio) {
+        try {
+            return leerPagina(despuesDeId, tamanio);
+        } catch (SQLException e) {
+            Logger.error("Error al obtener página de países: " + e.getMessage());
+            e.printStackTrace();
+            return Pagina.vacia();
+        }
+    }
+    
+    private Pagina<Country> leerPagina(int despuesDeId, int tamanio) throws SQLException {
+        String sql = "SELECT * FROM country WHERE country_id > ? ORDER BY country_id LIMIT ?";
+        return Pagina.leer(sql, this::mapearCountry, Country::getId, despuesDeId, tamanio);
+    }
+    
+    /**
+     * Obtiene las estadísticas de uso de la caché de países
+     * @return Mapa con aciertos, fallos, consultas a la base de datos, cargas y entradas
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        return estadisticas.obtener();
+    }
 }
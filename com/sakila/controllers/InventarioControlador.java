@@ -1,83 +1,178 @@
 package com.sakila.controllers;
 
-import com.sakila.data.iDatapost;
+import com.sakila.data.CacheAcotada;
+import com.sakila.data.ContextoBaseDatos;
+import com.sakila.data.EstimadorTamanio;
+import com.sakila.data.EstadisticasCache;
+import com.sakila.data.FlujoFilas;
+import com.sakila.data.InstantaneaCache;
+import com.sakila.data.OperacionesEnLote;
+import com.sakila.data.Pagina;
+import com.sakila.data.RefrescoIncremental;
+import com.sakila.data.RefrescoPeriodico;
+import com.sakila.data.iCacheEntidades;
+import com.sakila.data.iDatapostAsync;
 import com.sakila.models.Inventario;
 import com.sakila.models.Pelicula;
+import com.sakila.models.Referencia;
 import com.sakila.models.Store;
+import com.sakila.utils.IntObjectMap;
+import com.sakila.utils.IntSet;
 import com.sakila.utils.Logger;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Controlador para manejar operaciones de Inventario en la base de datos
  * @author Nicolas Zierow Fermin
  */
-public class InventarioControlador implements iDatapost<Inventario> {
-    private Connection conexion;
-    private List<Inventario> inventarios;
-    private PeliculaControlador peliculaControlador;
-    
-    public InventarioControlador(Connection conexion) {
-        this.conexion = conexion;
-        this.inventarios = new ArrayList<>();
-        this.peliculaControlador = new PeliculaControlador(conexion);
-        cargarInventarios();
+public class InventarioControlador implements iDatapostAsync<Inventario> {
+    private static final int TAMANIO_LOTE_CARGA = 500;
+    private static final int MAXIMO_CACHE_POR_DEFECTO = 20000;
+    
+    // Acotada (cache.inventario.max o cache.inventario.bytes): la tabla puede ser mucho mayor que la memoria disponible
+    private final iCacheEntidades<Inventario> inventarios =
+            CacheAcotada.desdeConfiguracion("inventario", MAXIMO_CACHE_POR_DEFECTO, EstimadorTamanio::inventario);
+    private final RefrescoIncremental<Inventario> refresco = new RefrescoIncremental<>("inventory", "inventory_id",
+            "SELECT i.inventory_id, i.film_id, i.store_id, i.last_update " +
+            "FROM inventory i WHERE i.last_update >= ?",
+            this::mapearInventario, inventarios, false);
+    private final PeliculaControlador peliculaControlador;
+    private final IntObjectMap<Store> tiendas = new IntObjectMap<>();
+    private final InstantaneaCache<Inventario> instantanea = new InstantaneaCache<>(refresco, inventarios,
+            InventarioControlador::escribirInventario, this::leerInventario);
+    private final EstadisticasCache estadisticas = new EstadisticasCache("inventory", inventarios);
+    
+    /**
+     * Constructor
+     * @param peliculaControlador Controlador de películas compartido, del que salen las películas del inventario
+     */
+    public InventarioControlador(PeliculaControlador peliculaControlador) {
+        this.peliculaControlador = peliculaControlador;
+        long inicio = System.nanoTime();
+        if (instantanea.restaurar()) {
+            estadisticas.registrarCarga(inicio);
+        } else {
+            cargarInventarios();
+        }
+        RefrescoPeriodico.registrar(refresco);
     }
     
     /**
      * Carga los inventarios de la base de datos
      */
     private void cargarInventarios() {
+        long inicio = System.nanoTime();
+        refresco.marcarCarga();
         try {
-            inventarios.clear();
-            String sql = "SELECT i.inventory_id, i.film_id, i.store_id, i.last_update " +
-                        "FROM inventory i " +
-                        "LIMIT 100"; // Limitamos para no cargar demasiados registros
-            
-            try (Statement stmt = conexion.createStatement();
-                 ResultSet rs = stmt.executeQuery(sql)) {
-                
-                while (rs.next()) {
-                    int inventoryId = rs.getInt("inventory_id");
-                    int filmId = rs.getInt("film_id");
-                    int storeId = rs.getInt("store_id");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    // Obtenemos la película
-                    Pelicula pelicula = peliculaControlador.get(filmId);
-                    
-                    // Creamos un Store simple (sin todos los detalles)
-                    Store store = new Store();
-                    store.setId(storeId);
-                    
-                    Inventario inventario = new Inventario();
-                    inventario.setId(inventoryId);
-                    inventario.setPelicula(pelicula);
-                    inventario.setTienda(store);
-                    inventario.setUltimaActualizacion(lastUpdate);
-                    inventario.setFechaCreacion(lastUpdate); // No hay campo create_date en inventory
-                    inventario.setActivo(true); // No hay campo active en inventory
-                    
-                    inventarios.add(inventario);
-                }
+            // Se precarga por páginas de clave, sin OFFSET, solo hasta llenar la caché;
+            // el resto de filas entra bajo demanda desde get(int)
+            Pagina<Inventario> pagina = leerPagina(0, TAMANIO_LOTE_CARGA);
+            inventarios.reemplazarTodo(pagina.getElementos());
+            while (pagina.hayMas() && !inventarios.estaLlena()) {
+                pagina = leerPagina(pagina.getSiguiente(), TAMANIO_LOTE_CARGA);
+                inventarios.guardarTodas(pagina.getElementos());
             }
-            
-            Logger.info("Inventarios cargados: " + inventarios.size());
+            Logger.info("Inventarios cargados: " + inventarios.tamanio());
+            estadisticas.registrarCarga(inicio);
         } catch (SQLException e) {
             Logger.error("Error al cargar inventarios: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * Crea un inventario a partir de la fila actual; la película sale de PeliculaControlador
+     */
+    private Inventario mapearInventario(ResultSet rs) throws SQLException {
+        int inventoryId = rs.getInt("inventory_id");
+        int filmId = rs.getInt("film_id");
+        int storeId = rs.getInt("store_id");
+        Timestamp lastUpdate = rs.getTimestamp("last_update");
+        
+        // Película y tienda se resuelven al usarlas, no al cargar la fila
+        Inventario inventario = new Inventario();
+        inventario.setId(inventoryId);
+        inventario.setReferenciaPelicula(Referencia.perezosa(filmId, peliculaControlador::get));
+        inventario.setReferenciaTienda(Referencia.perezosa(storeId, this::obtenerTienda));
+        inventario.setUltimaActualizacion(lastUpdate);
+        inventario.setFechaCreacion(lastUpdate); // No hay campo create_date en inventory
+        inventario.setActivo(true); // No hay campo active en inventory
+        return inventario;
+    }
+    
+    private static void escribirInventario(Inventario inventario, InstantaneaCache.Escritor escritor) throws IOException {
+        escritor.escribirEntidad(inventario);
+        escritor.escribirInt(inventario.getIdPelicula());
+        escritor.escribirInt(inventario.getIdTienda());
+    }
+    
+    /**
+     * Lee un inventario de la instantánea, con las mismas referencias perezosas que mapearInventario
+     */
+    private Inventario leerInventario(InstantaneaCache.Lector lector) {
+        Inventario inventario = lector.leerEntidad(new Inventario());
+        inventario.setReferenciaPelicula(Referencia.perezosa(lector.leerInt(), peliculaControlador::get));
+        inventario.setReferenciaTienda(Referencia.perezosa(lector.leerInt(), this::obtenerTienda));
+        return inventario;
+    }
+    
+    /**
+     * Tienda simple (solo el ID) compartida por todos los inventarios de esa tienda
+     */
+    private Store obtenerTienda(int idTienda) {
+        synchronized (tiendas) {
+            Store tienda = tiendas.get(idTienda);
+            if (tienda == null) {
+                tienda = new Store();
+                tienda.setId(idTienda);
+                tiendas.put(idTienda, tienda);
+            }
+            return tienda;
+        }
+    }
+    
+    /**
+     * Resuelve de una vez las películas de varios inventarios, con una sola consulta
+     * para las que no están en la caché de películas
+     * @param lista Inventarios cuyas películas se van a usar
+     * @return La misma lista
+     */
+    private List<Inventario> resolverPeliculas(List<Inventario> lista) {
+        IntSet pendientes = new IntSet();
+        for (Inventario inventario : lista) {
+            Referencia<Pelicula> referencia = inventario.getReferenciaPelicula();
+            if (referencia != null && !referencia.estaResuelta()) {
+                pendientes.add(referencia.getId());
+            }
+        }
+        if (pendientes.isEmpty()) {
+            return lista;
+        }
+        
+        IntObjectMap<Pelicula> resueltas = peliculaControlador.obtenerPorIds(pendientes.toArray());
+        for (Inventario inventario : lista) {
+            Referencia<Pelicula> referencia = inventario.getReferenciaPelicula();
+            if (referencia != null && !referencia.estaResuelta()) {
+                referencia.resolver(resueltas.get(referencia.getId()));
+            }
+        }
+        return lista;
+    }
+    
     @Override
     public boolean post(Inventario inventario) {
         String sql = "INSERT INTO inventory (film_id, store_id) VALUES (?, ?)";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setInt(1, inventario.getPelicula().getId());
-            stmt.setInt(2, inventario.getTienda().getId());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            asignarInsercion(stmt, inventario);
             
             int filasAfectadas = stmt.executeUpdate();
             
@@ -86,10 +181,12 @@ public class InventarioControlador implements iDatapost<Inventario> {
                     if (generatedKeys.next()) {
                         inventario.setId(generatedKeys.getInt(1));
                         inventario.setUltimaActualizacion(new Date(System.currentTimeMillis()));
-                        inventarios.add(inventario);
+                        inventarios.guardar(inventario);
                         Logger.info("Inventario creado con ID: " + inventario.getId());
                     }
                 }
+                // Si la transacción en curso se revierte, la caché local se vuelve a cargar
+                ContextoBaseDatos.registrarEscritura(this, this::cargarInventarios);
                 return true;
             }
         } catch (SQLException e) {
@@ -100,29 +197,66 @@ public class InventarioControlador implements iDatapost<Inventario> {
         return false;
     }
     
+    @Override
+    public boolean postAll(List<Inventario> nuevos) {
+        if (!OperacionesEnLote.validar(nuevos, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "INSERT INTO inventory (film_id, store_id) VALUES (?, ?)";
+        
+        try {
+            OperacionesEnLote.insertar(sql, nuevos, this::asignarInsercion);
+        } catch (SQLException e) {
+            Logger.error("Error al crear inventarios en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        Date ahora = new Date(System.currentTimeMillis());
+        for (Inventario inventario : nuevos) {
+            inventario.setUltimaActualizacion(ahora);
+        }
+        inventarios.guardarTodas(nuevos);
+        Logger.info("Inventarios creados en lote: " + nuevos.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarInventarios);
+        return true;
+    }
+    
+    /**
+     * Comprueba las columnas que escriben el INSERT y el UPDATE: film_id y store_id
+     */
+    private boolean columnasValidas(Inventario inventario) {
+        // Solo los IDs: no resuelve la película perezosa ni pide la tienda completa
+        return inventario.getIdPelicula() > 0 && inventario.getIdTienda() > 0;
+    }
+    
+    /**
+     * Asigna los parámetros del INSERT (compartido por post y postAll)
+     */
+    private void asignarInsercion(PreparedStatement stmt, Inventario inventario) throws SQLException {
+        stmt.setInt(1, inventario.getIdPelicula());
+        stmt.setInt(2, inventario.getIdTienda());
+    }
+    
     @Override
     public boolean put(Inventario inventario) {
         String sql = "UPDATE inventory SET film_id = ?, store_id = ? WHERE inventory_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
-            stmt.setInt(1, inventario.getPelicula().getId());
-            stmt.setInt(2, inventario.getTienda().getId());
-            stmt.setInt(3, inventario.getId());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
+            asignarActualizacion(stmt, inventario);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
                 inventario.actualizarFecha();
                 
-                // Actualizar en la lista local
-                for (int i = 0; i < inventarios.size(); i++) {
-                    if (inventarios.get(i).getId() == inventario.getId()) {
-                        inventarios.set(i, inventario);
-                        break;
-                    }
-                }
+                // Actualizar en la caché local
+                inventarios.guardar(inventario);
                 
                 Logger.info("Inventario actualizado con ID: " + inventario.getId());
+                ContextoBaseDatos.registrarEscritura(this, this::cargarInventarios);
                 return true;
             }
         } catch (SQLException e) {
@@ -133,22 +267,59 @@ public class InventarioControlador implements iDatapost<Inventario> {
         return false;
     }
     
+    @Override
+    public boolean putAll(List<Inventario> modificados) {
+        if (!OperacionesEnLote.validar(modificados, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "UPDATE inventory SET film_id = ?, store_id = ? WHERE inventory_id = ?";
+        
+        List<Inventario> actualizados;
+        try {
+            actualizados = OperacionesEnLote.actualizar(sql, modificados, this::asignarActualizacion);
+        } catch (SQLException e) {
+            Logger.error("Error al actualizar inventarios en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        for (Inventario inventario : actualizados) {
+            inventario.actualizarFecha();
+        }
+        inventarios.guardarTodas(actualizados);
+        Logger.info("Inventarios actualizados en lote: " + actualizados.size() + " de " + modificados.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarInventarios);
+        return true;
+    }
+    
+    /**
+     * Asigna los parámetros del UPDATE (compartido por put y putAll)
+     */
+    private void asignarActualizacion(PreparedStatement stmt, Inventario inventario) throws SQLException {
+        stmt.setInt(1, inventario.getIdPelicula());
+        stmt.setInt(2, inventario.getIdTienda());
+        stmt.setInt(3, inventario.getId());
+    }
+    
     @Override
     public boolean delete(int id) {
         // En este caso, como la tabla inventory no tiene un campo 'active',
         // realmente eliminamos el registro en lugar de marcarlo como inactivo
         String sql = "DELETE FROM inventory WHERE inventory_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
-                // Eliminar de la lista local
-                inventarios.removeIf(i -> i.getId() == id);
+                // Eliminar de la caché local
+                inventarios.quitar(id);
                 
                 Logger.info("Inventario eliminado con ID: " + id);
+                ContextoBaseDatos.registrarEscritura(this, this::cargarInventarios);
                 return true;
             }
         } catch (SQLException e) {
@@ -159,47 +330,53 @@ public class InventarioControlador implements iDatapost<Inventario> {
         return false;
     }
     
+    @Override
+    public boolean deleteAll(int... ids) {
+        if (!OperacionesEnLote.validarIds(ids)) {
+            return false;
+        }
+        
+        int filasAfectadas;
+        try {
+            filasAfectadas = OperacionesEnLote.porIds("DELETE FROM inventory WHERE inventory_id IN ", ids);
+        } catch (SQLException e) {
+            Logger.error("Error al eliminar inventarios en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        inventarios.quitarTodas(ids);
+        Logger.info("Inventarios eliminados en lote: " + filasAfectadas);
+        ContextoBaseDatos.registrarEscritura(this, this::cargarInventarios);
+        return true;
+    }
+    
     @Override
     public Inventario get(int id) {
-        // Primero buscamos en la lista local
-        for (Inventario inventario : inventarios) {
-            if (inventario.getId() == id) {
-                return inventario;
-            }
+        // Primero buscamos en la caché local
+        Inventario enCache = inventarios.obtener(id);
+        if (enCache != null) {
+            estadisticas.registrarAcierto();
+            return enCache;
         }
+        estadisticas.registrarFallo();
         
         // Si no lo encontramos, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT i.inventory_id, i.film_id, i.store_id, i.last_update " +
                     "FROM inventory i " +
                     "WHERE i.inventory_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    int inventoryId = rs.getInt("inventory_id");
-                    int filmId = rs.getInt("film_id");
-                    int storeId = rs.getInt("store_id");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
+                    Inventario inventario = mapearInventario(rs);
                     
-                    // Obtenemos la película
-                    Pelicula pelicula = peliculaControlador.get(filmId);
-                    
-                    // Creamos un Store simple (sin todos los detalles)
-                    Store store = new Store();
-                    store.setId(storeId);
-                    
-                    Inventario inventario = new Inventario();
-                    inventario.setId(inventoryId);
-                    inventario.setPelicula(pelicula);
-                    inventario.setTienda(store);
-                    inventario.setUltimaActualizacion(lastUpdate);
-                    inventario.setFechaCreacion(lastUpdate); // No hay campo create_date en inventory
-                    inventario.setActivo(true); // No hay campo active en inventory
-                    
-                    // Añadir a la lista local
-                    inventarios.add(inventario);
+                    // Añadir a la caché local
+                    inventarios.guardar(inventario);
                     
                     return inventario;
                 }
@@ -214,14 +391,11 @@ public class InventarioControlador implements iDatapost<Inventario> {
     
     @Override
     public List<Inventario> get() {
-        // Si la lista ya está cargada, la devolvemos
-        if (!inventarios.isEmpty()) {
-            return new ArrayList<>(inventarios);
+        // La caché solo guarda parte de la tabla: el listado completo se lee en flujo
+        estadisticas.registrarConsultaBD();
+        try (Stream<Inventario> todos = stream()) {
+            return resolverPeliculas(todos.collect(Collectors.toList()));
         }
-        
-        // Si no, cargamos los inventarios y devolvemos la lista
-        cargarInventarios();
-        return new ArrayList<>(inventarios);
     }
     
     @Override
@@ -230,42 +404,24 @@ public class InventarioControlador implements iDatapost<Inventario> {
         String criterio = criterios[0].toLowerCase();
         
         // Buscamos en la base de datos por título de película
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT i.inventory_id, i.film_id, i.store_id, i.last_update " +
                     "FROM inventory i " +
                     "JOIN film f ON i.film_id = f.film_id " +
                     "WHERE LOWER(f.title) LIKE ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setString(1, "%" + criterio + "%");
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int inventoryId = rs.getInt("inventory_id");
-                    int filmId = rs.getInt("film_id");
-                    int storeId = rs.getInt("store_id");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    // Obtenemos la película
-                    Pelicula pelicula = peliculaControlador.get(filmId);
-                    
-                    // Creamos un Store simple (sin todos los detalles)
-                    Store store = new Store();
-                    store.setId(storeId);
-                    
-                    Inventario inventario = new Inventario();
-                    inventario.setId(inventoryId);
-                    inventario.setPelicula(pelicula);
-                    inventario.setTienda(store);
-                    inventario.setUltimaActualizacion(lastUpdate);
-                    inventario.setFechaCreacion(lastUpdate); // No hay campo create_date en inventory
-                    inventario.setActivo(true); // No hay campo active en inventory
+                    Inventario inventario = mapearInventario(rs);
                     
                     resultado.add(inventario);
                     
-                    // Añadir a la lista local si no existe
-                    if (inventarios.stream().noneMatch(i -> i.getId() == inventario.getId())) {
-                        inventarios.add(inventario);
-                    }
+                    // Añadir a la caché local si no existe
+                    inventarios.guardarSiFalta(inventario);
                 }
             }
         } catch (SQLException e) {
@@ -273,7 +429,32 @@ public class InventarioControlador implements iDatapost<Inventario> {
             e.printStackTrace();
         }
         
-        return resultado;
+        return resolverPeliculas(resultado);
+    }
+    
+    @Override
+    public Stream<Inventario> stream() {
+        return FlujoFilas.abrir("SELECT i.inventory_id, i.film_id, i.store_id, i.last_update FROM inventory i", this::mapearInventario);
+    }
+    
+    @Override
+    public Pagina<Inventario> page(int despuesDeId, int tamanio) {
+        try {
+            Pagina<Inventario> pagina = leerPagina(despuesDeId, tamanio);
+            resolverPeliculas(pagina.getElementos());
+            return pagina;
+        } catch (SQLException e) {
+            Logger.error("Error al obtener página de inventarios: " + e.getMessage());
+            e.printStackTrace();
+            return Pagina.vacia();
+        }
+    }
+    
+    private Pagina<Inventario> leerPagina(int despuesDeId, int tamanio) throws SQLException {
+        String sql = "SELECT i.inventory_id, i.film_id, i.store_id, i.last_update " +
+                     "FROM inventory i " +
+                     "WHERE i.inventory_id > ? ORDER BY i.inventory_id LIMIT ?";
+        return Pagina.leer(sql, this::mapearInventario, Inventario::getId, despuesDeId, tamanio);
     }
     
     /**
@@ -284,7 +465,8 @@ public class InventarioControlador implements iDatapost<Inventario> {
     public int obtenerTotalPeliculasPorTienda(int idTienda) {
         String sql = "SELECT COUNT(*) AS total FROM inventory WHERE store_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, idTienda);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -300,6 +482,14 @@ public class InventarioControlador implements iDatapost<Inventario> {
         return 0;
     }
     
+    /**
+     * Obtiene las estadísticas de uso de la caché de inventario
+     * @return Mapa con aciertos, fallos, consultas a la base de datos, cargas y entradas
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        return estadisticas.obtener();
+    }
+    
     // Métodos de compatibilidad con el código existente
     
     /**
@@ -1,122 +1,206 @@
 package com.sakila.controllers;
 
-import com.sakila.data.iDatapost;
+import com.sakila.data.CacheEntidades;
+import com.sakila.data.CatalogoCanonico;
+import com.sakila.data.ContextoBaseDatos;
+import com.sakila.data.FiltroInexistentes;
+import com.sakila.data.EstadisticasCache;
+import com.sakila.data.EstimadorTamanio;
+import com.sakila.data.FlujoFilas;
+import com.sakila.data.InstantaneaCache;
+import com.sakila.data.OperacionesEnLote;
+import com.sakila.data.Pagina;
+import com.sakila.data.RefrescoIncremental;
+import com.sakila.data.RefrescoPeriodico;
+import com.sakila.data.iDatapostAsync;
 import com.sakila.models.Pelicula;
 import com.sakila.models.Language;
+import com.sakila.utils.IntObjectMap;
+import com.sakila.utils.IntSet;
 import com.sakila.utils.Logger;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Controlador para manejar operaciones de Película en la base de datos
  * @author Nicolas Zierow Fermin
  */
-public class PeliculaControlador implements iDatapost<Pelicula> {
-    private Connection conexion;
-    private List<Pelicula> peliculas;
+public class PeliculaControlador implements iDatapostAsync<Pelicula> {
+    private final CacheEntidades<Pelicula> peliculas = new CacheEntidades<>("peliculas", EstimadorTamanio::pelicula);
+    // Pocos idiomas para muchas películas: todas comparten la misma instancia de cada idioma
+    private final CatalogoCanonico<Language> idiomas = new CatalogoCanonico<>("language", PeliculaControlador::mapearIdioma);
+    private final FiltroInexistentes inexistentes = new FiltroInexistentes("film", "film_id");
+    private final RefrescoIncremental<Pelicula> refresco = new RefrescoIncremental<>("film", "film_id",
+            "SELECT f.*, l.name as language_name, ol.name as original_language_name " +
+            "FROM film f " +
+            "JOIN language l ON f.language_id = l.language_id " +
+            "LEFT JOIN language ol ON f.original_language_id = ol.language_id " +
+            "WHERE f.last_update >= ?",
+            this::mapearPelicula, peliculas, true, inexistentes);
+    private final InstantaneaCache<Pelicula> instantanea = new InstantaneaCache<>(refresco, peliculas,
+            PeliculaControlador::escribirPelicula, this::leerPelicula);
+    private final EstadisticasCache estadisticas = new EstadisticasCache("film", peliculas);
     
-    public PeliculaControlador(Connection conexion) {
-        this.conexion = conexion;
-        this.peliculas = new ArrayList<>();
-        cargarPeliculas();
+    public PeliculaControlador() {
+        idiomas.cargar();
+        long inicio = System.nanoTime();
+        if (instantanea.restaurar()) {
+            estadisticas.registrarCarga(inicio);
+        } else {
+            cargarPeliculas();
+        }
+        inexistentes.cargar();
+        RefrescoPeriodico.registrar(refresco);
     }
     
     /**
      * Carga las películas de la base de datos
      */
     private void cargarPeliculas() {
+        long inicio = System.nanoTime();
+        refresco.marcarCarga();
         try {
-            peliculas.clear();
+            List<Pelicula> cargados = new ArrayList<>();
             String sql = "SELECT f.*, l.name as language_name, ol.name as original_language_name " +
                         "FROM film f " +
                         "JOIN language l ON f.language_id = l.language_id " +
                         "LEFT JOIN language ol ON f.original_language_id = ol.language_id";
             
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sql)) {
                 
                 while (rs.next()) {
-                    int filmId = rs.getInt("film_id");
-                    String title = rs.getString("title");
-                    String description = rs.getString("description");
-                    int releaseYear = rs.getInt("release_year");
-                    int languageId = rs.getInt("language_id");
-                    String languageName = rs.getString("language_name");
-                    int originalLanguageId = rs.getInt("original_language_id");
-                    String originalLanguageName = rs.getString("original_language_name");
-                    int rentalDuration = rs.getInt("rental_duration");
-                    double rentalRate = rs.getDouble("rental_rate");
-                    int length = rs.getInt("length");
-                    double replacementCost = rs.getDouble("replacement_cost");
-                    String rating = rs.getString("rating");
-                    String specialFeatures = rs.getString("special_features");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    Language language = new Language(languageId, languageName);
-                    language.setUltimaActualizacion(lastUpdate);
-                    
-                    Language originalLanguage = null;
-                    if (originalLanguageId > 0) {
-                        originalLanguage = new Language(originalLanguageId, originalLanguageName);
-                        originalLanguage.setUltimaActualizacion(lastUpdate);
-                    }
+                    Pelicula pelicula = mapearPelicula(rs);
                     
-                    Pelicula pelicula = new Pelicula();
-                    pelicula.setId(filmId);
-                    pelicula.setTitulo(title);
-                    pelicula.setDescripcion(description);
-                    pelicula.setAnioLanzamiento(releaseYear);
-                    pelicula.setIdioma(language);
-                    pelicula.setIdiomaOriginal(originalLanguage);
-                    pelicula.setDuracionRenta(rentalDuration);
-                    pelicula.setTarifaRenta(rentalRate);
-                    pelicula.setDuracion(length);
-                    pelicula.setCostoReemplazo(replacementCost);
-                    pelicula.setClasificacion(rating);
-                    pelicula.setCaracteristicasEspeciales(specialFeatures);
-                    pelicula.setUltimaActualizacion(lastUpdate);
-                    pelicula.setFechaCreacion(lastUpdate); // No hay campo create_date en film
-                    pelicula.setActivo(true); // No hay campo active en film
-                    
-                    peliculas.add(pelicula);
+                    cargados.add(pelicula);
                 }
             }
             
-            Logger.info("Películas cargadas: " + peliculas.size());
+            peliculas.reemplazarTodo(cargados);
+            Logger.info("Películas cargadas: " + peliculas.tamanio());
+            estadisticas.registrarCarga(inicio);
         } catch (SQLException e) {
             Logger.error("Error al cargar películas: " + e.getMessage());
             e.printStackTrace();
         }
     }
     
+    /**
+     * Crea un idioma a partir de la fila actual de la tabla language
+     */
+    private static Language mapearIdioma(ResultSet rs) throws SQLException {
+        Language language = new Language(rs.getInt("language_id"), rs.getString("name"));
+        language.setUltimaActualizacion(rs.getTimestamp("last_update"));
+        return language;
+    }
+    
+    /**
+     * Crea una película (con sus idiomas) a partir de la fila actual
+     */
+    private Pelicula mapearPelicula(ResultSet rs) throws SQLException {
+        int filmId = rs.getInt("film_id");
+        String title = rs.getString("title");
+        String description = rs.getString("description");
+        int releaseYear = rs.getInt("release_year");
+        int languageId = rs.getInt("language_id");
+        String languageName = rs.getString("language_name");
+        int originalLanguageId = rs.getInt("original_language_id");
+        String originalLanguageName = rs.getString("original_language_name");
+        int rentalDuration = rs.getInt("rental_duration");
+        double rentalRate = rs.getDouble("rental_rate");
+        int length = rs.getInt("length");
+        double replacementCost = rs.getDouble("replacement_cost");
+        String rating = rs.getString("rating");
+        String specialFeatures = rs.getString("special_features");
+        Timestamp lastUpdate = rs.getTimestamp("last_update");
+        
+        Language language = idiomas.obtener(languageId, id -> new Language(id, languageName));
+        
+        Language originalLanguage = null;
+        if (originalLanguageId > 0) {
+            originalLanguage = idiomas.obtener(originalLanguageId, id -> new Language(id, originalLanguageName));
+        }
+        
+        Pelicula pelicula = new Pelicula();
+        pelicula.setId(filmId);
+        pelicula.setTitulo(title);
+        pelicula.setDescripcion(description);
+        pelicula.setAnioLanzamiento(releaseYear);
+        pelicula.setIdioma(language);
+        pelicula.setIdiomaOriginal(originalLanguage);
+        pelicula.setDuracionRenta(rentalDuration);
+        pelicula.setTarifaRenta(rentalRate);
+        pelicula.setDuracion(length);
+        pelicula.setCostoReemplazo(replacementCost);
+        pelicula.setClasificacion(rating);
+        pelicula.setCaracteristicasEspeciales(specialFeatures);
+        pelicula.setUltimaActualizacion(lastUpdate);
+        pelicula.setFechaCreacion(lastUpdate); // No hay campo create_date en film
+        pelicula.setActivo(true); // No hay campo active en film
+        return pelicula;
+    }
+    
+    private static void escribirPelicula(Pelicula pelicula, InstantaneaCache.Escritor escritor) throws IOException {
+        escritor.escribirEntidad(pelicula);
+        escritor.escribirTexto(pelicula.getTitulo());
+        escritor.escribirTexto(pelicula.getDescripcion());
+        escritor.escribirInt(pelicula.getAnioLanzamiento());
+        escribirIdioma(pelicula.getIdioma(), escritor);
+        escribirIdioma(pelicula.getIdiomaOriginal(), escritor);
+        escritor.escribirInt(pelicula.getDuracionRenta());
+        escritor.escribirDouble(pelicula.getTarifaRenta());
+        escritor.escribirInt(pelicula.getDuracion());
+        escritor.escribirDouble(pelicula.getCostoReemplazo());
+        escritor.escribirTexto(pelicula.getClasificacion());
+        escritor.escribirTexto(pelicula.getCaracteristicasEspeciales());
+    }
+    
+    private static void escribirIdioma(Language idioma, InstantaneaCache.Escritor escritor) throws IOException {
+        escritor.escribirInt(idioma != null ? idioma.getId() : 0);
+        escritor.escribirTexto(idioma != null ? idioma.getName() : null);
+    }
+    
+    /**
+     * Lee una película de la instantánea; los idiomas salen del catálogo compartido
+     */
+    private Pelicula leerPelicula(InstantaneaCache.Lector lector) {
+        Pelicula pelicula = lector.leerEntidad(new Pelicula());
+        pelicula.setTitulo(lector.leerTexto());
+        pelicula.setDescripcion(lector.leerTexto());
+        pelicula.setAnioLanzamiento(lector.leerInt());
+        pelicula.setIdioma(leerIdioma(lector));
+        pelicula.setIdiomaOriginal(leerIdioma(lector));
+        pelicula.setDuracionRenta(lector.leerInt());
+        pelicula.setTarifaRenta(lector.leerDouble());
+        pelicula.setDuracion(lector.leerInt());
+        pelicula.setCostoReemplazo(lector.leerDouble());
+        pelicula.setClasificacion(lector.leerTexto());
+        pelicula.setCaracteristicasEspeciales(lector.leerTexto());
+        return pelicula;
+    }
+    
+    private Language leerIdioma(InstantaneaCache.Lector lector) {
+        int idiomaId = lector.leerInt();
+        String nombre = lector.leerTexto();
+        return idiomaId > 0 ? idiomas.obtener(idiomaId, id -> new Language(id, nombre)) : null;
+    }
+    
     @Override
     public boolean post(Pelicula pelicula) {
         String sql = "INSERT INTO film (title, description, release_year, language_id, original_language_id, " +
                     "rental_duration, rental_rate, length, replacement_cost, rating, special_features) " +
                     "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            stmt.setString(1, pelicula.getTitulo());
-            stmt.setString(2, pelicula.getDescripcion());
-            stmt.setInt(3, pelicula.getAnioLanzamiento());
-            stmt.setInt(4, pelicula.getIdioma().getId());
-            
-            if (pelicula.getIdiomaOriginal() != null) {
-                stmt.setInt(5, pelicula.getIdiomaOriginal().getId());
-            } else {
-                stmt.setNull(5, java.sql.Types.INTEGER);
-            }
-            
-            stmt.setInt(6, pelicula.getDuracionRenta());
-            stmt.setDouble(7, pelicula.getTarifaRenta());
-            stmt.setInt(8, pelicula.getDuracion());
-            stmt.setDouble(9, pelicula.getCostoReemplazo());
-            stmt.setString(10, pelicula.getClasificacion());
-            stmt.setString(11, pelicula.getCaracteristicasEspeciales());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            asignarInsercion(stmt, pelicula);
             
             int filasAfectadas = stmt.executeUpdate();
             
@@ -125,10 +209,13 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
                     if (generatedKeys.next()) {
                         pelicula.setId(generatedKeys.getInt(1));
                         pelicula.setUltimaActualizacion(new Date(System.currentTimeMillis()));
-                        peliculas.add(pelicula);
+                        peliculas.guardar(pelicula);
+                        inexistentes.registrar(pelicula.getId());
                         Logger.info("Película creada con ID: " + pelicula.getId());
                     }
                 }
+                // Si la transacción en curso se revierte, la caché local se vuelve a cargar
+                ContextoBaseDatos.registrarEscritura(this, this::cargarPeliculas);
                 return true;
             }
         } catch (SQLException e) {
@@ -139,6 +226,66 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
         return false;
     }
     
+    @Override
+    public boolean postAll(List<Pelicula> nuevos) {
+        if (!OperacionesEnLote.validar(nuevos, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "INSERT INTO film (title, description, release_year, language_id, original_language_id, " +
+                    "rental_duration, rental_rate, length, replacement_cost, rating, special_features) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        
+        try {
+            OperacionesEnLote.insertar(sql, nuevos, this::asignarInsercion);
+        } catch (SQLException e) {
+            Logger.error("Error al crear películas en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        Date ahora = new Date(System.currentTimeMillis());
+        for (Pelicula pelicula : nuevos) {
+            pelicula.setUltimaActualizacion(ahora);
+            inexistentes.registrar(pelicula.getId());
+        }
+        peliculas.guardarTodas(nuevos);
+        Logger.info("Películas creadas en lote: " + nuevos.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarPeliculas);
+        return true;
+    }
+    
+    /**
+     * Comprueba las columnas que escriben el INSERT y el UPDATE: title y language_id (las demás admiten cualquier valor)
+     */
+    private boolean columnasValidas(Pelicula pelicula) {
+        return pelicula.getTitulo() != null && !pelicula.getTitulo().isEmpty() &&
+               pelicula.getIdioma() != null && pelicula.getIdioma().getId() > 0;
+    }
+    
+    /**
+     * Asigna los parámetros del INSERT (compartido por post y postAll)
+     */
+    private void asignarInsercion(PreparedStatement stmt, Pelicula pelicula) throws SQLException {
+        stmt.setString(1, pelicula.getTitulo());
+        stmt.setString(2, pelicula.getDescripcion());
+        stmt.setInt(3, pelicula.getAnioLanzamiento());
+        stmt.setInt(4, pelicula.getIdioma().getId());
+        
+        if (pelicula.getIdiomaOriginal() != null) {
+            stmt.setInt(5, pelicula.getIdiomaOriginal().getId());
+        } else {
+            stmt.setNull(5, java.sql.Types.INTEGER);
+        }
+        
+        stmt.setInt(6, pelicula.getDuracionRenta());
+        stmt.setDouble(7, pelicula.getTarifaRenta());
+        stmt.setInt(8, pelicula.getDuracion());
+        stmt.setDouble(9, pelicula.getCostoReemplazo());
+        stmt.setString(10, pelicula.getClasificacion());
+        stmt.setString(11, pelicula.getCaracteristicasEspeciales());
+    }
+    
     @Override
     public boolean put(Pelicula pelicula) {
         String sql = "UPDATE film SET title = ?, description = ?, release_year = ?, language_id = ?, " +
@@ -146,40 +293,20 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
                     "replacement_cost = ?, rating = ?, special_features = ? " +
                     "WHERE film_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
-            stmt.setString(1, pelicula.getTitulo());
-            stmt.setString(2, pelicula.getDescripcion());
-            stmt.setInt(3, pelicula.getAnioLanzamiento());
-            stmt.setInt(4, pelicula.getIdioma().getId());
-            
-            if (pelicula.getIdiomaOriginal() != null) {
-                stmt.setInt(5, pelicula.getIdiomaOriginal().getId());
-            } else {
-                stmt.setNull(5, java.sql.Types.INTEGER);
-            }
-            
-            stmt.setInt(6, pelicula.getDuracionRenta());
-            stmt.setDouble(7, pelicula.getTarifaRenta());
-            stmt.setInt(8, pelicula.getDuracion());
-            stmt.setDouble(9, pelicula.getCostoReemplazo());
-            stmt.setString(10, pelicula.getClasificacion());
-            stmt.setString(11, pelicula.getCaracteristicasEspeciales());
-            stmt.setInt(12, pelicula.getId());
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
+            asignarActualizacion(stmt, pelicula);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
                 pelicula.actualizarFecha();
                 
-                // Actualizar en la lista local
-                for (int i = 0; i < peliculas.size(); i++) {
-                    if (peliculas.get(i).getId() == pelicula.getId()) {
-                        peliculas.set(i, pelicula);
-                        break;
-                    }
-                }
+                // Actualizar en la caché local
+                peliculas.guardar(pelicula);
                 
                 Logger.info("Película actualizada con ID: " + pelicula.getId());
+                ContextoBaseDatos.registrarEscritura(this, this::cargarPeliculas);
                 return true;
             }
         } catch (SQLException e) {
@@ -190,22 +317,77 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
         return false;
     }
     
+    @Override
+    public boolean putAll(List<Pelicula> modificados) {
+        if (!OperacionesEnLote.validar(modificados, this::columnasValidas)) {
+            return false;
+        }
+        
+        String sql = "UPDATE film SET title = ?, description = ?, release_year = ?, language_id = ?, " +
+                    "original_language_id = ?, rental_duration = ?, rental_rate = ?, length = ?, " +
+                    "replacement_cost = ?, rating = ?, special_features = ? " +
+                    "WHERE film_id = ?";
+        
+        List<Pelicula> actualizados;
+        try {
+            actualizados = OperacionesEnLote.actualizar(sql, modificados, this::asignarActualizacion);
+        } catch (SQLException e) {
+            Logger.error("Error al actualizar películas en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        for (Pelicula pelicula : actualizados) {
+            pelicula.actualizarFecha();
+        }
+        peliculas.guardarTodas(actualizados);
+        Logger.info("Películas actualizadas en lote: " + actualizados.size() + " de " + modificados.size());
+        ContextoBaseDatos.registrarEscritura(this, this::cargarPeliculas);
+        return true;
+    }
+    
+    /**
+     * Asigna los parámetros del UPDATE (compartido por put y putAll)
+     */
+    private void asignarActualizacion(PreparedStatement stmt, Pelicula pelicula) throws SQLException {
+        stmt.setString(1, pelicula.getTitulo());
+        stmt.setString(2, pelicula.getDescripcion());
+        stmt.setInt(3, pelicula.getAnioLanzamiento());
+        stmt.setInt(4, pelicula.getIdioma().getId());
+        
+        if (pelicula.getIdiomaOriginal() != null) {
+            stmt.setInt(5, pelicula.getIdiomaOriginal().getId());
+        } else {
+            stmt.setNull(5, java.sql.Types.INTEGER);
+        }
+        
+        stmt.setInt(6, pelicula.getDuracionRenta());
+        stmt.setDouble(7, pelicula.getTarifaRenta());
+        stmt.setInt(8, pelicula.getDuracion());
+        stmt.setDouble(9, pelicula.getCostoReemplazo());
+        stmt.setString(10, pelicula.getClasificacion());
+        stmt.setString(11, pelicula.getCaracteristicasEspeciales());
+        stmt.setInt(12, pelicula.getId());
+    }
+    
     @Override
     public boolean delete(int id) {
         // En este caso, como la tabla film no tiene un campo 'active',
         // realmente eliminamos el registro en lugar de marcarlo como inactivo
         String sql = "DELETE FROM film WHERE film_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             int filasAfectadas = stmt.executeUpdate();
             
             if (filasAfectadas > 0) {
-                // Eliminar de la lista local
-                peliculas.removeIf(p -> p.getId() == id);
+                // Eliminar de la caché local
+                peliculas.quitar(id);
                 
                 Logger.info("Película eliminada con ID: " + id);
+                ContextoBaseDatos.registrarEscritura(this, this::cargarPeliculas);
                 return true;
             }
         } catch (SQLException e) {
@@ -216,74 +398,64 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
         return false;
     }
     
+    @Override
+    public boolean deleteAll(int... ids) {
+        if (!OperacionesEnLote.validarIds(ids)) {
+            return false;
+        }
+        
+        int filasAfectadas;
+        try {
+            filasAfectadas = OperacionesEnLote.porIds("DELETE FROM film WHERE film_id IN ", ids);
+        } catch (SQLException e) {
+            Logger.error("Error al eliminar películas en lote: " + e.getMessage());
+            e.printStackTrace();
+            return false;
+        }
+        
+        peliculas.quitarTodas(ids);
+        Logger.info("Películas eliminadas en lote: " + filasAfectadas);
+        ContextoBaseDatos.registrarEscritura(this, this::cargarPeliculas);
+        return true;
+    }
+    
     @Override
     public Pelicula get(int id) {
-        // Primero buscamos en la lista local
-        for (Pelicula pelicula : peliculas) {
-            if (pelicula.getId() == id) {
-                return pelicula;
-            }
+        // Primero buscamos en la caché local
+        Pelicula enCache = peliculas.obtener(id);
+        if (enCache != null) {
+            estadisticas.registrarAcierto();
+            return enCache;
+        }
+        estadisticas.registrarFallo();
+        
+        // Los IDs que seguro que no existen no llegan a la base de datos
+        if (!inexistentes.puedeExistir(id)) {
+            return null;
         }
         
         // Si no lo encontramos, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT f.*, l.name as language_name, ol.name as original_language_name " +
                     "FROM film f " +
                     "JOIN language l ON f.language_id = l.language_id " +
                     "LEFT JOIN language ol ON f.original_language_id = ol.language_id " +
                     "WHERE f.film_id = ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, id);
             
             try (ResultSet rs = stmt.executeQuery()) {
                 if (rs.next()) {
-                    int filmId = rs.getInt("film_id");
-                    String title = rs.getString("title");
-                    String description = rs.getString("description");
-                    int releaseYear = rs.getInt("release_year");
-                    int languageId = rs.getInt("language_id");
-                    String languageName = rs.getString("language_name");
-                    int originalLanguageId = rs.getInt("original_language_id");
-                    String originalLanguageName = rs.getString("original_language_name");
-                    int rentalDuration = rs.getInt("rental_duration");
-                    double rentalRate = rs.getDouble("rental_rate");
-                    int length = rs.getInt("length");
-                    double replacementCost = rs.getDouble("replacement_cost");
-                    String rating = rs.getString("rating");
-                    String specialFeatures = rs.getString("special_features");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    Language language = new Language(languageId, languageName);
-                    language.setUltimaActualizacion(lastUpdate);
+                    Pelicula pelicula = mapearPelicula(rs);
                     
-                    Language originalLanguage = null;
-                    if (originalLanguageId > 0) {
-                        originalLanguage = new Language(originalLanguageId, originalLanguageName);
-                        originalLanguage.setUltimaActualizacion(lastUpdate);
-                    }
-                    
-                    Pelicula pelicula = new Pelicula();
-                    pelicula.setId(filmId);
-                    pelicula.setTitulo(title);
-                    pelicula.setDescripcion(description);
-                    pelicula.setAnioLanzamiento(releaseYear);
-                    pelicula.setIdioma(language);
-                    pelicula.setIdiomaOriginal(originalLanguage);
-                    pelicula.setDuracionRenta(rentalDuration);
-                    pelicula.setTarifaRenta(rentalRate);
-                    pelicula.setDuracion(length);
-                    pelicula.setCostoReemplazo(replacementCost);
-                    pelicula.setClasificacion(rating);
-                    pelicula.setCaracteristicasEspeciales(specialFeatures);
-                    pelicula.setUltimaActualizacion(lastUpdate);
-                    pelicula.setFechaCreacion(lastUpdate); // No hay campo create_date en film
-                    pelicula.setActivo(true); // No hay campo active en film
-                    
-                    // Añadir a la lista local
-                    peliculas.add(pelicula);
+                    // Añadir a la caché local
+                    peliculas.guardar(pelicula);
                     
                     return pelicula;
                 }
+                inexistentes.anotarInexistente(id);
             }
         } catch (SQLException e) {
             Logger.error("Error al obtener película por ID: " + e.getMessage());
@@ -296,13 +468,16 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
     @Override
     public List<Pelicula> get() {
         // Si la lista ya está cargada, la devolvemos
-        if (!peliculas.isEmpty()) {
-            return new ArrayList<>(peliculas);
+        if (!peliculas.estaVacia()) {
+            estadisticas.registrarAcierto();
+            return peliculas.valores();
         }
+        estadisticas.registrarFallo();
+        estadisticas.registrarConsultaBD();
         
         // Si no, cargamos las películas y devolvemos la lista
         cargarPeliculas();
-        return new ArrayList<>(peliculas);
+        return peliculas.valores();
     }
     
     @Override
@@ -310,8 +485,8 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
         List<Pelicula> resultado = new ArrayList<>();
         String criterio = criterios[0].toLowerCase();
         
-        // Primero buscamos en la lista local
-        for (Pelicula pelicula : peliculas) {
+        // Primero buscamos en la caché local
+        for (Pelicula pelicula : peliculas.valores()) {
             if (pelicula.getTitulo().toLowerCase().contains(criterio) || 
                 pelicula.getDescripcion().toLowerCase().contains(criterio)) {
                 resultado.add(pelicula);
@@ -320,70 +495,32 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
         
         // Si encontramos resultados, los devolvemos
         if (!resultado.isEmpty()) {
+            estadisticas.registrarAcierto();
             return resultado;
         }
+        estadisticas.registrarFallo();
         
         // Si no, buscamos en la base de datos
+        estadisticas.registrarConsultaBD();
         String sql = "SELECT f.*, l.name as language_name, ol.name as original_language_name " +
                     "FROM film f " +
                     "JOIN language l ON f.language_id = l.language_id " +
                     "LEFT JOIN language ol ON f.original_language_id = ol.language_id " +
                     "WHERE LOWER(f.title) LIKE ? OR LOWER(f.description) LIKE ?";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setString(1, "%" + criterio + "%");
             stmt.setString(2, "%" + criterio + "%");
             
             try (ResultSet rs = stmt.executeQuery()) {
                 while (rs.next()) {
-                    int filmId = rs.getInt("film_id");
-                    String title = rs.getString("title");
-                    String description = rs.getString("description");
-                    int releaseYear = rs.getInt("release_year");
-                    int languageId = rs.getInt("language_id");
-                    String languageName = rs.getString("language_name");
-                    int originalLanguageId = rs.getInt("original_language_id");
-                    String originalLanguageName = rs.getString("original_language_name");
-                    int rentalDuration = rs.getInt("rental_duration");
-                    double rentalRate = rs.getDouble("rental_rate");
-                    int length = rs.getInt("length");
-                    double replacementCost = rs.getDouble("replacement_cost");
-                    String rating = rs.getString("rating");
-                    String specialFeatures = rs.getString("special_features");
-                    Timestamp lastUpdate = rs.getTimestamp("last_update");
-                    
-                    Language language = new Language(languageId, languageName);
-                    language.setUltimaActualizacion(lastUpdate);
-                    
-                    Language originalLanguage = null;
-                    if (originalLanguageId > 0) {
-                        originalLanguage = new Language(originalLanguageId, originalLanguageName);
-                        originalLanguage.setUltimaActualizacion(lastUpdate);
-                    }
-                    
-                    Pelicula pelicula = new Pelicula();
-                    pelicula.setId(filmId);
-                    pelicula.setTitulo(title);
-                    pelicula.setDescripcion(description);
-                    pelicula.setAnioLanzamiento(releaseYear);
-                    pelicula.setIdioma(language);
-                    pelicula.setIdiomaOriginal(originalLanguage);
-                    pelicula.setDuracionRenta(rentalDuration);
-                    pelicula.setTarifaRenta(rentalRate);
-                    pelicula.setDuracion(length);
-                    pelicula.setCostoReemplazo(replacementCost);
-                    pelicula.setClasificacion(rating);
-                    pelicula.setCaracteristicasEspeciales(specialFeatures);
-                    pelicula.setUltimaActualizacion(lastUpdate);
-                    pelicula.setFechaCreacion(lastUpdate); // No hay campo create_date en film
-                    pelicula.setActivo(true); // No hay campo active en film
+                    Pelicula pelicula = mapearPelicula(rs);
                     
                     resultado.add(pelicula);
                     
-                    // Añadir a la lista local si no existe
-                    if (peliculas.stream().noneMatch(p -> p.getId() == pelicula.getId())) {
-                        peliculas.add(pelicula);
-                    }
+                    // Añadir a la caché local si no existe
+                    peliculas.guardarSiFalta(pelicula);
                 }
             }
         } catch (SQLException e) {
@@ -394,6 +531,79 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
         return resultado;
     }
     
+    /**
+     * Obtiene varias películas de una vez: las que no están en la caché local
+     * se leen en una sola consulta por bloques en lugar de una por película
+     * @param ids IDs de las películas
+     * @return Películas encontradas, por ID
+     */
+    public IntObjectMap<Pelicula> obtenerPorIds(int... ids) {
+        IntObjectMap<Pelicula> encontradas = new IntObjectMap<>(ids.length);
+        IntSet faltan = new IntSet();
+        for (int id : ids) {
+            Pelicula enCache = peliculas.obtener(id);
+            if (enCache != null) {
+                encontradas.put(id, enCache);
+            } else if (inexistentes.puedeExistir(id)) {
+                faltan.add(id);
+            }
+        }
+        
+        if (faltan.isEmpty()) {
+            return encontradas;
+        }
+        
+        String sql = "SELECT f.*, l.name as language_name, ol.name as original_language_name " +
+                     "FROM film f " +
+                     "JOIN language l ON f.language_id = l.language_id " +
+                     "LEFT JOIN language ol ON f.original_language_id = ol.language_id " +
+                     "WHERE f.film_id IN ";
+        try {
+            for (Pelicula pelicula : OperacionesEnLote.leerPorIds(sql, this::mapearPelicula, faltan.toArray())) {
+                peliculas.guardarSiFalta(pelicula);
+                encontradas.put(pelicula.getId(), pelicula);
+            }
+            for (int id : faltan.toArray()) {
+                if (!encontradas.containsKey(id)) {
+                    inexistentes.anotarInexistente(id);
+                }
+            }
+        } catch (SQLException e) {
+            Logger.error("Error al obtener películas por ID: " + e.getMessage());
+            e.printStackTrace();
+        }
+        
+        return encontradas;
+    }
+    
+    @Override
+    public Stream<Pelicula> stream() {
+        return FlujoFilas.abrir("SELECT f.*, l.name as language_name, ol.name as original_language_name " +
+                                 "FROM film f " +
+                                 "JOIN language l ON f.language_id = l.language_id " +
+                                 "LEFT JOIN language ol ON f.original_language_id = ol.language_id", this::mapearPelicula);
+    }
+    
+    @Override
+    public Pagina<Pelicula> page(int despuesDeId, int tamanio) {
+        try {
+            return leerPagina(despuesDeId, tamanio);
+        } catch (SQLException e) {
+            Logger.error("Error al obtener página de películas: " + e.getMessage());
+            e.printStackTrace();
+            return Pagina.vacia();
+        }
+    }
+    
+    private Pagina<Pelicula> leerPagina(int despuesDeId, int tamanio) throws SQLException {
+        String sql = "SELECT f.*, l.name as language_name, ol.name as original_language_name " +
+                     "FROM film f " +
+                     "JOIN language l ON f.language_id = l.language_id " +
+                     "LEFT JOIN language ol ON f.original_language_id = ol.language_id " +
+                     "WHERE f.film_id > ? ORDER BY f.film_id LIMIT ?";
+        return Pagina.leer(sql, this::mapearPelicula, Pelicula::getId, despuesDeId, tamanio);
+    }
+    
     /**
      * Obtiene los actores de una película
      * @param idPelicula ID de la película
@@ -408,7 +618,8 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
                     "WHERE fa.film_id = ? " +
                     "ORDER BY a.last_name, a.first_name";
         
-        try (PreparedStatement stmt = conexion.prepareStatement(sql)) {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
             stmt.setInt(1, idPelicula);
             
             try (ResultSet rs = stmt.executeQuery()) {
@@ -438,12 +649,13 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
         
         try {
             // Total de películas
-            estadisticas.put("totalPeliculas", peliculas.size());
+            estadisticas.put("totalPeliculas", peliculas.tamanio());
             
             // Películas por clasificación
             String sqlClasificacion = "SELECT rating, COUNT(*) AS total FROM film GROUP BY rating";
             Map<String, Integer> peliculasPorClasificacion = new HashMap<>();
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sqlClasificacion)) {
                 while (rs.next()) {
                     String clasificacion = rs.getString("rating");
@@ -459,7 +671,8 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
                                  "JOIN film_category fc ON c.category_id = fc.category_id " +
                                  "GROUP BY c.name";
             Map<String, Integer> peliculasPorCategoria = new HashMap<>();
-            try (Statement stmt = conexion.createStatement();
+            try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+                 Statement stmt = conexion.createStatement();
                  ResultSet rs = stmt.executeQuery(sqlCategoria)) {
                 while (rs.next()) {
                     String categoria = rs.getString("name");
@@ -477,6 +690,17 @@ public class PeliculaControlador implements iDatapost<Pelicula> {
         return estadisticas;
     }
     
+    /**
+     * Obtiene las estadísticas de uso de la caché de películas
+     * @return Mapa con aciertos, fallos, consultas a la base de datos, cargas y entradas,
+     *         y en "filtro" los IDs descartados sin consultar la base de datos
+     */
+    public Map<String, Object> obtenerEstadisticasCache() {
+        Map<String, Object> resultado = estadisticas.obtener();
+        resultado.put("filtro", inexistentes.obtenerEstadisticas());
+        return resultado;
+    }
+    
     // Métodos de compatibilidad con el código existente
     
     /**
@@ -0,0 +1,83 @@
+package com.sakila.controllers;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Registro de controladores compartidos: cada controlador se crea una sola vez, la primera
+ * vez que se pide, y los que dependen de otro reciben la misma instancia que el resto
+ * de la aplicación. Así cada tabla se carga una vez y los cambios hechos desde un
+ * controlador se ven en todos.
+ * <p>
+ * Cada instancia vive en su propia clase contenedora, que la JVM inicializa de forma
+ * perezosa y segura entre hilos sin bloquear la creación de los demás controladores.
+ * @author Nicolas Zierow Fermin
+ */
+public final class RegistroControladores {
+
+    private RegistroControladores() {
+    }
+
+    private static final class Actores {
+        static final ActorControlador INSTANCIA = new ActorControlador();
+    }
+
+    private static final class Paises {
+        static final CountryControlador INSTANCIA = new CountryControlador();
+    }
+
+    private static final class Ciudades {
+        static final CityControlador INSTANCIA = new CityControlador(getCountryControlador());
+    }
+
+    private static final class Peliculas {
+        static final PeliculaControlador INSTANCIA = new PeliculaControlador();
+    }
+
+    private static final class Clientes {
+        static final ClienteControlador INSTANCIA = new ClienteControlador();
+    }
+
+    private static final class Inventarios {
+        static final InventarioControlador INSTANCIA = new InventarioControlador(getPeliculaControlador());
+    }
+
+    public static ActorControlador getActorControlador() {
+        return Actores.INSTANCIA;
+    }
+
+    public static CountryControlador getCountryControlador() {
+        return Paises.INSTANCIA;
+    }
+
+    public static CityControlador getCityControlador() {
+        return Ciudades.INSTANCIA;
+    }
+
+    public static PeliculaControlador getPeliculaControlador() {
+        return Peliculas.INSTANCIA;
+    }
+
+    public static ClienteControlador getClienteControlador() {
+        return Clientes.INSTANCIA;
+    }
+
+    public static InventarioControlador getInventarioControlador() {
+        return Inventarios.INSTANCIA;
+    }
+
+    /**
+     * Obtiene las estadísticas de caché de todos los controladores
+     * @return Mapa de nombre de controlador a sus estadísticas (ver obtenerEstadisticasCache())
+     */
+    public static Map<String, Map<String, Object>> obtenerEstadisticasCaches() {
+        Map<String, Map<String, Object>> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("Actores", getActorControlador().obtenerEstadisticasCache());
+        estadisticas.put("Países", getCountryControlador().obtenerEstadisticasCache());
+        estadisticas.put("Ciudades", getCityControlador().obtenerEstadisticasCache());
+        estadisticas.put("Películas", getPeliculaControlador().obtenerEstadisticasCache());
+        estadisticas.put("Clientes", getClienteControlador().obtenerEstadisticasCache());
+        estadisticas.put("Inventario", getInventarioControlador().obtenerEstadisticasCache());
+        return estadisticas;
+    }
+}
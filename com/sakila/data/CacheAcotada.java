@@ -0,0 +1,783 @@
+package com.sakila.data;
+
+import com.sakila.models.Entity;
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.IntObjectMap;
+import com.sakila.utils.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caché de entidades de tamaño acotado con política W-TinyLFU, para tablas que no caben
+ * enteras en memoria (clientes, inventario).
+ * <p>
+ * Las entidades nuevas entran en una ventana LRU pequeña (1% del tamaño). Al salir de ella
+ * compiten por entrar en la zona principal (LRU segmentada: prueba y protegida) contra la
+ * víctima de la zona de prueba, y gana la que más accesos recientes tiene según un
+ * esbozo de frecuencias. Así un recorrido de filas frías no desplaza a las calientes.
+ * <p>
+ * El límite se mide en entradas o en bytes estimados, según el pesador con que se cree.
+ * <p>
+ * Las entidades expulsadas pasan a un nivel de referencias blandas (NivelSuave) en vez de
+ * perderse: si se vuelven a pedir antes de que el recolector las libere, se sirven desde
+ * allí y regresan a la caché. Así una JVM con memoria de sobra cachea mucho más que el
+ * límite, y una justa de memoria se queda solo con el límite en lugar de fallar.
+ * Los listados (valores(), filtrar()) solo recorren el nivel principal.
+ * <p>
+ * Con un presupuesto global de memoria (PresupuestoMemoria) el límite propio pasa a ser el
+ * presupuesto entero, y es el presupuesto quien le pide expulsar cuando entre todas las
+ * cachés lo superan.
+ * <p>
+ * Concurrencia: las búsquedas por ID no toman bloqueo (lectura optimista con StampedLock,
+ * que solo se repite con bloqueo de lectura si coincide con una escritura). Un acierto también
+ * cambia la política (frecuencia y posición LRU), así que los accesos se anotan en un búfer
+ * circular y se aplican en bloque por quien consiga el bloqueo de escritura sin esperar,
+ * o por la siguiente escritura. Si el búfer se desborda se pierden accesos, lo que solo resta
+ * algo de precisión a la política. Las escrituras sí comparten un bloqueo, porque cada entrada
+ * nueva puede expulsar a cualquier otra.
+ * @param <T> Tipo de entidad
+ * @author Nicolas Zierow Fermin
+ */
+public class CacheAcotada<T extends Entity> implements iCacheEntidades<T>, iParticipantePresupuesto {
+    private static final double PROPORCION_VENTANA = 0.01;
+    private static final double PROPORCION_PROTEGIDA = 0.80;
+    // Para dimensionar el esbozo de frecuencias cuando el límite está en bytes
+    private static final long BYTES_POR_ENTRADA = 256;
+    private static final String UNIDAD_BYTES = "bytes";
+    // Búfer de accesos pendientes (potencia de dos) y cada cuántos se intenta aplicarlos
+    private static final int TAMANIO_LECTURAS = 128;
+    private static final int APLICAR_CADA = 32;
+    private static final int MAXIMO_SUAVE_POR_DEFECTO = 100000;
+
+    private static final byte VENTANA = 0;
+    private static final byte PRUEBA = 1;
+    private static final byte PROTEGIDA = 2;
+
+    private final String nombre;
+    private final long maximo;
+    private final long maximoVentana;
+    private final long maximoProtegida;
+    private final ToLongFunction<T> pesador;
+    private final String unidad;
+    private final NivelSuave<T> suave;
+    private final PresupuestoMemoria presupuesto;
+
+    private final IntObjectMap<Nodo<T>> nodos = new IntObjectMap<>();
+    private final Lista<T> ventana = new Lista<>();
+    private final Lista<T> prueba = new Lista<>();
+    private final Lista<T> protegida = new Lista<>();
+    private final Esbozo esbozo;
+
+    private final StampedLock candado = new StampedLock();
+    // Cada acceso se guarda como (1 << 32) | id, para que 0 signifique hueco libre
+    private final AtomicLongArray lecturas = new AtomicLongArray(TAMANIO_LECTURAS);
+    private final AtomicInteger siguienteLectura = new AtomicInteger();
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder aciertosSuaves = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    // Solo cambian con el bloqueo de escritura
+    private long expulsiones;
+    private long expulsionesPresupuesto;
+    private long rechazadas;
+    // Peso total al terminar la última escritura, para el presupuesto sin tomar el bloqueo
+    private volatile long pesoPublicado;
+
+    /**
+     * Constructor
+     * @param nombre Nombre de la caché, para logs y estadísticas
+     * @param maximo Peso máximo total
+     * @param pesador Peso de cada entidad (1 para contar entradas, o bytes estimados)
+     * @param unidad Unidad del peso ("entradas" o "bytes")
+     */
+    public CacheAcotada(String nombre, long maximo, ToLongFunction<T> pesador, String unidad) {
+        this(nombre, maximo, pesador, unidad, new NivelSuave<>(nombre, 0));
+    }
+
+    /**
+     * Constructor
+     * @param nombre Nombre de la caché, para logs y estadísticas
+     * @param maximo Peso máximo total
+     * @param pesador Peso de cada entidad (1 para contar entradas, o bytes estimados)
+     * @param unidad Unidad del peso ("entradas" o "bytes")
+     * @param suave Nivel que recibe las entidades expulsadas
+     */
+    public CacheAcotada(String nombre, long maximo, ToLongFunction<T> pesador, String unidad,
+                        NivelSuave<T> suave) {
+        this(nombre, maximo, pesador, unidad, suave, null);
+    }
+
+    /**
+     * Constructor
+     * @param nombre Nombre de la caché, para logs y estadísticas
+     * @param maximo Peso máximo total
+     * @param pesador Peso de cada entidad (1 para contar entradas, o bytes estimados)
+     * @param unidad Unidad del peso ("entradas" o "bytes")
+     * @param suave Nivel que recibe las entidades expulsadas
+     * @param presupuesto Presupuesto compartido en el que participa (null si ninguno); el peso debe ir en bytes
+     */
+    public CacheAcotada(String nombre, long maximo, ToLongFunction<T> pesador, String unidad,
+                        NivelSuave<T> suave, PresupuestoMemoria presupuesto) {
+        if (maximo <= 0) {
+            throw new IllegalArgumentException("El tamaño máximo de la caché debe ser positivo: " + maximo);
+        }
+        this.nombre = nombre;
+        this.maximo = maximo;
+        this.maximoVentana = Math.max(1, (long) (maximo * PROPORCION_VENTANA));
+        this.maximoProtegida = (long) ((maximo - maximoVentana) * PROPORCION_PROTEGIDA);
+        this.pesador = pesador;
+        this.unidad = unidad;
+        this.suave = suave;
+        this.presupuesto = presupuesto;
+        // El esbozo se dimensiona por número de entradas; con límite en bytes se estiman
+        long entradas = UNIDAD_BYTES.equals(unidad) ? maximo / BYTES_POR_ENTRADA : maximo;
+        this.esbozo = new Esbozo((int) Math.min(entradas, 1 << 20));
+        if (presupuesto != null) {
+            presupuesto.registrar(this);
+        }
+    }
+
+    /**
+     * Crea la caché según config.properties: cache.&lt;nombre&gt;.bytes (si es mayor que 0)
+     * la acota por bytes estimados; si no, cache.&lt;nombre&gt;.max la acota por número de entradas.
+     * Las expulsadas van a un nivel blando de cache.&lt;nombre&gt;.suave.max entradas.
+     * Si hay presupuesto global (cache.presupuesto.bytes) se usa ese en lugar de los dos anteriores
+     * y la caché se da por llena, para las cargas iniciales, cuando se llena el presupuesto.
+     * @param nombre Nombre de la caché (p. ej. "clientes")
+     * @param entradasPorDefecto Entradas máximas si no hay configuración
+     * @param estimador Bytes estimados de cada entidad
+     * @param <T> Tipo de entidad
+     * @return Caché nueva
+     */
+    public static <T extends Entity> CacheAcotada<T> desdeConfiguracion(String nombre, long entradasPorDefecto,
+                                                                         ToLongFunction<T> estimador) {
+        NivelSuave<T> suave = NivelSuave.desdeConfiguracion(nombre, MAXIMO_SUAVE_POR_DEFECTO);
+        PresupuestoMemoria presupuesto = PresupuestoMemoria.global();
+        if (presupuesto.estaActivo()) {
+            Logger.info("Caché de " + nombre + " dentro del presupuesto global de " +
+                        presupuesto.getMaximo() + " bytes estimados");
+            return new CacheAcotada<>(nombre, presupuesto.getMaximo(), estimador, UNIDAD_BYTES, suave, presupuesto);
+        }
+        long bytes = DatabaseConnection.getConfigNumber("cache." + nombre + ".bytes", 0);
+        if (bytes > 0) {
+            Logger.info("Caché de " + nombre + " acotada a " + bytes + " bytes estimados");
+            return new CacheAcotada<>(nombre, bytes, estimador, UNIDAD_BYTES, suave);
+        }
+
+        long entradas = DatabaseConnection.getConfigNumber("cache." + nombre + ".max", entradasPorDefecto);
+        if (entradas <= 0) {
+            Logger.warning("cache." + nombre + ".max no válido: " + entradas + ", se usa " + entradasPorDefecto);
+            entradas = entradasPorDefecto;
+        }
+        Logger.info("Caché de " + nombre + " acotada a " + entradas + " entradas");
+        return new CacheAcotada<>(nombre, entradas, entidad -> 1, "entradas", suave);
+    }
+
+    @Override
+    public T obtener(int id) {
+        Nodo<T> nodo = buscar(id);
+        anotarLectura(id);
+        if (nodo != null) {
+            aciertos.increment();
+            return nodo.valor;
+        }
+
+        T recuperada = suave.obtener(id);
+        if (recuperada == null) {
+            fallos.increment();
+            return null;
+        }
+        aciertosSuaves.increment();
+        promover(recuperada);
+        return recuperada;
+    }
+
+    @Override
+    public boolean contiene(int id) {
+        // También las del nivel blando: el refresco incremental solo actualiza las que contiene
+        return buscar(id) != null || suave.contiene(id);
+    }
+
+    @Override
+    public void guardar(T entidad) {
+        long sello = bloquearEscritura();
+        try {
+            insertar(entidad, true);
+        } finally {
+            terminarEscritura(sello);
+        }
+    }
+
+    @Override
+    public void guardarSiFalta(T entidad) {
+        long sello = bloquearEscritura();
+        try {
+            insertar(entidad, false);
+        } finally {
+            terminarEscritura(sello);
+        }
+    }
+
+    @Override
+    public void guardarTodas(Collection<T> entidades) {
+        long sello = bloquearEscritura();
+        try {
+            for (T entidad : entidades) {
+                insertar(entidad, true);
+            }
+        } finally {
+            terminarEscritura(sello);
+        }
+    }
+
+    @Override
+    public void reemplazarTodo(Collection<T> entidades) {
+        long sello = bloquearEscritura();
+        try {
+            // El esbozo se conserva: lo aprendido sobre qué entidades son calientes sigue valiendo
+            nodos.clear();
+            suave.vaciar();
+            ventana.vaciar();
+            prueba.vaciar();
+            protegida.vaciar();
+            for (T entidad : entidades) {
+                insertar(entidad, true);
+            }
+        } finally {
+            terminarEscritura(sello);
+        }
+    }
+
+    @Override
+    public T quitar(int id) {
+        long sello = bloquearEscritura();
+        try {
+            return eliminar(id);
+        } finally {
+            terminarEscritura(sello);
+        }
+    }
+
+    @Override
+    public void quitarTodas(int... ids) {
+        long sello = bloquearEscritura();
+        try {
+            for (int id : ids) {
+                eliminar(id);
+            }
+        } finally {
+            terminarEscritura(sello);
+        }
+    }
+
+    @Override
+    public List<T> valores() {
+        return Collections.unmodifiableList(filtrar(entidad -> true));
+    }
+
+    @Override
+    public List<T> filtrar(Predicate<T> condicion) {
+        List<T> resultado = new ArrayList<>();
+        long sello = candado.readLock();
+        try {
+            nodos.forEach((id, nodo) -> {
+                if (condicion.test(nodo.valor)) {
+                    resultado.add(nodo.valor);
+                }
+            });
+        } finally {
+            candado.unlockRead(sello);
+        }
+        resultado.sort(Comparator.comparingInt(Entity::getId));
+        return resultado;
+    }
+
+    @Override
+    public int tamanio() {
+        long sello = candado.readLock();
+        try {
+            return nodos.size();
+        } finally {
+            candado.unlockRead(sello);
+        }
+    }
+
+    @Override
+    public boolean estaVacia() {
+        return tamanio() == 0;
+    }
+
+    @Override
+    public boolean estaLlena() {
+        // Con presupuesto global el máximo propio es el presupuesto entero: lo que llena es el total
+        if (presupuesto != null && presupuesto.estaLleno()) {
+            return true;
+        }
+        long sello = candado.readLock();
+        try {
+            return pesoTotal() >= maximo;
+        } finally {
+            candado.unlockRead(sello);
+        }
+    }
+
+    @Override
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        long aciertosTotales = aciertos.sum();
+        long aciertosBlandos = aciertosSuaves.sum();
+        long fallosTotales = fallos.sum();
+        long consultas = aciertosTotales + aciertosBlandos + fallosTotales;
+        estadisticas.put("nombre", nombre);
+        estadisticas.put("pesoMaximo", maximo);
+        estadisticas.put("unidad", unidad);
+        estadisticas.put("aciertos", aciertosTotales);
+        estadisticas.put("aciertosSuaves", aciertosBlandos);
+        estadisticas.put("fallos", fallosTotales);
+        estadisticas.put("tasaAciertos", consultas == 0 ? 0.0 : (double) (aciertosTotales + aciertosBlandos) / consultas);
+        estadisticas.put("suave", suave.obtenerEstadisticas());
+
+        long sello = candado.readLock();
+        try {
+            estadisticas.put("entradas", nodos.size());
+            estadisticas.put("peso", pesoTotal());
+            estadisticas.put("expulsiones", expulsiones);
+            estadisticas.put("expulsionesPresupuesto", expulsionesPresupuesto);
+            estadisticas.put("rechazadas", rechazadas);
+        } finally {
+            candado.unlockRead(sello);
+        }
+        return estadisticas;
+    }
+
+    @Override
+    public String getNombre() {
+        return nombre;
+    }
+
+    @Override
+    public long pesoEstimado() {
+        return pesoPublicado;
+    }
+
+    @Override
+    public double valorPorByteVictima() {
+        long sello = candado.readLock();
+        try {
+            Nodo<T> victima = victima();
+            return victima == null ? Double.POSITIVE_INFINITY : valorPorByte(victima);
+        } finally {
+            candado.unlockRead(sello);
+        }
+    }
+
+    @Override
+    public long liberar(double valorMaximo, long bytes) {
+        long liberados = 0;
+        long sello = bloquearEscritura();
+        try {
+            Nodo<T> victima = victima();
+            while (victima != null && liberados < bytes
+                    && (liberados == 0 || valorPorByte(victima) <= valorMaximo)) {
+                liberados += victima.peso;
+                expulsar(victima);
+                expulsionesPresupuesto++;
+                victima = victima();
+            }
+        } finally {
+            // Sin terminarEscritura(): quien llama es el propio presupuesto
+            pesoPublicado = pesoTotal();
+            candado.unlockWrite(sello);
+        }
+        return liberados;
+    }
+
+    /**
+     * Próxima entidad a expulsar: la menos reciente de la zona de prueba, luego de la protegida
+     * y por último de la ventana
+     */
+    private Nodo<T> victima() {
+        if (prueba.primero != null) {
+            return prueba.primero;
+        }
+        return protegida.primero != null ? protegida.primero : ventana.primero;
+    }
+
+    /**
+     * Accesos recientes (según el esbozo) por byte; el +1 hace que entre dos entidades
+     * sin accesos se expulse antes la más grande
+     */
+    private double valorPorByte(Nodo<T> nodo) {
+        return (esbozo.frecuencia(nodo.id) + 1.0) / nodo.peso;
+    }
+
+    /**
+     * Publica el peso, suelta el bloqueo de escritura y, ya sin él, ajusta el presupuesto
+     */
+    private void terminarEscritura(long sello) {
+        pesoPublicado = pesoTotal();
+        candado.unlockWrite(sello);
+        if (presupuesto != null) {
+            presupuesto.ajustar();
+        }
+    }
+
+    /**
+     * Busca el nodo de un ID sin bloquear; si una escritura coincide con la búsqueda
+     * (la validación falla o el mapa estaba a medio redimensionar) se repite con bloqueo de lectura
+     */
+    private Nodo<T> buscar(int id) {
+        long sello = candado.tryOptimisticRead();
+        if (sello != 0) {
+            try {
+                Nodo<T> nodo = nodos.get(id);
+                if (candado.validate(sello)) {
+                    return nodo;
+                }
+            } catch (RuntimeException e) {
+                // Estado intermedio de una escritura concurrente; se repite abajo
+            }
+        }
+
+        sello = candado.readLock();
+        try {
+            return nodos.get(id);
+        } finally {
+            candado.unlockRead(sello);
+        }
+    }
+
+    /**
+     * Anota un acceso para la política; cada APLICAR_CADA accesos intenta aplicarlos,
+     * solo si el bloqueo de escritura está libre
+     */
+    private void anotarLectura(int id) {
+        int posicion = siguienteLectura.getAndIncrement() & (TAMANIO_LECTURAS - 1);
+        lecturas.set(posicion, (1L << 32) | (id & 0xffffffffL));
+        if ((posicion & (APLICAR_CADA - 1)) == APLICAR_CADA - 1) {
+            long sello = candado.tryWriteLock();
+            if (sello != 0) {
+                try {
+                    aplicarLecturas();
+                } finally {
+                    candado.unlockWrite(sello);
+                }
+            }
+        }
+    }
+
+    /**
+     * Toma el bloqueo de escritura y aplica antes los accesos pendientes, para que las
+     * expulsiones decidan con la frecuencia y el orden LRU al día
+     */
+    private long bloquearEscritura() {
+        long sello = candado.writeLock();
+        aplicarLecturas();
+        return sello;
+    }
+
+    /**
+     * Aplica al esbozo y a las listas LRU los accesos anotados (con el bloqueo de escritura)
+     */
+    private void aplicarLecturas() {
+        for (int i = 0; i < TAMANIO_LECTURAS; i++) {
+            long lectura = lecturas.getAndSet(i, 0);
+            if (lectura != 0) {
+                int id = (int) lectura;
+                esbozo.incrementar(id);
+                Nodo<T> nodo = nodos.get(id);
+                if (nodo != null) {
+                    alAcceder(nodo);
+                }
+            }
+        }
+    }
+
+    /**
+     * Devuelve a la caché una entidad recuperada del nivel blando, solo si el bloqueo de
+     * escritura está libre y nadie la ha cambiado entretanto (si no, se queda donde estaba)
+     */
+    private void promover(T entidad) {
+        long sello = candado.tryWriteLock();
+        if (sello == 0) {
+            return;
+        }
+        try {
+            int id = entidad.getId();
+            if (nodos.get(id) == null && suave.quitar(id, entidad)) {
+                insertar(entidad, false);
+            }
+        } finally {
+            terminarEscritura(sello);
+        }
+    }
+
+    private T eliminar(int id) {
+        suave.quitar(id);
+        Nodo<T> nodo = nodos.remove(id);
+        if (nodo == null) {
+            return null;
+        }
+        lista(nodo.segmento).quitar(nodo);
+        return nodo.valor;
+    }
+
+    private void insertar(T entidad, boolean reemplazar) {
+        int id = entidad.getId();
+        // La copia del nivel blando quedaría vieja
+        suave.quitar(id);
+        long peso = Math.max(1, pesador.applyAsLong(entidad));
+        Nodo<T> existente = nodos.get(id);
+
+        if (existente != null) {
+            if (reemplazar) {
+                lista(existente.segmento).cambiarPeso(existente, peso);
+                existente.valor = entidad;
+                alAcceder(existente);
+                expulsarExceso();
+            }
+            return;
+        }
+
+        if (peso > maximo) {
+            // Nunca cabría: no se guarda en lugar de vaciar la caché entera por ella
+            rechazadas++;
+            return;
+        }
+
+        esbozo.incrementar(id);
+        Nodo<T> nodo = new Nodo<>(id, entidad, peso);
+        nodos.put(id, nodo);
+        ventana.agregar(nodo, VENTANA);
+        expulsarExceso();
+    }
+
+    /**
+     * Actualiza la posición de una entidad tras un acierto
+     */
+    private void alAcceder(Nodo<T> nodo) {
+        switch (nodo.segmento) {
+            case VENTANA:
+                ventana.alFinal(nodo);
+                break;
+            case PRUEBA:
+                // Segundo acceso en la zona principal: pasa a la protegida
+                prueba.quitar(nodo);
+                protegida.agregar(nodo, PROTEGIDA);
+                while (protegida.peso > maximoProtegida && protegida.primero != nodo) {
+                    Nodo<T> degradado = protegida.primero;
+                    protegida.quitar(degradado);
+                    prueba.agregar(degradado, PRUEBA);
+                }
+                break;
+            default:
+                protegida.alFinal(nodo);
+                break;
+        }
+    }
+
+    /**
+     * Pasa a la zona de prueba lo que sobra de la ventana y, si se supera el máximo,
+     * decide entre cada candidato recién llegado y la víctima de la zona principal
+     */
+    private void expulsarExceso() {
+        Nodo<T> candidato = null;
+        while (ventana.peso > maximoVentana && ventana.primero != null) {
+            Nodo<T> saliente = ventana.primero;
+            ventana.quitar(saliente);
+            prueba.agregar(saliente, PRUEBA);
+            if (candidato == null) {
+                candidato = saliente;
+            }
+        }
+
+        while (pesoTotal() > maximo) {
+            Nodo<T> victima = victima();
+
+            if (candidato == null || candidato == victima) {
+                if (candidato == victima) {
+                    candidato = candidato.siguiente;
+                }
+                expulsar(victima);
+            } else if (esbozo.frecuencia(candidato.id) > esbozo.frecuencia(victima.id)) {
+                expulsar(victima);
+            } else {
+                Nodo<T> perdedor = candidato;
+                candidato = candidato.siguiente;
+                expulsar(perdedor);
+            }
+        }
+    }
+
+    private void expulsar(Nodo<T> nodo) {
+        lista(nodo.segmento).quitar(nodo);
+        nodos.remove(nodo.id);
+        expulsiones++;
+        suave.guardar(nodo.id, nodo.valor);
+    }
+
+    private long pesoTotal() {
+        return ventana.peso + prueba.peso + protegida.peso;
+    }
+
+    private Lista<T> lista(byte segmento) {
+        switch (segmento) {
+            case VENTANA:
+                return ventana;
+            case PRUEBA:
+                return prueba;
+            default:
+                return protegida;
+        }
+    }
+
+    private static final class Nodo<T> {
+        final int id;
+        // Se lee sin bloqueo desde obtener()
+        volatile T valor;
+        long peso;
+        byte segmento;
+        Nodo<T> anterior;
+        Nodo<T> siguiente;
+
+        Nodo(int id, T valor, long peso) {
+            this.id = id;
+            this.valor = valor;
+            this.peso = peso;
+        }
+    }
+
+    /**
+     * Lista doblemente enlazada en orden LRU: primero el menos reciente
+     */
+    private static final class Lista<T> {
+        Nodo<T> primero;
+        Nodo<T> ultimo;
+        long peso;
+
+        void agregar(Nodo<T> nodo, byte segmento) {
+            nodo.segmento = segmento;
+            nodo.anterior = ultimo;
+            nodo.siguiente = null;
+            if (ultimo == null) {
+                primero = nodo;
+            } else {
+                ultimo.siguiente = nodo;
+            }
+            ultimo = nodo;
+            peso += nodo.peso;
+        }
+
+        void quitar(Nodo<T> nodo) {
+            if (nodo.anterior == null) {
+                primero = nodo.siguiente;
+            } else {
+                nodo.anterior.siguiente = nodo.siguiente;
+            }
+            if (nodo.siguiente == null) {
+                ultimo = nodo.anterior;
+            } else {
+                nodo.siguiente.anterior = nodo.anterior;
+            }
+            nodo.anterior = null;
+            nodo.siguiente = null;
+            peso -= nodo.peso;
+        }
+
+        void alFinal(Nodo<T> nodo) {
+            if (nodo != ultimo) {
+                byte segmento = nodo.segmento;
+                quitar(nodo);
+                agregar(nodo, segmento);
+            }
+        }
+
+        void cambiarPeso(Nodo<T> nodo, long nuevo) {
+            peso += nuevo - nodo.peso;
+            nodo.peso = nuevo;
+        }
+
+        void vaciar() {
+            primero = null;
+            ultimo = null;
+            peso = 0;
+        }
+    }
+
+    /**
+     * Esbozo Count-Min de frecuencias con contadores de 4 bits (16 por long) y cuatro funciones hash.
+     * Cada cierto número de accesos todos los contadores se dividen por dos, de modo que
+     * la frecuencia refleja los accesos recientes y no el historial completo.
+     */
+    private static final class Esbozo {
+        private static final long[] SEMILLAS = {
+                0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L };
+        private static final long MASCARA_MITAD = 0x7777777777777777L;
+
+        private final long[] tabla;
+        private final int mascara;
+        private final int periodo;
+        private int accesos;
+
+        Esbozo(int entradas) {
+            int longs = Integer.highestOneBit(Math.max(entradas, 16) - 1) << 1;
+            tabla = new long[longs];
+            mascara = longs - 1;
+            periodo = 10 * Math.max(entradas, 16);
+        }
+
+        void incrementar(int id) {
+            boolean incrementado = false;
+            for (int i = 0; i < 4; i++) {
+                int posicion = posicion(id, i);
+                int desplazamiento = desplazamiento(id, i);
+                long contador = (tabla[posicion] >>> desplazamiento) & 0xfL;
+                if (contador < 15) {
+                    tabla[posicion] += 1L << desplazamiento;
+                    incrementado = true;
+                }
+            }
+            if (incrementado && ++accesos >= periodo) {
+                envejecer();
+            }
+        }
+
+        int frecuencia(int id) {
+            int minimo = 15;
+            for (int i = 0; i < 4; i++) {
+                long contador = (tabla[posicion(id, i)] >>> desplazamiento(id, i)) & 0xfL;
+                minimo = Math.min(minimo, (int) contador);
+            }
+            return minimo;
+        }
+
+        private void envejecer() {
+            for (int i = 0; i < tabla.length; i++) {
+                tabla[i] = (tabla[i] >>> 1) & MASCARA_MITAD;
+            }
+            accesos /= 2;
+        }
+
+        private int posicion(int id, int i) {
+            long h = (id + SEMILLAS[i]) * SEMILLAS[i];
+            return (int) (h >>> 32) & mascara;
+        }
+
+        private int desplazamiento(int id, int i) {
+            long h = (id ^ SEMILLAS[(i + 1) & 3]) * SEMILLAS[i];
+            return (int) ((h >>> 60) << 2);
+        }
+    }
+}
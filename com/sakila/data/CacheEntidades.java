@@ -0,0 +1,283 @@
+package com.sakila.data;
+
+import com.sakila.models.Entity;
+import com.sakila.utils.ConcurrentIntObjectMap;
+import com.sakila.utils.IntObjectMap;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Caché de entidades sin límite de tamaño, para tablas pequeñas que se cargan completas.
+ * Las búsquedas por ID son O(1) y los listados salen ordenados por ID, como los devuelve la tabla.
+ * Las claves se guardan como int primitivos, sin un Integer ni un nodo por entidad.
+ * <p>
+ * Es segura entre hilos sin un bloqueo global: las lecturas no bloquean nunca y cada
+ * escritura bloquea solo el segmento de su ID (ConcurrentIntObjectMap), así que un mismo
+ * controlador puede atender a muchos hilos a la vez.
+ * <p>
+ * El listado se publica como una lista inmutable compartida, marcada con la versión de la
+ * caché con que se construyó. Cada cambio sube la versión y la primera lectura posterior
+ * reconstruye la lista sin bloquear a nadie; mientras no haya cambios, listar repetidamente
+ * no copia nada.
+ * <p>
+ * Si se crea con nombre y estimador cuenta en el presupuesto global de memoria
+ * (PresupuestoMemoria), aunque nunca expulsa: la tabla tiene que estar entera.
+ * @param <T> Tipo de entidad
+ * @author Nicolas Zierow Fermin
+ */
+public class CacheEntidades<T extends Entity> implements iCacheEntidades<T>, iParticipantePresupuesto {
+    private final ConcurrentIntObjectMap<T> porId = new ConcurrentIntObjectMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicReference<Vista<T>> vista =
+            new AtomicReference<>(new Vista<>(0, Collections.emptyList()));
+
+    private final String nombre;
+    private final ToLongFunction<T> pesador;
+    // Suma de los pesos estimados: cada escritura suelta la ajusta con la entidad que sustituye
+    // y las operaciones en bloque la recalculan, corrigiendo cualquier desfase entre hilos
+    private final AtomicLong peso = new AtomicLong();
+
+    /**
+     * Caché fuera del presupuesto global
+     */
+    public CacheEntidades() {
+        this.nombre = null;
+        this.pesador = null;
+    }
+
+    /**
+     * Caché que cuenta en el presupuesto global de memoria
+     * @param nombre Nombre de la caché, para estadísticas
+     * @param pesador Bytes estimados de cada entidad
+     */
+    public CacheEntidades(String nombre, ToLongFunction<T> pesador) {
+        this.nombre = nombre;
+        this.pesador = pesador;
+        PresupuestoMemoria.global().registrar(this);
+    }
+
+    /**
+     * Obtiene una entidad por su ID
+     * @param id ID de la entidad
+     * @return Entidad en caché, o null si no está
+     */
+    @Override
+    public T obtener(int id) {
+        return porId.get(id);
+    }
+
+    /**
+     * Indica si una entidad está en la caché
+     * @param id ID de la entidad
+     * @return true si está
+     */
+    @Override
+    public boolean contiene(int id) {
+        return porId.containsKey(id);
+    }
+
+    /**
+     * Guarda una entidad, reemplazando la que tuviera el mismo ID
+     * @param entidad Entidad a guardar
+     */
+    @Override
+    public void guardar(T entidad) {
+        T anterior = porId.put(entidad.getId(), entidad);
+        peso.addAndGet(pesar(entidad) - pesar(anterior));
+        version.incrementAndGet();
+    }
+
+    /**
+     * Guarda una entidad solo si su ID no está ya en la caché
+     * @param entidad Entidad a guardar
+     */
+    @Override
+    public void guardarSiFalta(T entidad) {
+        if (porId.putIfAbsent(entidad.getId(), entidad) == null) {
+            peso.addAndGet(pesar(entidad));
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * Guarda varias entidades de una vez
+     * @param entidades Entidades a guardar
+     */
+    @Override
+    public void guardarTodas(Collection<T> entidades) {
+        porId.putAll(porClave(entidades));
+        version.incrementAndGet();
+        recalcularPeso();
+    }
+
+    /**
+     * Sustituye todo el contenido de la caché (p. ej. tras recargar la tabla)
+     * @param entidades Entidades nuevas
+     */
+    @Override
+    public void reemplazarTodo(Collection<T> entidades) {
+        porId.replaceContents(porClave(entidades));
+        version.incrementAndGet();
+        recalcularPeso();
+    }
+
+    /**
+     * Quita una entidad de la caché
+     * @param id ID de la entidad
+     * @return La entidad quitada, o null si no estaba
+     */
+    @Override
+    public T quitar(int id) {
+        T quitada = porId.remove(id);
+        if (quitada != null) {
+            peso.addAndGet(-pesar(quitada));
+            version.incrementAndGet();
+        }
+        return quitada;
+    }
+
+    /**
+     * Quita varias entidades de la caché
+     * @param ids IDs de las entidades
+     */
+    @Override
+    public void quitarTodas(int... ids) {
+        porId.removeAll(ids);
+        version.incrementAndGet();
+        recalcularPeso();
+    }
+
+    /**
+     * Entidades en caché, ordenadas por ID. Mientras no haya cambios todas las llamadas
+     * devuelven la misma lista, sin copiarla ni bloquear
+     * @return Lista inmutable con las entidades
+     */
+    @Override
+    public List<T> valores() {
+        // La versión se lee antes de recorrer: si algo cambia durante el recorrido,
+        // la lista nace ya caducada y la siguiente lectura la rehace
+        long leida = version.get();
+        Vista<T> actual = vista.get();
+        if (actual.version == leida) {
+            return actual.lista;
+        }
+
+        List<T> ordenadas = porId.values();
+        ordenadas.sort(Comparator.comparingInt(Entity::getId));
+        Vista<T> nueva = new Vista<>(leida, Collections.unmodifiableList(ordenadas));
+        // Si otro hilo publicó a la vez una vista más reciente, se conserva la suya
+        while (actual.version < leida && !vista.compareAndSet(actual, nueva)) {
+            actual = vista.get();
+        }
+        return nueva.lista;
+    }
+
+    /**
+     * Entidades en caché que cumplen una condición
+     * @param condicion Condición a cumplir
+     * @return Lista nueva con las entidades que la cumplen
+     */
+    @Override
+    public List<T> filtrar(Predicate<T> condicion) {
+        // Se recorre el listado compartido, que ya está ordenado
+        List<T> resultado = new ArrayList<>();
+        for (T entidad : valores()) {
+            if (condicion.test(entidad)) {
+                resultado.add(entidad);
+            }
+        }
+        return resultado;
+    }
+
+    @Override
+    public int tamanio() {
+        return porId.size();
+    }
+
+    @Override
+    public boolean estaVacia() {
+        return porId.isEmpty();
+    }
+
+    @Override
+    public boolean estaLlena() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("entradas", porId.size());
+        if (pesador != null) {
+            estadisticas.put("pesoEstimado", pesoEstimado());
+        }
+        return estadisticas;
+    }
+
+    @Override
+    public String getNombre() {
+        return nombre;
+    }
+
+    @Override
+    public long pesoEstimado() {
+        return peso.get();
+    }
+
+    @Override
+    public double valorPorByteVictima() {
+        return Double.POSITIVE_INFINITY;
+    }
+
+    @Override
+    public long liberar(double valorMaximo, long bytes) {
+        return 0;
+    }
+
+    private static <T extends Entity> IntObjectMap<T> porClave(Collection<T> entidades) {
+        IntObjectMap<T> mapa = new IntObjectMap<>(entidades.size());
+        for (T entidad : entidades) {
+            mapa.put(entidad.getId(), entidad);
+        }
+        return mapa;
+    }
+
+    /**
+     * Recalcula el peso desde el mapa, tras una operación en bloque
+     */
+    private void recalcularPeso() {
+        if (pesador == null) {
+            return;
+        }
+        long[] total = new long[1];
+        porId.forEach((id, entidad) -> total[0] += pesar(entidad));
+        peso.set(total[0]);
+    }
+
+    private long pesar(T entidad) {
+        return entidad == null || pesador == null ? 0 : pesador.applyAsLong(entidad);
+    }
+
+    /**
+     * Listado ordenado junto con la versión de la caché a la que corresponde
+     */
+    private static final class Vista<T> {
+        final long version;
+        final List<T> lista;
+
+        Vista(long version, List<T> lista) {
+            this.version = version;
+            this.lista = lista;
+        }
+    }
+}
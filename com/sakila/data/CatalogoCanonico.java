@@ -0,0 +1,85 @@
+package com.sakila.data;
+
+import com.sakila.models.Entity;
+import com.sakila.utils.IntObjectMap;
+import com.sakila.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.IntFunction;
+
+/**
+ * Tabla de instancias canónicas para tablas de catálogo pequeñas (p. ej. language):
+ * todas las filas que apuntan al mismo ID comparten un único objeto en lugar de crear
+ * uno por fila. Se precarga completa; las lecturas no bloquean porque la tabla se
+ * sustituye entera (copia al escribir), y solo cambia cuando aparece un ID nuevo.
+ * @param <T> Tipo de entidad
+ * @author Nicolas Zierow Fermin
+ */
+public class CatalogoCanonico<T extends Entity> {
+    private final String tabla;
+    private final FlujoFilas.Mapeador<T> mapeador;
+    private volatile IntObjectMap<T> instancias = new IntObjectMap<>();
+
+    /**
+     * Constructor
+     * @param tabla Tabla del catálogo (se lee con SELECT *)
+     * @param mapeador Conversión de cada fila
+     */
+    public CatalogoCanonico(String tabla, FlujoFilas.Mapeador<T> mapeador) {
+        this.tabla = tabla;
+        this.mapeador = mapeador;
+    }
+
+    /**
+     * Carga todas las filas del catálogo, sustituyendo las instancias anteriores
+     */
+    public synchronized void cargar() {
+        IntObjectMap<T> cargadas = new IntObjectMap<>();
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             Statement stmt = conexion.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT * FROM " + tabla)) {
+            while (rs.next()) {
+                T entidad = mapeador.mapear(rs);
+                cargadas.put(entidad.getId(), entidad);
+            }
+            instancias = cargadas;
+            Logger.info("Catálogo " + tabla + " cargado: " + cargadas.size());
+        } catch (SQLException e) {
+            Logger.error("Error al cargar el catálogo " + tabla + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Obtiene la instancia canónica de un ID; si no está (fila nueva desde la carga)
+     * se crea una vez y se comparte desde entonces
+     * @param id ID de la entidad
+     * @param crear Crea la entidad si el ID no está en el catálogo
+     * @return Instancia compartida
+     */
+    public T obtener(int id, IntFunction<T> crear) {
+        T existente = instancias.get(id);
+        if (existente != null) {
+            return existente;
+        }
+
+        synchronized (this) {
+            existente = instancias.get(id);
+            if (existente != null) {
+                return existente;
+            }
+            T nueva = crear.apply(id);
+            IntObjectMap<T> copia = new IntObjectMap<>(instancias);
+            copia.put(id, nueva);
+            instancias = copia;
+            return nueva;
+        }
+    }
+
+    public int tamanio() {
+        return instancias.size();
+    }
+}
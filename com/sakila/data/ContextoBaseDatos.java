@@ -3,72 +3,226 @@ package com.sakila.data;
 import com.sakila.utils.DatabaseConnection;
 import com.sakila.utils.Logger;
 
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Map;
 
 /**
  * Clase para manejar el contexto de la base de datos
  * @author Nicolas Zierow Fermin
  */
 public class ContextoBaseDatos {
-    private static Connection conexion;
-    
+    // Ámbito de transacción más interno abierto por cada hilo
+    private static final ThreadLocal<Transaccion> transaccionActual = new ThreadLocal<>();
+    // Momento (System.nanoTime) de la última escritura; 0 si aún no hubo ninguna
+    private static volatile long ultimaEscritura;
+
     /**
-     * Obtiene la conexión a la base de datos
+     * Obtiene una conexión a la base de datos.
+     * Si el hilo tiene una transacción abierta se devuelve su conexión; si no, una del pool.
+     * En ambos casos el llamador debe cerrarla (p. ej. con try-with-resources).
+     * Las sentencias preparadas con prepareStatement(sql) se reutilizan desde la caché de la conexión.
      * @return Conexión a la base de datos
      * @throws SQLException Si ocurre un error al conectar
      */
     public static Connection getConexion() throws SQLException {
-        if (conexion == null || conexion.isClosed()) {
-            conexion = DatabaseConnection.getConnection();
+        Transaccion transaccion = transaccionActual.get();
+        if (transaccion != null) {
+            return sinCierre(transaccion.getConexion());
         }
-        return conexion;
+        return DatabaseConnection.getConnection();
     }
-    
+
     /**
-     * Cierra la conexión a la base de datos
+     * Obtiene una conexión para lecturas. Va a la réplica salvo que el hilo tenga una
+     * transacción abierta o haya habido una escritura hace menos de la ventana configurada
+     * (db.replica.ventana.ms); en esos casos se lee del primario para ver los propios cambios.
+     * El llamador debe cerrarla igual que con getConexion().
+     * @return Conexión a la base de datos
+     * @throws SQLException Si ocurre un error al conectar
+     */
+    public static Connection getConexionLectura() throws SQLException {
+        if (transaccionActual.get() != null || dentroDeVentanaEscritura()) {
+            return getConexion();
+        }
+        return DatabaseConnection.getReadConnection();
+    }
+
+    /**
+     * Anota que se acaba de escribir en el primario y registra la recarga de la caché
+     * por si la transacción actual se revierte (ver alRevertir)
+     * @param clave Clave de la acción (normalmente el controlador)
+     * @param recarga Acción que vuelve a cargar la caché
+     */
+    public static void registrarEscritura(Object clave, Runnable recarga) {
+        ultimaEscritura = System.nanoTime();
+        alRevertir(clave, recarga);
+    }
+
+    private static boolean dentroDeVentanaEscritura() {
+        long ultima = ultimaEscritura;
+        if (ultima == 0) {
+            return false;
+        }
+        long ventanaNanos = DatabaseConnection.getReadYourWritesWindowMs() * 1_000_000L;
+        return System.nanoTime() - ultima < ventanaNanos;
+    }
+
+    /**
+     * Obtiene las estadísticas del pool de conexiones
+     * @return Mapa con estadísticas
+     */
+    public static Map<String, Object> getEstadisticasPool() {
+        return DatabaseConnection.getPoolStats();
+    }
+
+    /**
+     * Obtiene las estadísticas del pool de la réplica de lectura
+     * @return Mapa con estadísticas, vacío si no hay réplica
+     */
+    public static Map<String, Object> getEstadisticasReplica() {
+        return DatabaseConnection.getReplicaPoolStats();
+    }
+
+    /**
+     * Obtiene las estadísticas de la caché de sentencias preparadas que usan los controladores
+     * @return Mapa con aciertos, fallos, expulsiones y tasa de aciertos
+     */
+    public static Map<String, Object> getEstadisticasSentencias() {
+        return DatabaseConnection.getStatementCacheStats();
+    }
+
+    /**
+     * Cierra el pool de conexiones a la base de datos
      */
     public static void cerrarConexion() {
-        if (conexion != null) {
+        RefrescoPeriodico.detener();
+        InstantaneaCache.guardarTodas();
+        EjecutorAsincrono.cerrar();
+        DatabaseConnection.closePool();
+        Logger.info("Conexión a la base de datos cerrada");
+    }
+
+    /**
+     * Abre un ámbito de transacción en el hilo actual. Si ya hay uno abierto, el nuevo
+     * se anida con un savepoint. Debe usarse con try-with-resources.
+     * @return Ámbito de transacción
+     * @throws SQLException Si ocurre un error al iniciar la transacción
+     */
+    public static Transaccion transaccion() throws SQLException {
+        Transaccion padre = transaccionActual.get();
+        Transaccion nueva;
+
+        if (padre == null) {
+            Connection conn = DatabaseConnection.getConnection();
             try {
-                conexion.close();
-                Logger.info("Conexión a la base de datos cerrada");
+                conn.setAutoCommit(false);
             } catch (SQLException e) {
-                Logger.error("Error al cerrar la conexión: " + e.getMessage());
-                e.printStackTrace();
+                conn.close();
+                throw e;
             }
+            nueva = new Transaccion(null, conn, null);
+            Logger.info("Transacción iniciada");
+        } else {
+            Connection conn = padre.getConexion();
+            nueva = new Transaccion(padre, conn, conn.setSavepoint());
+            Logger.debug("Transacción anidada iniciada");
         }
+
+        transaccionActual.set(nueva);
+        return nueva;
     }
-    
+
     /**
-     * Inicia una transacción
+     * Indica si el hilo actual tiene una transacción abierta
+     * @return true si hay una transacción abierta
+     */
+    public static boolean enTransaccion() {
+        return transaccionActual.get() != null;
+    }
+
+    /**
+     * Registra una acción para resincronizar una caché si la transacción actual se revierte.
+     * Fuera de una transacción no hace nada.
+     * @param clave Clave de la acción (normalmente el controlador); no se registra dos veces
+     * @param accion Acción a ejecutar tras revertir
+     */
+    public static void alRevertir(Object clave, Runnable accion) {
+        Transaccion actual = transaccionActual.get();
+        if (actual != null) {
+            actual.registrarAlRevertir(clave, accion);
+        }
+    }
+
+    static Transaccion transaccionActual() {
+        return transaccionActual.get();
+    }
+
+    static void salirTransaccion(Transaccion transaccion) {
+        if (transaccion.getPadre() != null) {
+            transaccionActual.set(transaccion.getPadre());
+        } else {
+            transaccionActual.remove();
+        }
+    }
+
+    /**
+     * Inicia una transacción en el hilo actual
      * @throws SQLException Si ocurre un error al iniciar la transacción
+     * @deprecated Use transaccion() con try-with-resources
      */
+    @Deprecated
     public static void iniciarTransaccion() throws SQLException {
-        Connection conn = getConexion();
-        conn.setAutoCommit(false);
-        Logger.info("Transacción iniciada");
+        transaccion();
     }
-    
+
     /**
-     * Confirma una transacción
+     * Confirma la transacción más interna del hilo actual
      * @throws SQLException Si ocurre un error al confirmar la transacción
+     * @deprecated Use transaccion() con try-with-resources
      */
+    @Deprecated
     public static void confirmarTransaccion() throws SQLException {
-        Connection conn = getConexion();
-        conn.commit();
-        conn.setAutoCommit(true);
-        Logger.info("Transacción confirmada");
+        Transaccion actual = transaccionActual.get();
+        if (actual == null) {
+            throw new SQLException("No hay una transacción abierta en este hilo");
+        }
+        actual.confirmar();
     }
-    
+
     /**
-     * Revierte una transacción
+     * Revierte la transacción más interna del hilo actual
      * @throws SQLException Si ocurre un error al revertir la transacción
+     * @deprecated Use transaccion() con try-with-resources
      */
+    @Deprecated
     public static void revertirTransaccion() throws SQLException {
-        Connection conn = getConexion();
-        conn.rollback();
-        conn.setAutoCommit(true);
-        Logger.info("Transacción revertida");
+        Transaccion actual = transaccionActual.get();
+        if (actual == null) {
+            throw new SQLException("No hay una transacción abierta en este hilo");
+        }
+        actual.revertir();
+    }
+
+    /**
+     * Envuelve una conexión para que close() no la devuelva al pool
+     * (la conexión de una transacción vive hasta que se cierra su ámbito raíz)
+     */
+    private static Connection sinCierre(Connection conn) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class },
+                (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        return null;
+                    }
+                    try {
+                        return method.invoke(conn, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
     }
 }
@@ -41,6 +41,20 @@ public abstract class DataContext<T extends Entity> implements iDatapost<T> {
         return postImplementation(entity);
     }
     
+    /**
+     * Método final para crear varias entidades en lote
+     * @param entities Entidades a crear
+     * @return true si se crearon todas, false en caso contrario
+     */
+    @Override
+    public final boolean postAll(List<T> entities) {
+        if (!OperacionesEnLote.validar(entities)) {
+            return false;
+        }
+        
+        return postAllImplementation(entities);
+    }
+    
     /**
      * Método final para actualizar una entidad
      * @param entity Entidad a actualizar
@@ -56,6 +70,20 @@ public abstract class DataContext<T extends Entity> implements iDatapost<T> {
         return putImplementation(entity);
     }
     
+    /**
+     * Método final para actualizar varias entidades en lote
+     * @param entities Entidades a actualizar
+     * @return true si se actualizaron, false en caso contrario
+     */
+    @Override
+    public final boolean putAll(List<T> entities) {
+        if (!OperacionesEnLote.validar(entities)) {
+            return false;
+        }
+        
+        return putAllImplementation(entities);
+    }
+    
     /**
      * Método final para eliminar una entidad
      * @param id ID de la entidad a eliminar
@@ -71,6 +99,20 @@ public abstract class DataContext<T extends Entity> implements iDatapost<T> {
         return deleteImplementation(id);
     }
     
+    /**
+     * Método final para eliminar varias entidades
+     * @param ids IDs de las entidades a eliminar
+     * @return true si se eliminaron, false en caso contrario
+     */
+    @Override
+    public final boolean deleteAll(int... ids) {
+        if (!OperacionesEnLote.validarIds(ids)) {
+            return false;
+        }
+        
+        return deleteAllImplementation(ids);
+    }
+    
     /**
      * Método final para obtener una entidad por su ID
      * @param id ID de la entidad
@@ -117,6 +159,13 @@ public abstract class DataContext<T extends Entity> implements iDatapost<T> {
      */
     protected abstract boolean postImplementation(T entity);
     
+    /**
+     * Implementación del método postAll
+     * @param entities Entidades a crear, ya validadas
+     * @return true si se crearon todas, false en caso contrario
+     */
+    protected abstract boolean postAllImplementation(List<T> entities);
+    
     /**
      * Implementación del método put
      * @param entity Entidad a actualizar
@@ -124,6 +173,13 @@ public abstract class DataContext<T extends Entity> implements iDatapost<T> {
      */
     protected abstract boolean putImplementation(T entity);
     
+    /**
+     * Implementación del método putAll
+     * @param entities Entidades a actualizar, ya validadas
+     * @return true si se actualizaron, false en caso contrario
+     */
+    protected abstract boolean putAllImplementation(List<T> entities);
+    
     /**
      * Implementación del método delete
      * @param id ID de la entidad a eliminar
@@ -131,6 +187,13 @@ public abstract class DataContext<T extends Entity> implements iDatapost<T> {
      */
     protected abstract boolean deleteImplementation(int id);
     
+    /**
+     * Implementación del método deleteAll
+     * @param ids IDs de las entidades a eliminar, ya validados
+     * @return true si se eliminaron, false en caso contrario
+     */
+    protected abstract boolean deleteAllImplementation(int... ids);
+    
     /**
      * Implementación del método get por ID
      * @param id ID de la entidad
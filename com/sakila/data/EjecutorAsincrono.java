@@ -0,0 +1,129 @@
+package com.sakila.data;
+
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.Logger;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Ejecutor compartido por las operaciones asíncronas de los controladores.
+ * En Java 21+ usa un hilo virtual por tarea; en versiones anteriores, un pool de hilos
+ * del mismo tamaño que el pool de conexiones.
+ * Las tareas corren fuera de la transacción del hilo que las lanza.
+ * @author Nicolas Zierow Fermin
+ */
+public final class EjecutorAsincrono {
+    private static ExecutorService ejecutor;
+    private static boolean hilosVirtuales;
+    // Con hilos virtuales limita las tareas simultáneas para que esperen aquí y no en el pool
+    private static volatile Semaphore permisos;
+
+    private EjecutorAsincrono() {
+    }
+
+    /**
+     * Ejecuta una operación de forma asíncrona
+     * @param operacion Operación a ejecutar (normalmente una llamada a un controlador)
+     * @param <R> Tipo del resultado
+     * @return Futuro con el resultado de la operación
+     */
+    public static <R> CompletableFuture<R> ejecutar(Supplier<R> operacion) {
+        ExecutorService destino = getEjecutor();
+        Semaphore limite = permisos;
+        return CompletableFuture.supplyAsync(() -> {
+            if (limite == null) {
+                return operacion.get();
+            }
+            try {
+                limite.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return operacion.get();
+            } finally {
+                limite.release();
+            }
+        }, destino);
+    }
+
+    /**
+     * Indica si las tareas se ejecutan en hilos virtuales
+     * @return true si hay hilos virtuales disponibles
+     */
+    public static synchronized boolean usaHilosVirtuales() {
+        getEjecutor();
+        return hilosVirtuales;
+    }
+
+    /**
+     * Detiene el ejecutor esperando un momento a que terminen las tareas en curso
+     */
+    public static synchronized void cerrar() {
+        if (ejecutor == null) {
+            return;
+        }
+        ejecutor.shutdown();
+        try {
+            if (!ejecutor.awaitTermination(5, TimeUnit.SECONDS)) {
+                Logger.warning("Tareas asíncronas sin terminar al cerrar; se interrumpen");
+                ejecutor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            ejecutor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        ejecutor = null;
+        permisos = null;
+    }
+
+    private static synchronized ExecutorService getEjecutor() {
+        if (ejecutor == null) {
+            int maximo = DatabaseConnection.getMaxPoolSize();
+            ejecutor = crearEjecutorVirtual();
+            hilosVirtuales = ejecutor != null;
+            if (hilosVirtuales) {
+                permisos = new Semaphore(maximo);
+                Logger.info("Ejecutor asíncrono con hilos virtuales (máx. " + maximo + " tareas simultáneas)");
+            } else {
+                ejecutor = crearPoolHilos(maximo);
+                Logger.info("Ejecutor asíncrono con " + maximo + " hilos");
+            }
+        }
+        return ejecutor;
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() por reflexión, para seguir compilando con Java 11
+     * @return El ejecutor, o null si la JVM no tiene hilos virtuales
+     */
+    private static ExecutorService crearEjecutorVirtual() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService crearPoolHilos(int hilos) {
+        AtomicInteger contador = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(hilos, hilos, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), tarea -> {
+                    Thread hilo = new Thread(tarea, "sakila-async-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+}
@@ -0,0 +1,90 @@
+package com.sakila.data;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contadores de uso de la caché de un controlador: cuántas peticiones sirve la caché,
+ * cuántas acaban en la base de datos y cuánto tardan las cargas. Sirve para ajustar
+ * los tamaños de las cachés con datos reales.
+ * <p>
+ * Los contadores no bloquean (LongAdder), así que se pueden anotar desde cualquier hilo.
+ * @author Nicolas Zierow Fermin
+ */
+public class EstadisticasCache {
+    private final String nombre;
+    private final iCacheEntidades<?> cache;
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+    private final LongAdder consultasBD = new LongAdder();
+    private final LongAdder cargas = new LongAdder();
+    private final LongAdder tiempoCargasMs = new LongAdder();
+    private volatile long ultimaCargaMs = -1;
+
+    /**
+     * Constructor
+     * @param nombre Nombre de la tabla o controlador
+     * @param cache Caché del controlador (de ella salen las entradas y sus propios contadores)
+     */
+    public EstadisticasCache(String nombre, iCacheEntidades<?> cache) {
+        this.nombre = nombre;
+        this.cache = cache;
+    }
+
+    /**
+     * Petición servida desde la caché
+     */
+    public void registrarAcierto() {
+        aciertos.increment();
+    }
+
+    /**
+     * Petición que la caché no pudo servir (haya o no consulta después)
+     */
+    public void registrarFallo() {
+        fallos.increment();
+    }
+
+    /**
+     * Consulta a la base de datos para servir una petición que la caché no cubría
+     */
+    public void registrarConsultaBD() {
+        consultasBD.increment();
+    }
+
+    /**
+     * Carga completada (tabla, instantánea o precarga)
+     * @param inicioNanos System.nanoTime() al empezar la carga
+     */
+    public void registrarCarga(long inicioNanos) {
+        long ms = (System.nanoTime() - inicioNanos) / 1_000_000;
+        cargas.increment();
+        tiempoCargasMs.add(ms);
+        ultimaCargaMs = ms;
+    }
+
+    /**
+     * Obtiene las estadísticas
+     * @return Mapa con entradas, aciertos, fallos, tasa de aciertos, consultas a la base de datos,
+     *         cargas y sus tiempos, y en "cache" los contadores propios de la caché
+     */
+    public Map<String, Object> obtener() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        long aciertosTotales = aciertos.sum();
+        long fallosTotales = fallos.sum();
+        long peticiones = aciertosTotales + fallosTotales;
+        estadisticas.put("nombre", nombre);
+        estadisticas.put("entradas", cache.tamanio());
+        estadisticas.put("aciertos", aciertosTotales);
+        estadisticas.put("fallos", fallosTotales);
+        estadisticas.put("tasaAciertos", peticiones == 0 ? 0.0 : (double) aciertosTotales / peticiones);
+        estadisticas.put("consultasBD", consultasBD.sum());
+        estadisticas.put("cargas", cargas.sum());
+        estadisticas.put("ultimaCargaMs", ultimaCargaMs);
+        estadisticas.put("tiempoCargasMs", tiempoCargasMs.sum());
+        estadisticas.put("cache", cache.obtenerEstadisticas());
+        return estadisticas;
+    }
+}
@@ -0,0 +1,103 @@
+package com.sakila.data;
+
+import com.sakila.models.Actor;
+import com.sakila.models.Address;
+import com.sakila.models.City;
+import com.sakila.models.Cliente;
+import com.sakila.models.Country;
+import com.sakila.models.Inventario;
+import com.sakila.models.Pelicula;
+import com.sakila.models.Store;
+
+/**
+ * Estimación aproximada de los bytes que ocupa una entidad en el heap
+ * (JVM de 64 bits con referencias comprimidas). Sirve para acotar cachés por memoria;
+ * no pretende ser exacta, solo proporcional.
+ * @author Nicolas Zierow Fermin
+ */
+public final class EstimadorTamanio {
+    private static final int CABECERA = 12;
+    private static final int REFERENCIA = 4;
+    private static final int FECHA = 24;
+    // Cabecera y campos de Entity (id, dos fechas, activo) con sus dos Date
+    private static final int ENTIDAD = CABECERA + 4 + 2 * REFERENCIA + 1 + 2 * FECHA;
+    // Referencia: id, resolutor y entidad
+    private static final int REFERENCIA_PEREZOSA = CABECERA + 4 + 3 * REFERENCIA;
+
+    private EstimadorTamanio() {
+    }
+
+    /**
+     * Bytes de un String (objeto más su array; texto Latin-1 ocupa un byte por carácter)
+     */
+    public static long texto(String texto) {
+        return texto == null ? 0 : alinear(CABECERA + 4 + 1 + 1 + REFERENCIA) + alinear(16 + texto.length());
+    }
+
+    /**
+     * Cliente con su tienda y dirección propias (se crean por fila al leerlo)
+     */
+    public static long cliente(Cliente cliente) {
+        return alinear(ENTIDAD + 5 * REFERENCIA)
+                + texto(cliente.getPrimerNombre())
+                + texto(cliente.getApellido())
+                + texto(cliente.getCorreoElectronico())
+                + tienda(cliente.getTienda())
+                + direccion(cliente.getDireccion());
+    }
+
+    /**
+     * Inventario con sus dos referencias; película y tienda son compartidas y no cuentan
+     */
+    public static long inventario(Inventario inventario) {
+        return alinear(ENTIDAD + 2 * REFERENCIA) + 2 * alinear(REFERENCIA_PEREZOSA);
+    }
+
+    public static long actor(Actor actor) {
+        return alinear(ENTIDAD + 2 * REFERENCIA)
+                + texto(actor.getNombrePrimer())
+                + texto(actor.getApellido());
+    }
+
+    public static long pais(Country pais) {
+        return alinear(ENTIDAD + REFERENCIA) + texto(pais.getCountry());
+    }
+
+    /**
+     * Ciudad; el país es el de la caché de países y no cuenta
+     */
+    public static long ciudad(City ciudad) {
+        return alinear(ENTIDAD + 2 * REFERENCIA) + texto(ciudad.getCity());
+    }
+
+    /**
+     * Película; los idiomas son compartidos y no cuentan
+     */
+    public static long pelicula(Pelicula pelicula) {
+        return alinear(ENTIDAD + 6 * REFERENCIA + 3 * 4 + 2 * 8)
+                + texto(pelicula.getTitulo())
+                + texto(pelicula.getDescripcion())
+                + texto(pelicula.getClasificacion())
+                + texto(pelicula.getCaracteristicasEspeciales());
+    }
+
+    private static long tienda(Store tienda) {
+        return tienda == null ? 0 : alinear(ENTIDAD + 2 * REFERENCIA);
+    }
+
+    private static long direccion(Address direccion) {
+        if (direccion == null) {
+            return 0;
+        }
+        return alinear(ENTIDAD + 6 * REFERENCIA)
+                + texto(direccion.getAddress())
+                + texto(direccion.getAddress2())
+                + texto(direccion.getDistrict())
+                + texto(direccion.getPostalCode())
+                + texto(direccion.getPhone());
+    }
+
+    private static long alinear(long bytes) {
+        return (bytes + 7) & ~7L;
+    }
+}
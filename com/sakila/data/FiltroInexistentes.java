@@ -0,0 +1,207 @@
+package com.sakila.data;
+
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.IntBloomFilter;
+import com.sakila.utils.IntSet;
+import com.sakila.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Evita consultar la base de datos por IDs que no existen, cuando get(int) no encuentra
+ * la entidad en la caché.
+ * <p>
+ * Dos niveles: un filtro de Bloom con las claves de la tabla (cargado al arrancar y ampliado
+ * con cada alta) descarta los IDs que seguro que no existen, y una caché negativa de vida
+ * corta (cache.negativos.ms) recuerda los que se consultaron sin encontrarse.
+ * <p>
+ * Los errores solo van en la dirección segura: un borrado no se quita del filtro (el ID
+ * se consulta una vez más y pasa a la caché negativa), y los IDs mayores que la clave más
+ * alta confirmada nunca se descartan por el filtro, porque pueden ser altas hechas desde
+ * otra aplicación que aún no se han visto.
+ * <p>
+ * La clave más alta confirmada solo sube con lecturas de la tabla que no se saltan filas:
+ * la carga, la reconstrucción y cada refresco incremental (RefrescoIncremental registra todas
+ * las filas que lee y luego confirma el máximo de la tabla). Las altas propias marcan su
+ * bit pero no la suben: si no, un alta de otra aplicación con un ID menor aún no vista
+ * quedaría descartada.
+ * @author Nicolas Zierow Fermin
+ */
+public class FiltroInexistentes {
+    private static final double FALSOS_POSITIVOS = 0.01;
+    // Margen para las altas posteriores a la carga sin que suba la tasa de falsos positivos
+    private static final double MARGEN_ALTAS = 1.5;
+    private static final long DEFAULT_NEGATIVOS_MS = 30000;
+    // Huecos de la caché negativa (potencia de dos); un ID nuevo sustituye al que ocupaba su hueco
+    private static final int HUECOS_NEGATIVOS = 4096;
+
+    private final String tabla;
+    private final String columnaId;
+    private final long vidaNegativosMs;
+    private final long origen = System.currentTimeMillis();
+
+    private volatile Claves claves;
+    // Cada hueco guarda (id << 32) | caducidad en segundos desde 'origen'; 0 es hueco libre
+    private final AtomicLongArray negativos = new AtomicLongArray(HUECOS_NEGATIVOS);
+
+    private final LongAdder descartadosFiltro = new LongAdder();
+    private final LongAdder descartadosNegativos = new LongAdder();
+    private final LongAdder anotados = new LongAdder();
+
+    /**
+     * Constructor
+     * @param tabla Tabla de la base de datos
+     * @param columnaId Columna de la clave primaria (autoincremental)
+     */
+    public FiltroInexistentes(String tabla, String columnaId) {
+        this.tabla = tabla;
+        this.columnaId = columnaId;
+        this.vidaNegativosMs = DatabaseConnection.getConfigNumber("cache.negativos.ms", DEFAULT_NEGATIVOS_MS);
+    }
+
+    /**
+     * Carga el filtro con todas las claves de la tabla. Si falla, el filtro queda inactivo
+     * (no descarta nada) y solo actúa la caché negativa.
+     */
+    public void cargar() {
+        String sql = "SELECT " + columnaId + " FROM " + tabla;
+        IntSet leidas = new IntSet();
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             Statement stmt = conexion.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next()) {
+                leidas.add(rs.getInt(1));
+            }
+        } catch (SQLException e) {
+            Logger.error("Error al cargar las claves de " + tabla + ": " + e.getMessage());
+            e.printStackTrace();
+            return;
+        }
+        reconstruir(leidas);
+    }
+
+    /**
+     * Rehace el filtro con todas las claves de la tabla (también quita las borradas)
+     * @param leidas Claves leídas de la tabla completa
+     */
+    public void reconstruir(IntSet leidas) {
+        IntBloomFilter filtro = new IntBloomFilter((int) (leidas.size() * MARGEN_ALTAS), FALSOS_POSITIVOS);
+        int maximo = 0;
+        for (int clave : leidas.toArray()) {
+            filtro.put(clave);
+            maximo = Math.max(maximo, clave);
+        }
+        claves = new Claves(filtro, maximo);
+        Logger.info("Filtro de claves de " + tabla + ": " + leidas.size() + " claves en " +
+                    filtro.bitSize() / 8 + " bytes");
+    }
+
+    /**
+     * Indica si merece la pena consultar un ID en la base de datos
+     * @param id ID buscado
+     * @return false si seguro que no existe (o se consultó hace poco sin encontrarse)
+     */
+    public boolean puedeExistir(int id) {
+        Claves actuales = claves;
+        if (actuales != null && id <= actuales.maximo.get() && !actuales.filtro.mightContain(id)) {
+            descartadosFiltro.increment();
+            return false;
+        }
+
+        long hueco = negativos.get(posicion(id));
+        if (hueco != 0 && (int) (hueco >>> 32) == id && (hueco & 0xffffffffL) > segundosDesdeOrigen()) {
+            descartadosNegativos.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Anota un ID que se ha consultado en la base de datos sin encontrarse
+     * @param id ID buscado
+     */
+    public void anotarInexistente(int id) {
+        if (vidaNegativosMs <= 0) {
+            return;
+        }
+        long caducidad = segundosDesdeOrigen() + (vidaNegativosMs + 999) / 1000;
+        negativos.set(posicion(id), ((long) id << 32) | (caducidad & 0xffffffffL));
+        anotados.increment();
+    }
+
+    /**
+     * Registra un ID dado de alta (o leído) para que no se descarte en adelante.
+     * No sube la clave más alta confirmada (ver confirmarMaximo())
+     * @param id ID de la entidad
+     */
+    public void registrar(int id) {
+        Claves actuales = claves;
+        if (actuales != null) {
+            actuales.filtro.put(id);
+            if (claves != actuales) {
+                // El filtro se recargó mientras tanto; el ID podría no estar en el nuevo
+                registrar(id);
+            }
+        }
+
+        int posicion = posicion(id);
+        long hueco = negativos.get(posicion);
+        if (hueco != 0 && (int) (hueco >>> 32) == id) {
+            negativos.compareAndSet(posicion, hueco, 0);
+        }
+    }
+
+    /**
+     * Sube la clave más alta confirmada. Solo se debe llamar después de registrar todas
+     * las filas de la tabla con ID hasta ese máximo
+     * @param maximo ID máximo de la tabla al empezar la lectura
+     */
+    public void confirmarMaximo(int maximo) {
+        Claves actuales = claves;
+        if (actuales != null) {
+            actuales.maximo.accumulateAndGet(maximo, Math::max);
+        }
+    }
+
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+        Claves actuales = claves;
+        estadisticas.put("tabla", tabla);
+        estadisticas.put("filtroActivo", actuales != null);
+        estadisticas.put("bitsFiltro", actuales != null ? actuales.filtro.bitSize() : 0);
+        estadisticas.put("descartadosFiltro", descartadosFiltro.sum());
+        estadisticas.put("descartadosNegativos", descartadosNegativos.sum());
+        estadisticas.put("anotadosNegativos", anotados.sum());
+        return estadisticas;
+    }
+
+    private long segundosDesdeOrigen() {
+        return (System.currentTimeMillis() - origen) / 1000;
+    }
+
+    private static int posicion(int id) {
+        int h = id * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (HUECOS_NEGATIVOS - 1);
+    }
+
+    /**
+     * Filtro cargado junto con la clave más alta que contiene
+     */
+    private static final class Claves {
+        final IntBloomFilter filtro;
+        final AtomicInteger maximo;
+
+        Claves(IntBloomFilter filtro, int maximo) {
+            this.filtro = filtro;
+            this.maximo = new AtomicInteger(maximo);
+        }
+    }
+}
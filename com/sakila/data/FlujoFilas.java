@@ -0,0 +1,114 @@
+package com.sakila.data;
+
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Lectura de consultas como Stream perezoso: las filas se convierten a medida que se
+ * consumen y el driver las trae por lotes (db.stream.fetch) en lugar de todas de golpe.
+ * El Stream retiene una conexión hasta que se cierra, así que debe usarse con try-with-resources:
+ * <pre>
+ * try (Stream&lt;Pelicula&gt; peliculas = peliculaControlador.stream()) {
+ *     peliculas.filter(...).forEach(...);
+ * }
+ * </pre>
+ * Con MySQL, para leer por lotes hace falta useCursorFetch=true en db.url;
+ * con db.stream.fetch negativo se usa el streaming fila a fila del driver.
+ * @author Nicolas Zierow Fermin
+ */
+public final class FlujoFilas {
+
+    /**
+     * Convierte la fila actual de un ResultSet en una entidad
+     * @param <T> Tipo de entidad
+     */
+    @FunctionalInterface
+    public interface Mapeador<T> {
+        T mapear(ResultSet rs) throws SQLException;
+    }
+
+    private FlujoFilas() {
+    }
+
+    /**
+     * Ejecuta una consulta de lectura y devuelve sus filas como Stream
+     * @param sql Consulta SQL
+     * @param mapeador Conversión de cada fila
+     * @param parametros Parámetros de la consulta, en orden
+     * @param <T> Tipo de entidad
+     * @return Stream de entidades (vacío si la consulta no se pudo ejecutar)
+     */
+    public static <T> Stream<T> abrir(String sql, Mapeador<T> mapeador, Object... parametros) {
+        Connection conexion = null;
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+        try {
+            conexion = ContextoBaseDatos.getConexionLectura();
+            // Sentencia propia (no de la caché): el fetch size y el cursor no deben heredarse
+            stmt = conexion.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            stmt.setFetchSize(DatabaseConnection.getStreamFetchSize());
+            for (int i = 0; i < parametros.length; i++) {
+                stmt.setObject(i + 1, parametros[i]);
+            }
+            rs = stmt.executeQuery();
+        } catch (SQLException e) {
+            Logger.error("Error al abrir consulta en flujo: " + e.getMessage());
+            e.printStackTrace();
+            cerrar(rs, stmt, conexion);
+            return Stream.empty();
+        }
+
+        ResultSet filas = rs;
+        PreparedStatement sentencia = stmt;
+        Connection conn = conexion;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(
+                Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> accion) {
+                try {
+                    if (!filas.next()) {
+                        return false;
+                    }
+                    accion.accept(mapeador.mapear(filas));
+                    return true;
+                } catch (SQLException e) {
+                    Logger.error("Error al leer consulta en flujo: " + e.getMessage());
+                    throw new IllegalStateException("Error al leer consulta en flujo", e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                            .onClose(() -> cerrar(filas, sentencia, conn));
+    }
+
+    private static void cerrar(ResultSet rs, PreparedStatement stmt, Connection conexion) {
+        try {
+            if (rs != null) {
+                rs.close();
+            }
+            if (stmt != null) {
+                stmt.close();
+            }
+        } catch (SQLException e) {
+            Logger.warning("Error al cerrar consulta en flujo: " + e.getMessage());
+        } finally {
+            if (conexion != null) {
+                try {
+                    conexion.close();
+                } catch (SQLException e) {
+                    Logger.warning("Error al devolver la conexión de la consulta en flujo: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
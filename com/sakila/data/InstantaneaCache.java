@@ -0,0 +1,285 @@
+package com.sakila.data;
+
+import com.sakila.models.Entity;
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.Logger;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Instantánea en disco de la caché de un controlador, para arrancar sin volver a leer
+ * la tabla entera. Al cerrar la aplicación se escribe un archivo binario con las entidades
+ * y la marca de agua del refresco incremental; al arrancar se lee con un mapeo en memoria
+ * y después se piden a MySQL solo las filas cambiadas desde esa marca.
+ * <p>
+ * Los archivos van en cache.instantaneas.dir (por defecto "cache"); con el valor vacío
+ * no se leen ni se escriben. Un archivo dañado o de otro formato se ignora y se carga la tabla.
+ * @param <T> Tipo de entidad
+ * @author Nicolas Zierow Fermin
+ */
+public class InstantaneaCache<T extends Entity> {
+    private static final int MAGICO = 0x53414B49; // "SAKI"
+    private static final int FORMATO = 1;
+    private static final String DEFAULT_DIRECTORIO = "cache";
+
+    private static final List<InstantaneaCache<?>> registradas = new CopyOnWriteArrayList<>();
+
+    /**
+     * Escribe los campos de una entidad; la lectura debe seguir el mismo orden
+     * @param <T> Tipo de entidad
+     */
+    @FunctionalInterface
+    public interface Escritura<T> {
+        void escribir(T entidad, Escritor escritor) throws IOException;
+    }
+
+    /**
+     * Crea una entidad a partir de los campos escritos por su Escritura
+     * @param <T> Tipo de entidad
+     */
+    @FunctionalInterface
+    public interface Lectura<T> {
+        T leer(Lector lector);
+    }
+
+    private final String tabla;
+    private final RefrescoIncremental<T> refresco;
+    private final iCacheEntidades<T> cache;
+    private final Escritura<T> escritura;
+    private final Lectura<T> lectura;
+
+    /**
+     * Constructor. La instantánea queda registrada para guardarse al cerrar la aplicación.
+     * @param refresco Refresco incremental de la caché (aporta la tabla y la marca de agua)
+     * @param cache Caché a guardar y restaurar
+     * @param escritura Escritura de cada entidad
+     * @param lectura Lectura de cada entidad
+     */
+    public InstantaneaCache(RefrescoIncremental<T> refresco, iCacheEntidades<T> cache,
+                            Escritura<T> escritura, Lectura<T> lectura) {
+        this.tabla = refresco.getTabla();
+        this.refresco = refresco;
+        this.cache = cache;
+        this.escritura = escritura;
+        this.lectura = lectura;
+        registradas.add(this);
+    }
+
+    /**
+     * Llena la caché desde la instantánea y aplica los cambios de la tabla posteriores a ella
+     * @return true si se restauró; false si no hay instantánea válida y hay que cargar la tabla
+     */
+    public boolean restaurar() {
+        Path archivo = archivo();
+        if (archivo == null || !Files.isReadable(archivo)) {
+            return false;
+        }
+
+        int cantidad;
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            MappedByteBuffer mapeo = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            Lector lector = new Lector(mapeo);
+
+            if (lector.leerInt() != MAGICO || lector.leerInt() != FORMATO || !tabla.equals(lector.leerTexto())) {
+                Logger.warning("Instantánea de " + tabla + " con otro formato, se ignora");
+                return false;
+            }
+            Timestamp marca = lector.leerFecha();
+            long filas = lector.leerLong();
+            int maximoId = lector.leerInt();
+            cantidad = lector.leerInt();
+
+            List<T> entidades = new ArrayList<>(cantidad);
+            for (int i = 0; i < cantidad; i++) {
+                entidades.add(lectura.leer(lector));
+            }
+            cache.reemplazarTodo(entidades);
+            refresco.restaurar(marca, filas, maximoId);
+        } catch (IOException | RuntimeException e) {
+            Logger.warning("No se pudo leer la instantánea de " + tabla + ", se carga la tabla: " + e.getMessage());
+            return false;
+        }
+
+        int cambios = refresco.refrescar();
+        Logger.info("Caché de " + tabla + " restaurada desde instantánea: " + cantidad +
+                    " entidades, " + cambios + " cambios aplicados");
+        return true;
+    }
+
+    /**
+     * Escribe la instantánea de la caché (en un archivo temporal que luego sustituye al anterior)
+     */
+    public void guardar() {
+        Path archivo = archivo();
+        if (archivo == null) {
+            return;
+        }
+
+        // La marca se toma antes que las entidades: lo que cambie entre medias se volverá a leer
+        RefrescoIncremental.Estado estado = refresco.getEstado();
+        if (estado == null) {
+            return;
+        }
+        List<T> entidades = cache.valores();
+
+        Path temporal = archivo.resolveSibling(archivo.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(archivo.getParent());
+            try (DataOutputStream salida = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporal)))) {
+                Escritor escritor = new Escritor(salida);
+                escritor.escribirInt(MAGICO);
+                escritor.escribirInt(FORMATO);
+                escritor.escribirTexto(tabla);
+                escritor.escribirFecha(estado.getMarca());
+                escritor.escribirLong(estado.getFilas());
+                escritor.escribirInt(estado.getMaximoId());
+                escritor.escribirInt(entidades.size());
+                for (T entidad : entidades) {
+                    escritura.escribir(entidad, escritor);
+                }
+            }
+            Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            Logger.info("Instantánea de " + tabla + " guardada: " + entidades.size() + " entidades");
+        } catch (IOException e) {
+            Logger.error("Error al guardar la instantánea de " + tabla + ": " + e.getMessage());
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Guarda las instantáneas de todas las cachés registradas
+     */
+    public static void guardarTodas() {
+        for (InstantaneaCache<?> instantanea : registradas) {
+            instantanea.guardar();
+        }
+    }
+
+    private Path archivo() {
+        String directorio = DatabaseConnection.getConfigValue("cache.instantaneas.dir", DEFAULT_DIRECTORIO).trim();
+        return directorio.isEmpty() ? null : Paths.get(directorio, tabla + ".snap").toAbsolutePath();
+    }
+
+    /**
+     * Escritura de valores sueltos en la instantánea
+     */
+    public static final class Escritor {
+        private final DataOutputStream salida;
+
+        Escritor(DataOutputStream salida) {
+            this.salida = salida;
+        }
+
+        public void escribirInt(int valor) throws IOException {
+            salida.writeInt(valor);
+        }
+
+        public void escribirLong(long valor) throws IOException {
+            salida.writeLong(valor);
+        }
+
+        public void escribirDouble(double valor) throws IOException {
+            salida.writeDouble(valor);
+        }
+
+        public void escribirBoolean(boolean valor) throws IOException {
+            salida.writeBoolean(valor);
+        }
+
+        public void escribirTexto(String texto) throws IOException {
+            if (texto == null) {
+                salida.writeInt(-1);
+                return;
+            }
+            byte[] bytes = texto.getBytes(StandardCharsets.UTF_8);
+            salida.writeInt(bytes.length);
+            salida.write(bytes);
+        }
+
+        public void escribirFecha(Date fecha) throws IOException {
+            salida.writeLong(fecha == null ? Long.MIN_VALUE : fecha.getTime());
+        }
+
+        /**
+         * Campos comunes de Entity: ID, fechas y estado
+         */
+        public void escribirEntidad(Entity entidad) throws IOException {
+            escribirInt(entidad.getId());
+            escribirFecha(entidad.getFechaCreacion());
+            escribirFecha(entidad.getUltimaActualizacion());
+            escribirBoolean(entidad.isActivo());
+        }
+    }
+
+    /**
+     * Lectura de valores sueltos desde el archivo mapeado
+     */
+    public static final class Lector {
+        private final ByteBuffer entrada;
+
+        Lector(ByteBuffer entrada) {
+            this.entrada = entrada;
+        }
+
+        public int leerInt() {
+            return entrada.getInt();
+        }
+
+        public long leerLong() {
+            return entrada.getLong();
+        }
+
+        public double leerDouble() {
+            return entrada.getDouble();
+        }
+
+        public boolean leerBoolean() {
+            return entrada.get() != 0;
+        }
+
+        public String leerTexto() {
+            int longitud = entrada.getInt();
+            if (longitud < 0) {
+                return null;
+            }
+            byte[] bytes = new byte[longitud];
+            entrada.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        public Timestamp leerFecha() {
+            long valor = entrada.getLong();
+            return valor == Long.MIN_VALUE ? null : new Timestamp(valor);
+        }
+
+        /**
+         * Lee los campos comunes escritos con escribirEntidad sobre una entidad nueva
+         * @param entidad Entidad recién creada
+         * @param <E> Tipo de entidad
+         * @return La misma entidad
+         */
+        public <E extends Entity> E leerEntidad(E entidad) {
+            entidad.setId(leerInt());
+            entidad.setFechaCreacion(leerFecha());
+            entidad.setUltimaActualizacion(leerFecha());
+            entidad.setActivo(leerBoolean());
+            return entidad;
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.sakila.data;
+
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.Logger;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Segundo nivel de caché con referencias blandas (SoftReference): guarda valores fríos
+ * que el nivel principal ya no retiene, sin impedir que el recolector los libere.
+ * <p>
+ * Con memoria de sobra la JVM conserva estas referencias y los valores se siguen sirviendo
+ * sin ir a la base de datos; cuando la memoria escasea las libera antes de lanzar un
+ * OutOfMemoryError. Cada valor liberado así se cuenta como expulsión por el GC.
+ * <p>
+ * El máximo de entradas (cache.&lt;nombre&gt;.suave.max) acota solo las referencias, no la
+ * memoria de los valores, que sigue decidiendo el recolector; 0 desactiva el nivel. Lleno,
+ * cada valor nuevo sustituye al guardado hace más tiempo. Con una vida máxima, los valores
+ * caducan a ese tiempo de guardarse y se quitan al purgar, aunque el GC no los libere.
+ * Los métodos son sincronizados: se usan en los fallos del nivel principal, que de todos
+ * modos suelen acabar en una consulta.
+ * @param <V> Tipo de valor
+ * @author Nicolas Zierow Fermin
+ */
+public class NivelSuave<V> {
+    private final String nombre;
+    private final int maximo;
+    private final long vidaMs;
+    // En orden de guardado: la primera es la más antigua (la que se sustituye y la que antes caduca)
+    private final LinkedHashMap<Integer, Referencia<V>> referencias = new LinkedHashMap<>();
+    private final ReferenceQueue<V> liberadas = new ReferenceQueue<>();
+
+    // Solo cambian con el monitor de la instancia
+    private long aciertos;
+    private long fallos;
+    private long guardadas;
+    private long descartadas;
+    private long caducadas;
+    private long expulsionesGC;
+    private long ultimaExpulsionGC;
+
+    /**
+     * Constructor
+     * @param nombre Nombre del nivel, para logs y estadísticas
+     * @param maximo Entradas máximas (0 lo desactiva)
+     */
+    public NivelSuave(String nombre, int maximo) {
+        this(nombre, maximo, 0);
+    }
+
+    /**
+     * Constructor
+     * @param nombre Nombre del nivel, para logs y estadísticas
+     * @param maximo Entradas máximas (0 lo desactiva)
+     * @param vidaMs Milisegundos que vale cada valor desde que se guarda (0 o menos, sin caducidad)
+     */
+    public NivelSuave(String nombre, int maximo, long vidaMs) {
+        this.nombre = nombre;
+        this.maximo = Math.max(0, maximo);
+        this.vidaMs = Math.max(0, vidaMs);
+    }
+
+    /**
+     * Crea el nivel según config.properties (cache.&lt;nombre&gt;.suave.max)
+     * @param nombre Nombre de la caché (p. ej. "clientes")
+     * @param maximoPorDefecto Entradas máximas si no hay configuración
+     * @param <V> Tipo de valor
+     * @return Nivel nuevo (desactivado si el máximo es 0)
+     */
+    public static <V> NivelSuave<V> desdeConfiguracion(String nombre, int maximoPorDefecto) {
+        return desdeConfiguracion(nombre, maximoPorDefecto, 0);
+    }
+
+    /**
+     * Crea el nivel según config.properties (cache.&lt;nombre&gt;.suave.max), con caducidad
+     * @param nombre Nombre de la caché (p. ej. "alquileres")
+     * @param maximoPorDefecto Entradas máximas si no hay configuración
+     * @param vidaMs Milisegundos que vale cada valor desde que se guarda (0, sin caducidad)
+     * @param <V> Tipo de valor
+     * @return Nivel nuevo (desactivado si el máximo es 0)
+     */
+    public static <V> NivelSuave<V> desdeConfiguracion(String nombre, int maximoPorDefecto, long vidaMs) {
+        long maximo = DatabaseConnection.getConfigNumber("cache." + nombre + ".suave.max", maximoPorDefecto);
+        return new NivelSuave<>(nombre, (int) Math.min(Math.max(maximo, 0), Integer.MAX_VALUE), vidaMs);
+    }
+
+    public boolean estaActivo() {
+        return maximo > 0;
+    }
+
+    /**
+     * Obtiene un valor
+     * @param clave Clave del valor
+     * @return Valor, o null si no está, ha caducado o el recolector ya lo liberó
+     */
+    public synchronized V obtener(int clave) {
+        if (maximo == 0) {
+            return null;
+        }
+        purgar();
+        Referencia<V> referencia = referencias.get(clave);
+        V valor = referencia != null ? referencia.get() : null;
+        if (valor == null) {
+            fallos++;
+        } else {
+            aciertos++;
+        }
+        return valor;
+    }
+
+    public synchronized boolean contiene(int clave) {
+        purgar();
+        Referencia<V> referencia = referencias.get(clave);
+        return referencia != null && referencia.get() != null;
+    }
+
+    /**
+     * Guarda un valor, reemplazando el que tuviera la misma clave. Si el nivel está lleno
+     * se descarta el valor guardado hace más tiempo
+     * @param clave Clave del valor
+     * @param valor Valor a guardar
+     */
+    public synchronized void guardar(int clave, V valor) {
+        if (maximo == 0) {
+            return;
+        }
+        purgar();
+        // Quitar antes de poner lo pasa al final del orden de guardado
+        if (referencias.remove(clave) == null && referencias.size() >= maximo) {
+            Iterator<Referencia<V>> masAntigua = referencias.values().iterator();
+            masAntigua.next();
+            masAntigua.remove();
+            descartadas++;
+        }
+        referencias.put(clave, new Referencia<>(clave, valor, liberadas, System.currentTimeMillis()));
+        guardadas++;
+    }
+
+    /**
+     * Quita un valor
+     * @param clave Clave del valor
+     * @return Valor quitado, o null si no estaba
+     */
+    public synchronized V quitar(int clave) {
+        Referencia<V> referencia = referencias.remove(clave);
+        return referencia != null ? referencia.get() : null;
+    }
+
+    /**
+     * Quita un valor solo si sigue siendo el mismo objeto
+     * @param clave Clave del valor
+     * @param valor Valor esperado
+     * @return true si estaba y se ha quitado
+     */
+    public synchronized boolean quitar(int clave, V valor) {
+        Referencia<V> referencia = referencias.get(clave);
+        if (referencia == null || referencia.get() != valor) {
+            return false;
+        }
+        referencias.remove(clave);
+        return true;
+    }
+
+    public synchronized void vaciar() {
+        referencias.clear();
+        purgar();
+    }
+
+    public synchronized int tamanio() {
+        purgar();
+        return referencias.size();
+    }
+
+    public synchronized Map<String, Object> obtenerEstadisticas() {
+        purgar();
+        Map<String, Object> estadisticas = new HashMap<>();
+        estadisticas.put("nombre", nombre);
+        estadisticas.put("maximo", maximo);
+        estadisticas.put("entradas", referencias.size());
+        estadisticas.put("aciertos", aciertos);
+        estadisticas.put("fallos", fallos);
+        estadisticas.put("guardadas", guardadas);
+        estadisticas.put("descartadas", descartadas);
+        estadisticas.put("vidaMs", vidaMs);
+        estadisticas.put("caducadas", caducadas);
+        estadisticas.put("expulsionesGC", expulsionesGC);
+        estadisticas.put("ultimaExpulsionGC", ultimaExpulsionGC);
+        return estadisticas;
+    }
+
+    /**
+     * Quita las referencias caducadas y las que el recolector ha liberado. Las liberadas que
+     * ya se habían reemplazado o quitado no cuentan como expulsión por el GC
+     */
+    private void purgar() {
+        if (vidaMs > 0) {
+            // En orden de guardado: basta con recorrer hasta la primera que sigue vigente
+            long limite = System.currentTimeMillis() - vidaMs;
+            Iterator<Referencia<V>> it = referencias.values().iterator();
+            while (it.hasNext() && it.next().guardada <= limite) {
+                it.remove();
+                caducadas++;
+            }
+        }
+
+        int liberadasAhora = 0;
+        Referencia<?> referencia;
+        while ((referencia = (Referencia<?>) liberadas.poll()) != null) {
+            if (referencias.get(referencia.clave) == referencia) {
+                referencias.remove(referencia.clave);
+                liberadasAhora++;
+            }
+        }
+        if (liberadasAhora > 0) {
+            expulsionesGC += liberadasAhora;
+            ultimaExpulsionGC = System.currentTimeMillis();
+            Logger.debug("Caché blanda de " + nombre + ": el GC ha liberado " + liberadasAhora + " entradas");
+        }
+    }
+
+    /**
+     * Referencia blanda que recuerda su clave, para quitarla del mapa cuando se libera,
+     * y cuándo se guardó, para la caducidad
+     */
+    private static final class Referencia<V> extends SoftReference<V> {
+        final int clave;
+        final long guardada;
+
+        Referencia(int clave, V valor, ReferenceQueue<? super V> cola, long guardada) {
+            super(valor, cola);
+            this.clave = clave;
+            this.guardada = guardada;
+        }
+    }
+}
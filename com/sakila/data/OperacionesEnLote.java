@@ -0,0 +1,245 @@
+package com.sakila.data;
+
+import com.sakila.models.Entity;
+import com.sakila.utils.IntSet;
+import com.sakila.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Inserción, actualización y borrado de muchas entidades a la vez. Las inserciones y
+ * actualizaciones van en lotes JDBC (con rewriteBatchedStatements=true en db.url el driver
+ * de MySQL agrupa cada lote en un solo envío); los borrados, en sentencias WHERE id IN (...).
+ * @author Nicolas Zierow Fermin
+ */
+public final class OperacionesEnLote {
+    // Filas por executeBatch() y IDs por IN (...); acota el tamaño de cada paquete enviado
+    public static final int TAMANIO_LOTE = 1000;
+
+    /**
+     * Asigna los parámetros del INSERT o UPDATE para una entidad
+     * @param <T> Tipo de entidad
+     */
+    @FunctionalInterface
+    public interface Parametros<T> {
+        void asignar(PreparedStatement stmt, T entidad) throws SQLException;
+    }
+
+    private OperacionesEnLote() {
+    }
+
+    /**
+     * Comprueba que todas las entidades sean válidas antes de enviar nada
+     * @param entidades Entidades a insertar o actualizar
+     * @return true si la lista no está vacía y todas son válidas
+     */
+    public static boolean validar(List<? extends Entity> entidades) {
+        return validar(entidades, Entity::validar);
+    }
+
+    /**
+     * Comprueba, antes de enviar nada, que todas las entidades tengan bien las columnas que
+     * escribe la sentencia. Las entidades que leen los controladores solo traen el ID de sus
+     * relaciones (tienda, dirección, película...), así que validar() completo las rechazaría
+     * @param entidades Entidades a insertar o actualizar
+     * @param columnas Comprueba las columnas de una entidad
+     * @param <T> Tipo de entidad
+     * @return true si la lista no está vacía y todas son válidas
+     */
+    public static <T extends Entity> boolean validar(List<? extends T> entidades, Predicate<? super T> columnas) {
+        if (entidades == null || entidades.isEmpty()) {
+            Logger.error("Lista vacía para la operación en lote");
+            return false;
+        }
+        for (int i = 0; i < entidades.size(); i++) {
+            T entidad = entidades.get(i);
+            if (entidad == null || !columnas.test(entidad)) {
+                Logger.error("Entidad no válida en la posición " + i + "; no se aplica ninguna");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Inserta las entidades en lotes y les asigna los IDs generados, en el mismo orden.
+     * Todo se hace en un ámbito de transacción (anidado si ya hay uno abierto):
+     * o se insertan todas o ninguna.
+     * @param sql INSERT de una fila con sus parámetros
+     * @param entidades Entidades a insertar
+     * @param parametros Asigna los parámetros de cada entidad
+     * @param <T> Tipo de entidad
+     * @throws SQLException Si ocurre un error al insertar (la transacción queda revertida)
+     */
+    public static <T extends Entity> void insertar(String sql, List<T> entidades,
+                                                   Parametros<T> parametros) throws SQLException {
+        try (Transaccion tx = ContextoBaseDatos.transaccion();
+             Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+            for (int inicio = 0; inicio < entidades.size(); inicio += TAMANIO_LOTE) {
+                List<T> lote = entidades.subList(inicio, Math.min(inicio + TAMANIO_LOTE, entidades.size()));
+                for (T entidad : lote) {
+                    parametros.asignar(stmt, entidad);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+
+                try (ResultSet clavesGeneradas = stmt.getGeneratedKeys()) {
+                    for (T entidad : lote) {
+                        if (!clavesGeneradas.next()) {
+                            throw new SQLException("El driver no devolvió un ID para cada fila del lote");
+                        }
+                        entidad.setId(clavesGeneradas.getInt(1));
+                    }
+                }
+            }
+
+            tx.confirmar();
+        } catch (SQLException e) {
+            // Las filas ya no existen: que ninguna entidad conserve un ID de un lote revertido
+            for (T entidad : entidades) {
+                entidad.setId(0);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Actualiza las entidades en lotes dentro de un ámbito de transacción (todas o ninguna)
+     * @param sql UPDATE de una fila con sus parámetros
+     * @param entidades Entidades a actualizar
+     * @param parametros Asigna los parámetros de cada entidad
+     * @param <T> Tipo de entidad
+     * @return Entidades que existían y se actualizaron
+     * @throws SQLException Si ocurre un error al actualizar (la transacción queda revertida)
+     */
+    public static <T extends Entity> List<T> actualizar(String sql, List<T> entidades,
+                                                        Parametros<T> parametros) throws SQLException {
+        List<T> actualizadas = new ArrayList<>();
+
+        try (Transaccion tx = ContextoBaseDatos.transaccion();
+             Connection conexion = ContextoBaseDatos.getConexion();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
+
+            for (int inicio = 0; inicio < entidades.size(); inicio += TAMANIO_LOTE) {
+                List<T> lote = entidades.subList(inicio, Math.min(inicio + TAMANIO_LOTE, entidades.size()));
+                for (T entidad : lote) {
+                    parametros.asignar(stmt, entidad);
+                    stmt.addBatch();
+                }
+
+                int[] filas = stmt.executeBatch();
+                for (int i = 0; i < lote.size(); i++) {
+                    // SUCCESS_NO_INFO (-2) cuenta como actualizada
+                    if (i >= filas.length || filas[i] != 0) {
+                        actualizadas.add(lote.get(i));
+                    }
+                }
+            }
+
+            tx.confirmar();
+        }
+
+        return actualizadas;
+    }
+
+    /**
+     * Ejecuta una sentencia por IDs en bloques de IN (...) dentro de un ámbito de transacción
+     * @param sqlBase Sentencia sin la lista, terminada en "WHERE columna IN "
+     * @param ids IDs afectados
+     * @return Número total de filas afectadas
+     * @throws SQLException Si ocurre un error (la transacción queda revertida)
+     */
+    public static int porIds(String sqlBase, int... ids) throws SQLException {
+        int afectadas = 0;
+        // Sin repetidos: cada ID ocupa un solo hueco en las listas IN
+        ids = IntSet.of(ids).toArray();
+
+        try (Transaccion tx = ContextoBaseDatos.transaccion();
+             Connection conexion = ContextoBaseDatos.getConexion()) {
+
+            for (int inicio = 0; inicio < ids.length; inicio += TAMANIO_LOTE) {
+                int fin = Math.min(inicio + TAMANIO_LOTE, ids.length);
+                // Los bloques completos comparten el mismo texto SQL y se reutilizan desde la caché
+                try (PreparedStatement stmt = conexion.prepareStatement(sqlBase + marcadores(fin - inicio))) {
+                    for (int i = inicio; i < fin; i++) {
+                        stmt.setInt(i - inicio + 1, ids[i]);
+                    }
+                    afectadas += stmt.executeUpdate();
+                }
+            }
+
+            tx.confirmar();
+        }
+
+        return afectadas;
+    }
+
+    /**
+     * Comprueba que la lista de IDs no esté vacía y que todos sean positivos
+     * @param ids IDs a validar
+     * @return true si son válidos
+     */
+    public static boolean validarIds(int... ids) {
+        if (ids == null || ids.length == 0) {
+            Logger.error("Lista de IDs vacía");
+            return false;
+        }
+        for (int id : ids) {
+            if (id <= 0) {
+                Logger.error("ID no válido en la lista: " + id);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Lee las filas de varias claves con listas IN por bloques de TAMANIO_LOTE
+     * @param sqlBase Consulta terminada en "WHERE col IN " (se completa con los marcadores)
+     * @param mapeador Conversión de cada fila
+     * @param ids IDs a leer (los repetidos se leen una vez)
+     * @param <T> Tipo de entidad
+     * @return Entidades encontradas, sin orden definido
+     * @throws SQLException Si ocurre un error en la consulta
+     */
+    public static <T> List<T> leerPorIds(String sqlBase, FlujoFilas.Mapeador<T> mapeador, int... ids) throws SQLException {
+        List<T> leidas = new ArrayList<>(ids.length);
+        ids = IntSet.of(ids).toArray();
+
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura()) {
+            for (int inicio = 0; inicio < ids.length; inicio += TAMANIO_LOTE) {
+                int fin = Math.min(inicio + TAMANIO_LOTE, ids.length);
+                try (PreparedStatement stmt = conexion.prepareStatement(sqlBase + marcadores(fin - inicio))) {
+                    for (int i = inicio; i < fin; i++) {
+                        stmt.setInt(i - inicio + 1, ids[i]);
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            leidas.add(mapeador.mapear(rs));
+                        }
+                    }
+                }
+            }
+        }
+
+        return leidas;
+    }
+
+    private static String marcadores(int cantidad) {
+        StringBuilder sb = new StringBuilder(cantidad * 2 + 1).append('(');
+        for (int i = 0; i < cantidad; i++) {
+            sb.append(i == 0 ? "?" : ",?");
+        }
+        return sb.append(')').toString();
+    }
+
+}
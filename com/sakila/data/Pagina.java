@@ -0,0 +1,112 @@
+package com.sakila.data;
+
+import com.sakila.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.ToIntFunction;
+
+/**
+ * Página de resultados obtenida por clave (keyset): cada página empieza después del último ID
+ * de la anterior, así que cuesta lo mismo leer la primera que la última.
+ * <pre>
+ * Pagina&lt;Cliente&gt; pagina = clienteControlador.page(0, 50);
+ * while (...) {
+ *     ...
+ *     if (!pagina.hayMas()) break;
+ *     pagina = clienteControlador.page(pagina.getSiguiente(), 50);
+ * }
+ * </pre>
+ * @param <T> Tipo de entidad
+ * @author Nicolas Zierow Fermin
+ */
+public class Pagina<T> {
+    private final List<T> elementos;
+    private final int siguiente;
+    private final boolean hayMas;
+
+    /**
+     * Constructor
+     * @param elementos Entidades de la página, ordenadas por ID
+     * @param siguiente ID a partir del cual empieza la página siguiente
+     * @param hayMas Indica si quedan más filas después de esta página
+     */
+    public Pagina(List<T> elementos, int siguiente, boolean hayMas) {
+        this.elementos = Collections.unmodifiableList(elementos);
+        this.siguiente = siguiente;
+        this.hayMas = hayMas;
+    }
+
+    /**
+     * Página sin elementos ni continuación
+     * @param <T> Tipo de entidad
+     * @return Página vacía
+     */
+    public static <T> Pagina<T> vacia() {
+        return new Pagina<>(new ArrayList<>(), 0, false);
+    }
+
+    public List<T> getElementos() {
+        return elementos;
+    }
+
+    /**
+     * Token de continuación: el último ID de esta página, para pasarlo a page()
+     * @return ID a partir del cual pedir la página siguiente
+     */
+    public int getSiguiente() {
+        return siguiente;
+    }
+
+    public boolean hayMas() {
+        return hayMas;
+    }
+
+    /**
+     * Lee una página con una consulta de la forma
+     * "... WHERE id &gt; ? ORDER BY id LIMIT ?"
+     * @param sql Consulta con los dos parámetros (último ID y límite) al final
+     * @param mapeador Conversión de cada fila
+     * @param id Obtiene el ID de una entidad
+     * @param despuesDeId Último ID de la página anterior (0 para la primera)
+     * @param tamanio Número máximo de entidades de la página
+     * @param <T> Tipo de entidad
+     * @return Página leída
+     * @throws SQLException Si ocurre un error en la consulta
+     */
+    public static <T> Pagina<T> leer(String sql, FlujoFilas.Mapeador<T> mapeador, ToIntFunction<T> id,
+                                     int despuesDeId, int tamanio) throws SQLException {
+        if (tamanio <= 0) {
+            Logger.error("Tamaño de página no válido: " + tamanio);
+            return vacia();
+        }
+
+        List<T> elementos = new ArrayList<>();
+        boolean hayMas = false;
+
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura();
+             PreparedStatement stmt = conexion.prepareStatement(sql)) {
+            stmt.setInt(1, despuesDeId);
+            // Una fila de más para saber si hay página siguiente sin hacer un COUNT
+            stmt.setInt(2, tamanio + 1);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    if (elementos.size() == tamanio) {
+                        hayMas = true;
+                        break;
+                    }
+                    elementos.add(mapeador.mapear(rs));
+                }
+            }
+        }
+
+        int siguiente = elementos.isEmpty() ? despuesDeId : id.applyAsInt(elementos.get(elementos.size() - 1));
+        return new Pagina<>(elementos, siguiente, hayMas);
+    }
+}
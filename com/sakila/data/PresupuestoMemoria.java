@@ -0,0 +1,158 @@
+package com.sakila.data;
+
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.Logger;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Presupuesto de memoria único para todas las cachés de los controladores
+ * (cache.presupuesto.bytes; 0 lo desactiva y cada caché usa su propio límite).
+ * <p>
+ * Cada caché estima el peso de sus entradas en bytes (EstimadorTamanio). Si entre todas
+ * superan el presupuesto, se expulsa primero de la caché cuya próxima víctima vale menos:
+ * la que tiene menos accesos recientes por byte. Así una tabla fría cede su memoria a una
+ * caliente en lugar de que cada una se dimensione por separado.
+ * <p>
+ * Las cachés de tablas completas (actores, países, ciudades, películas) cuentan en el
+ * presupuesto pero no expulsan: sin todas sus filas sus listados dejarían de ser válidos.
+ * El ajuste se hace fuera de los bloqueos de las cachés y toma uno solo cada vez,
+ * así que no puede haber interbloqueos entre ellas.
+ * @author Nicolas Zierow Fermin
+ */
+public final class PresupuestoMemoria {
+    private static final PresupuestoMemoria GLOBAL =
+            new PresupuestoMemoria(DatabaseConnection.getConfigNumber("cache.presupuesto.bytes", 0));
+    // Parte del máximo (1/HOLGURA) que puede quedar libre con el presupuesto ya lleno
+    private static final int HOLGURA = 64;
+
+    private final long maximo;
+    private final List<iParticipantePresupuesto> participantes = new CopyOnWriteArrayList<>();
+    private final LongAdder ajustes = new LongAdder();
+    private final LongAdder bytesLiberados = new LongAdder();
+    private volatile boolean avisado;
+
+    /**
+     * Constructor
+     * @param maximo Bytes estimados entre todas las cachés (0 o menos lo desactiva)
+     */
+    public PresupuestoMemoria(long maximo) {
+        this.maximo = Math.max(0, maximo);
+    }
+
+    /**
+     * @return Presupuesto configurado en config.properties
+     */
+    public static PresupuestoMemoria global() {
+        return GLOBAL;
+    }
+
+    public boolean estaActivo() {
+        return maximo > 0;
+    }
+
+    public long getMaximo() {
+        return maximo;
+    }
+
+    /**
+     * Añade una caché al presupuesto (no hace nada si está desactivado)
+     * @param participante Caché que comparte el presupuesto
+     */
+    public void registrar(iParticipantePresupuesto participante) {
+        if (estaActivo()) {
+            participantes.add(participante);
+        }
+    }
+
+    /**
+     * Bytes estimados entre todas las cachés
+     */
+    public long usados() {
+        long total = 0;
+        for (iParticipantePresupuesto participante : participantes) {
+            total += participante.pesoEstimado();
+        }
+        return total;
+    }
+
+    /**
+     * Indica si el presupuesto ya no admite más entradas sin expulsar otras; las cargas
+     * iniciales de las cachés acotadas paran aquí. Tras un ajuste quedan libres menos bytes
+     * que la última entrada expulsada, por eso se da por lleno a 1/HOLGURA del máximo
+     * @return true si está activo y casi todo está ocupado
+     */
+    public boolean estaLleno() {
+        return estaActivo() && usados() >= maximo - maximo / HOLGURA;
+    }
+
+    /**
+     * Si se supera el presupuesto, expulsa las entradas con menos accesos por byte hasta
+     * volver a estar dentro. Se llama tras cada escritura en una caché, sin sus bloqueos
+     */
+    public void ajustar() {
+        if (!estaActivo() || usados() <= maximo) {
+            return;
+        }
+
+        synchronized (this) {
+            long exceso = usados() - maximo;
+            while (exceso > 0) {
+                // La caché con la víctima más barata expulsa hasta que su víctima valga
+                // más que la de la siguiente; entonces le toca a esa
+                iParticipantePresupuesto menor = null;
+                double valorMenor = Double.POSITIVE_INFINITY;
+                double valorSegundo = Double.POSITIVE_INFINITY;
+                for (iParticipantePresupuesto participante : participantes) {
+                    double valor = participante.valorPorByteVictima();
+                    if (valor < valorMenor) {
+                        valorSegundo = valorMenor;
+                        valorMenor = valor;
+                        menor = participante;
+                    } else if (valor < valorSegundo) {
+                        valorSegundo = valor;
+                    }
+                }
+
+                long liberados = menor != null ? menor.liberar(valorSegundo, exceso) : 0;
+                if (liberados == 0) {
+                    if (!avisado) {
+                        avisado = true;
+                        Logger.warning("El presupuesto de cachés (" + maximo + " bytes) no alcanza para " +
+                                       "las tablas completas: se usan " + usados() + " bytes estimados");
+                    }
+                    return;
+                }
+                bytesLiberados.add(liberados);
+                exceso = usados() - maximo;
+            }
+            ajustes.increment();
+        }
+    }
+
+    /**
+     * Obtiene las estadísticas del presupuesto
+     * @return Mapa con el máximo, los bytes usados, los liberados y el peso de cada caché
+     */
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new LinkedHashMap<>();
+        estadisticas.put("activo", estaActivo());
+        estadisticas.put("maximo", maximo);
+        Map<String, Object> pesos = new LinkedHashMap<>();
+        long total = 0;
+        for (iParticipantePresupuesto participante : participantes) {
+            long peso = participante.pesoEstimado();
+            pesos.put(participante.getNombre(), peso);
+            total += peso;
+        }
+        estadisticas.put("usados", total);
+        estadisticas.put("ajustes", ajustes.sum());
+        estadisticas.put("bytesLiberados", bytesLiberados.sum());
+        estadisticas.put("porCache", pesos);
+        return estadisticas;
+    }
+}
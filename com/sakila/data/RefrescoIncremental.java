@@ -0,0 +1,243 @@
+package com.sakila.data;
+
+import com.sakila.models.Entity;
+import com.sakila.utils.IntSet;
+import com.sakila.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Refresco incremental de la caché de un controlador usando la columna last_update.
+ * Guarda una marca de agua (el last_update más reciente visto) y en cada refresco solo lee
+ * las filas modificadas desde entonces, en lugar de volver a cargar la tabla entera.
+ * <p>
+ * Los borrados no dejan fila que leer: se detectan comparando el número de filas de la tabla
+ * con el esperado y, solo si falta alguna, se diferencia el conjunto de claves.
+ * <p>
+ * Si el controlador usa un FiltroInexistentes, cada fila leída se registra en él (también
+ * las altas de otras aplicaciones que la caché acotada no guarda), y la diferencia de
+ * claves lo reconstruye.
+ * @param <T> Tipo de entidad
+ * @author Nicolas Zierow Fermin
+ */
+public class RefrescoIncremental<T extends Entity> {
+    private final String tabla;
+    private final String columnaId;
+    private final String sqlCambios;
+    private final FlujoFilas.Mapeador<T> mapeador;
+    private final iCacheEntidades<T> cache;
+    private final boolean completa;
+    private final FiltroInexistentes inexistentes;
+
+    private Timestamp marca;
+    private long filas;
+    private int maximoId;
+
+    /**
+     * Constructor
+     * @param tabla Tabla de la base de datos
+     * @param columnaId Columna de la clave primaria (autoincremental)
+     * @param sqlCambios Consulta de filas con un único parámetro, de la forma "... WHERE x.last_update &gt;= ?"
+     * @param mapeador Conversión de cada fila
+     * @param cache Caché a mantener
+     * @param completa true si la caché guarda la tabla entera (las filas nuevas se añaden);
+     *                 false si es acotada (solo se actualizan las que ya estaban)
+     */
+    public RefrescoIncremental(String tabla, String columnaId, String sqlCambios,
+                               FlujoFilas.Mapeador<T> mapeador, iCacheEntidades<T> cache, boolean completa) {
+        this(tabla, columnaId, sqlCambios, mapeador, cache, completa, null);
+    }
+
+    /**
+     * Constructor
+     * @param tabla Tabla de la base de datos
+     * @param columnaId Columna de la clave primaria (autoincremental)
+     * @param sqlCambios Consulta de filas con un único parámetro, de la forma "... WHERE x.last_update &gt;= ?"
+     * @param mapeador Conversión de cada fila
+     * @param cache Caché a mantener
+     * @param completa true si la caché guarda la tabla entera; false si es acotada
+     * @param inexistentes Filtro de IDs inexistentes a mantener al día (null si no hay)
+     */
+    public RefrescoIncremental(String tabla, String columnaId, String sqlCambios,
+                               FlujoFilas.Mapeador<T> mapeador, iCacheEntidades<T> cache, boolean completa,
+                               FiltroInexistentes inexistentes) {
+        this.tabla = tabla;
+        this.columnaId = columnaId;
+        this.sqlCambios = sqlCambios;
+        this.mapeador = mapeador;
+        this.cache = cache;
+        this.completa = completa;
+        this.inexistentes = inexistentes;
+    }
+
+    public String getTabla() {
+        return tabla;
+    }
+
+    /**
+     * Marca de agua actual, para guardarla junto a una instantánea de la caché
+     * @return Estado, o null si aún no hay marca
+     */
+    public synchronized Estado getEstado() {
+        return marca == null ? null : new Estado(marca, filas, maximoId);
+    }
+
+    /**
+     * Parte de una marca de agua guardada (caché restaurada desde una instantánea);
+     * el siguiente refresco lee los cambios desde ella
+     */
+    public synchronized void restaurar(Timestamp marca, long filas, int maximoId) {
+        this.marca = marca;
+        this.filas = filas;
+        this.maximoId = maximoId;
+    }
+
+    /**
+     * Toma la marca de agua justo antes de una carga completa, para que el siguiente
+     * refresco parta de ella. Lo modificado durante la carga se vuelve a leer, sin efecto.
+     */
+    public synchronized void marcarCarga() {
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura()) {
+            leerResumen(conexion);
+        } catch (SQLException e) {
+            Logger.error("Error al leer la marca de agua de " + tabla + ": " + e.getMessage());
+            e.printStackTrace();
+            marca = null;
+        }
+    }
+
+    /**
+     * Aplica a la caché los cambios de la tabla desde el último refresco
+     * @return Número de entidades actualizadas, añadidas o quitadas
+     */
+    public synchronized int refrescar() {
+        if (marca == null) {
+            // Sin marca no se sabe desde cuándo leer; la próxima vez se parte de ahora
+            marcarCarga();
+            return 0;
+        }
+
+        Timestamp desde = marca;
+        long filasAntes = filas;
+        int maximoIdAntes = maximoId;
+        int cambios = 0;
+        int nuevas = 0;
+
+        try (Connection conexion = ContextoBaseDatos.getConexionLectura()) {
+            leerResumen(conexion);
+
+            try (PreparedStatement stmt = conexion.prepareStatement(sqlCambios)) {
+                stmt.setTimestamp(1, desde);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    while (rs.next()) {
+                        T entidad = mapeador.mapear(rs);
+                        if (entidad.getId() > maximoIdAntes) {
+                            nuevas++;
+                        }
+                        if (inexistentes != null) {
+                            inexistentes.registrar(entidad.getId());
+                        }
+                        if (completa || cache.contiene(entidad.getId())) {
+                            cache.guardar(entidad);
+                            cambios++;
+                        }
+                    }
+                }
+            }
+            if (inexistentes != null) {
+                // Todas las filas hasta el máximo leído en el resumen ya están registradas
+                inexistentes.confirmarMaximo(maximoId);
+            }
+
+            // Las claves son autoincrementales: las filas nuevas tienen ID mayor que el máximo anterior
+            if (filas < filasAntes + nuevas) {
+                cambios += quitarBorradas(conexion);
+            }
+        } catch (SQLException e) {
+            Logger.error("Error al refrescar la caché de " + tabla + ": " + e.getMessage());
+            e.printStackTrace();
+            // Se vuelve a intentar desde la misma marca
+            marca = desde;
+            filas = filasAntes;
+            maximoId = maximoIdAntes;
+            return 0;
+        }
+
+        if (cambios > 0) {
+            Logger.info("Caché de " + tabla + " refrescada: " + cambios + " cambios");
+        }
+        return cambios;
+    }
+
+    /**
+     * Lee en una sola consulta el número de filas, el ID máximo y el last_update más reciente
+     */
+    private void leerResumen(Connection conexion) throws SQLException {
+        String sql = "SELECT COUNT(*) AS filas, MAX(" + columnaId + ") AS maximo_id, " +
+                     "MAX(last_update) AS marca FROM " + tabla;
+        try (Statement stmt = conexion.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            if (rs.next()) {
+                filas = rs.getLong("filas");
+                maximoId = rs.getInt("maximo_id");
+                Timestamp ultima = rs.getTimestamp("marca");
+                marca = ultima != null ? ultima : new Timestamp(0);
+            }
+        }
+    }
+
+    /**
+     * Quita de la caché las entidades cuya clave ya no está en la tabla
+     */
+    private int quitarBorradas(Connection conexion) throws SQLException {
+        IntSet claves = new IntSet((int) filas);
+        try (Statement stmt = conexion.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT " + columnaId + " FROM " + tabla)) {
+            while (rs.next()) {
+                claves.add(rs.getInt(1));
+            }
+        }
+        if (inexistentes != null) {
+            inexistentes.reconstruir(claves);
+        }
+
+        List<T> borradas = cache.filtrar(entidad -> !claves.contains(entidad.getId()));
+        for (T entidad : borradas) {
+            cache.quitar(entidad.getId());
+        }
+        return borradas.size();
+    }
+
+    /**
+     * Marca de agua con el número de filas y el ID máximo vistos junto a ella
+     */
+    public static final class Estado {
+        private final Timestamp marca;
+        private final long filas;
+        private final int maximoId;
+
+        Estado(Timestamp marca, long filas, int maximoId) {
+            this.marca = marca;
+            this.filas = filas;
+            this.maximoId = maximoId;
+        }
+
+        public Timestamp getMarca() {
+            return marca;
+        }
+
+        public long getFilas() {
+            return filas;
+        }
+
+        public int getMaximoId() {
+            return maximoId;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.sakila.data;
+
+import com.sakila.utils.DatabaseConnection;
+import com.sakila.utils.Logger;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lanza cada cache.refresco.ms el refresco incremental de todas las cachés registradas,
+ * en un único hilo en segundo plano. Con cache.refresco.ms=0 no se programa nada.
+ * @author Nicolas Zierow Fermin
+ */
+public final class RefrescoPeriodico {
+    private static final long DEFAULT_INTERVALO_MS = 60 * 1000;
+
+    private static final List<RefrescoIncremental<?>> refrescos = new CopyOnWriteArrayList<>();
+    private static ScheduledExecutorService programador;
+
+    private RefrescoPeriodico() {
+    }
+
+    /**
+     * Añade un refresco a la ronda periódica (arranca el hilo la primera vez)
+     * @param refresco Refresco de la caché de un controlador
+     */
+    public static synchronized void registrar(RefrescoIncremental<?> refresco) {
+        refrescos.add(refresco);
+        if (programador != null) {
+            return;
+        }
+
+        long intervalo = DatabaseConnection.getConfigNumber("cache.refresco.ms", DEFAULT_INTERVALO_MS);
+        if (intervalo <= 0) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "sakila-refresco");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        programador.scheduleWithFixedDelay(RefrescoPeriodico::refrescarTodo, intervalo, intervalo, TimeUnit.MILLISECONDS);
+        Logger.info("Refresco incremental de cachés cada " + intervalo + " ms");
+    }
+
+    /**
+     * Refresca ahora todas las cachés registradas
+     */
+    public static void refrescarTodo() {
+        for (RefrescoIncremental<?> refresco : refrescos) {
+            try {
+                refresco.refrescar();
+            } catch (RuntimeException e) {
+                // Un fallo en una tabla no debe cancelar la tarea periódica del resto
+                Logger.error("Error inesperado al refrescar " + refresco.getTabla() + ": " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Detiene el refresco periódico
+     */
+    public static synchronized void detener() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+        }
+        refrescos.clear();
+    }
+}
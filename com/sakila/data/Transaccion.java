@@ -0,0 +1,210 @@
+package com.sakila.data;
+
+import com.sakila.utils.Logger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ámbito de transacción ligado al hilo que lo abre. Se usa con try-with-resources:
+ * <pre>
+ * try (Transaccion tx = ContextoBaseDatos.transaccion()) {
+ *     inventarioControlador.post(...);
+ *     peliculaControlador.put(...);
+ *     tx.confirmar();
+ * }
+ * </pre>
+ * Las escrituras de cualquier controlador dentro del ámbito usan la misma conexión.
+ * Si el hilo ya tiene una transacción abierta, el ámbito nuevo se anida con un savepoint.
+ * Cerrar el ámbito sin confirmar lo revierte, junto con los anidados que sigan abiertos.
+ * @author Nicolas Zierow Fermin
+ */
+public class Transaccion implements AutoCloseable {
+    private final Transaccion padre;
+    private final Connection conexion;
+    private final Savepoint savepoint;
+    // Acciones para resincronizar las cachés si el ámbito se revierte (una por clave)
+    private final Map<Object, Runnable> alRevertir = new LinkedHashMap<>();
+    private boolean confirmada;
+    private boolean cerrada;
+
+    /**
+     * Constructor
+     * @param padre Transacción que contiene a esta, o null si es la raíz
+     * @param conexion Conexión compartida por todo el árbol de ámbitos
+     * @param savepoint Savepoint del ámbito anidado, o null si es la raíz
+     */
+    Transaccion(Transaccion padre, Connection conexion, Savepoint savepoint) {
+        this.padre = padre;
+        this.conexion = conexion;
+        this.savepoint = savepoint;
+    }
+
+    /**
+     * Indica si este ámbito está anidado dentro de otro
+     * @return true si es un ámbito anidado
+     */
+    public boolean isAnidada() {
+        return padre != null;
+    }
+
+    Transaccion getPadre() {
+        return padre;
+    }
+
+    Connection getConexion() {
+        return conexion;
+    }
+
+    /**
+     * Registra una acción a ejecutar si este ámbito se revierte
+     * @param clave Clave de la acción; registrar de nuevo la misma clave no la duplica
+     * @param accion Acción a ejecutar
+     */
+    void registrarAlRevertir(Object clave, Runnable accion) {
+        alRevertir.putIfAbsent(clave, accion);
+    }
+
+    /**
+     * Confirma el ámbito. En la raíz hace commit; en un ámbito anidado libera su savepoint
+     * y los cambios quedan pendientes del commit de la raíz.
+     * @throws SQLException Si ocurre un error al confirmar
+     */
+    public void confirmar() throws SQLException {
+        verificarAbierta();
+        if (padre == null) {
+            conexion.commit();
+            Logger.info("Transacción confirmada");
+        } else {
+            conexion.releaseSavepoint(savepoint);
+            // Si la raíz se revierte, también hay que resincronizar lo de este ámbito
+            for (Map.Entry<Object, Runnable> entrada : alRevertir.entrySet()) {
+                padre.registrarAlRevertir(entrada.getKey(), entrada.getValue());
+            }
+            Logger.debug("Transacción anidada confirmada");
+        }
+        confirmada = true;
+        cerrar();
+    }
+
+    /**
+     * Revierte el ámbito. En la raíz hace rollback; en un ámbito anidado vuelve a su savepoint.
+     * Los ámbitos anidados que sigan abiertos se revierten antes. Aunque algo falle, el ámbito
+     * sale del hilo, la raíz devuelve su conexión y las cachés se resincronizan
+     * @throws SQLException Si ocurre un error al revertir (el primero; los demás van como suprimidos)
+     */
+    public void revertir() throws SQLException {
+        if (cerrada) {
+            throw new SQLException("La transacción ya fue cerrada");
+        }
+        verificarHilo();
+
+        SQLException error = revertirAnidadas();
+        try {
+            if (padre == null) {
+                conexion.rollback();
+                Logger.info("Transacción revertida");
+            } else {
+                conexion.rollback(savepoint);
+                Logger.debug("Transacción anidada revertida");
+            }
+        } catch (SQLException e) {
+            error = acumular(error, e);
+        }
+        try {
+            cerrar();
+        } catch (SQLException e) {
+            error = acumular(error, e);
+        }
+
+        // Las cachés se resincronizan con la base de datos pase lo que pase con el rollback
+        for (Runnable accion : alRevertir.values()) {
+            try {
+                accion.run();
+            } catch (RuntimeException e) {
+                Logger.error("Error al resincronizar la caché tras revertir: " + e.getMessage());
+                e.printStackTrace();
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Cierra el ámbito; si no se confirmó, se revierte
+     * @throws SQLException Si ocurre un error al revertir
+     */
+    @Override
+    public void close() throws SQLException {
+        if (!cerrada && !confirmada) {
+            revertir();
+        }
+    }
+
+    private void verificarAbierta() throws SQLException {
+        if (cerrada) {
+            throw new SQLException("La transacción ya fue cerrada");
+        }
+        if (ContextoBaseDatos.transaccionActual() != this) {
+            throw new SQLException("Solo se puede confirmar la transacción más interna del hilo");
+        }
+    }
+
+    /**
+     * Comprueba que el ámbito esté en la pila del hilo (él o uno de sus anidados es el actual)
+     */
+    private void verificarHilo() throws SQLException {
+        for (Transaccion actual = ContextoBaseDatos.transaccionActual(); actual != null; actual = actual.padre) {
+            if (actual == this) {
+                return;
+            }
+        }
+        throw new SQLException("La transacción no pertenece a este hilo");
+    }
+
+    /**
+     * Revierte, de dentro hacia fuera, los ámbitos anidados en este que siguen abiertos
+     * @return Primer error, o null si no hubo ninguno
+     */
+    private SQLException revertirAnidadas() {
+        SQLException error = null;
+        Transaccion actual = ContextoBaseDatos.transaccionActual();
+        while (actual != this) {
+            Logger.warning("Se cierra una transacción con otra anidada abierta; se revierte la anidada");
+            try {
+                actual.revertir();
+            } catch (SQLException e) {
+                error = acumular(error, e);
+            }
+            actual = ContextoBaseDatos.transaccionActual();
+        }
+        return error;
+    }
+
+    private static SQLException acumular(SQLException primero, SQLException nuevo) {
+        if (primero == null) {
+            return nuevo;
+        }
+        primero.addSuppressed(nuevo);
+        return primero;
+    }
+
+    /**
+     * Saca el ámbito del hilo y, si es la raíz, devuelve la conexión al pool
+     */
+    private void cerrar() throws SQLException {
+        cerrada = true;
+        ContextoBaseDatos.salirTransaccion(this);
+        if (padre == null) {
+            try {
+                conexion.setAutoCommit(true);
+            } finally {
+                conexion.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.sakila.data;
+
+import com.sakila.models.Entity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Caché de entidades indexada por ID que usan los controladores delante de la base de datos.
+ * Las implementaciones deben ser seguras para usar desde varios hilos.
+ * @param <T> Tipo de entidad
+ * @author Nicolas Zierow Fermin
+ */
+public interface iCacheEntidades<T extends Entity> {
+    /**
+     * Obtiene una entidad por su ID
+     * @param id ID de la entidad
+     * @return Entidad en caché, o null si no está
+     */
+    T obtener(int id);
+
+    /**
+     * Indica si una entidad está en la caché, sin contar como acceso
+     * @param id ID de la entidad
+     * @return true si está
+     */
+    boolean contiene(int id);
+
+    /**
+     * Guarda una entidad, reemplazando la que tuviera el mismo ID
+     * @param entidad Entidad a guardar
+     */
+    void guardar(T entidad);
+
+    /**
+     * Guarda una entidad solo si su ID no está ya en la caché
+     * @param entidad Entidad a guardar
+     */
+    void guardarSiFalta(T entidad);
+
+    /**
+     * Guarda varias entidades de una vez
+     * @param entidades Entidades a guardar
+     */
+    void guardarTodas(Collection<T> entidades);
+
+    /**
+     * Sustituye todo el contenido de la caché (p. ej. tras recargar la tabla)
+     * @param entidades Entidades nuevas
+     */
+    void reemplazarTodo(Collection<T> entidades);
+
+    /**
+     * Quita una entidad de la caché
+     * @param id ID de la entidad
+     * @return La entidad quitada, o null si no estaba
+     */
+    T quitar(int id);
+
+    /**
+     * Quita varias entidades de la caché
+     * @param ids IDs de las entidades
+     */
+    void quitarTodas(int... ids);
+
+    /**
+     * Entidades en caché, ordenadas por ID. La lista no se puede modificar y puede ser
+     * la misma en varias llamadas
+     * @return Lista inmutable con las entidades
+     */
+    List<T> valores();
+
+    /**
+     * Entidades en caché que cumplen una condición, ordenadas por ID
+     * @param condicion Condición a cumplir
+     * @return Lista nueva con las entidades que la cumplen
+     */
+    List<T> filtrar(Predicate<T> condicion);
+
+    int tamanio();
+
+    boolean estaVacia();
+
+    /**
+     * Indica si la caché ya no admite más entidades sin expulsar otras.
+     * Las cargas iniciales dejan de leer filas cuando se llena.
+     * @return true si está llena
+     */
+    boolean estaLlena();
+
+    /**
+     * Obtiene las estadísticas de la caché
+     * @return Mapa con el número de entradas y, si la caché está acotada, aciertos, fallos y expulsiones
+     */
+    Map<String, Object> obtenerEstadisticas();
+}
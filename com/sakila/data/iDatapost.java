@@ -1,6 +1,7 @@
 package com.sakila.data;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Interfaz genérica para operaciones CRUD en la base de datos
@@ -15,6 +16,14 @@ public interface iDatapost<T> {
      */
     boolean post(T entity);
     
+    /**
+     * Crea varias entidades con inserciones en lote; o se crean todas o ninguna.
+     * Los IDs generados se asignan a cada entidad en el mismo orden de la lista.
+     * @param entities Entidades a crear
+     * @return true si se crearon todas, false en caso contrario
+     */
+    boolean postAll(List<T> entities);
+    
     /**
      * Actualiza una entidad existente en la base de datos
      * @param entity Entidad a actualizar
@@ -22,6 +31,13 @@ public interface iDatapost<T> {
      */
     boolean put(T entity);
     
+    /**
+     * Actualiza varias entidades con actualizaciones en lote; o se aplican todas o ninguna
+     * @param entities Entidades a actualizar
+     * @return true si se aplicaron, false en caso contrario
+     */
+    boolean putAll(List<T> entities);
+    
     /**
      * Marca una entidad como inactiva en la base de datos
      * @param id ID de la entidad a eliminar
@@ -29,6 +45,13 @@ public interface iDatapost<T> {
      */
     boolean delete(int id);
     
+    /**
+     * Elimina (o marca como inactivas) varias entidades por bloques de IDs
+     * @param ids IDs de las entidades a eliminar
+     * @return true si se aplicó, false en caso contrario
+     */
+    boolean deleteAll(int... ids);
+    
     /**
      * Obtiene una entidad por su ID
      * @param id ID de la entidad
@@ -38,7 +61,7 @@ public interface iDatapost<T> {
     
     /**
      * Obtiene todas las entidades
-     * @return Lista de entidades
+     * @return Lista de entidades; puede ser de solo lectura (vista compartida de la caché)
      */
     List<T> get();
     
@@ -48,4 +71,22 @@ public interface iDatapost<T> {
      * @return Lista de entidades que cumplen los criterios
      */
     List<T> get(String... criterios);
+    
+    /**
+     * Obtiene una página de entidades ordenadas por ID, empezando después de despuesDeId
+     * @param despuesDeId Último ID de la página anterior (0 para la primera);
+     *                    normalmente el valor de Pagina.getSiguiente()
+     * @param tamanio Número máximo de entidades de la página
+     * @return Página de entidades
+     */
+    Pagina<T> page(int despuesDeId, int tamanio);
+    
+    /**
+     * Recorre todas las entidades como Stream perezoso, sin cargarlas todas en memoria.
+     * Debe cerrarse al terminar (try-with-resources).
+     * @return Stream de entidades
+     */
+    default Stream<T> stream() {
+        return get().stream();
+    }
 }
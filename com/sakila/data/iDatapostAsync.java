@@ -0,0 +1,67 @@
+package com.sakila.data;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Versión asíncrona de iDatapost. Cada operación se ejecuta en EjecutorAsincrono
+ * con su propia conexión del pool, así se pueden lanzar muchas consultas a la vez
+ * y combinar los resultados con CompletableFuture.allOf(...).
+ * Las operaciones no participan en la transacción del hilo que las lanza.
+ * @param <T> Tipo de entidad
+ * @author Nicolas Zierow Fermin
+ */
+public interface iDatapostAsync<T> extends iDatapost<T> {
+    /**
+     * Crea una nueva entidad en segundo plano
+     * @param entity Entidad a crear
+     * @return Futuro con true si se creó correctamente
+     */
+    default CompletableFuture<Boolean> postAsync(T entity) {
+        return EjecutorAsincrono.ejecutar(() -> post(entity));
+    }
+
+    /**
+     * Actualiza una entidad en segundo plano
+     * @param entity Entidad a actualizar
+     * @return Futuro con true si se actualizó correctamente
+     */
+    default CompletableFuture<Boolean> putAsync(T entity) {
+        return EjecutorAsincrono.ejecutar(() -> put(entity));
+    }
+
+    /**
+     * Elimina una entidad en segundo plano
+     * @param id ID de la entidad a eliminar
+     * @return Futuro con true si se eliminó correctamente
+     */
+    default CompletableFuture<Boolean> deleteAsync(int id) {
+        return EjecutorAsincrono.ejecutar(() -> delete(id));
+    }
+
+    /**
+     * Obtiene una entidad por su ID en segundo plano
+     * @param id ID de la entidad
+     * @return Futuro con la entidad, o con null si no existe
+     */
+    default CompletableFuture<T> getAsync(int id) {
+        return EjecutorAsincrono.ejecutar(() -> get(id));
+    }
+
+    /**
+     * Obtiene todas las entidades en segundo plano
+     * @return Futuro con la lista de entidades
+     */
+    default CompletableFuture<List<T>> getAsync() {
+        return EjecutorAsincrono.ejecutar(() -> get());
+    }
+
+    /**
+     * Busca entidades según criterios en segundo plano
+     * @param criterios Criterios de búsqueda
+     * @return Futuro con la lista de entidades que cumplen los criterios
+     */
+    default CompletableFuture<List<T>> getAsync(String... criterios) {
+        return EjecutorAsincrono.ejecutar(() -> get(criterios));
+    }
+}
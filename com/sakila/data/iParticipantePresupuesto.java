@@ -0,0 +1,33 @@
+package com.sakila.data;
+
+/**
+ * Caché que comparte el presupuesto global de memoria (PresupuestoMemoria)
+ * @author Nicolas Zierow Fermin
+ */
+public interface iParticipantePresupuesto {
+    /**
+     * @return Nombre de la caché, para logs y estadísticas
+     */
+    String getNombre();
+
+    /**
+     * @return Bytes estimados que ocupan sus entradas
+     */
+    long pesoEstimado();
+
+    /**
+     * Valor de la próxima entrada que expulsaría: accesos recientes por byte.
+     * Double.POSITIVE_INFINITY si no puede expulsar nada (vacía o caché de tabla completa)
+     * @return Accesos recientes por byte de la víctima
+     */
+    double valorPorByteVictima();
+
+    /**
+     * Expulsa entradas mientras su valor por byte no supere el indicado, hasta liberar
+     * los bytes pedidos. Expulsa al menos una si puede
+     * @param valorMaximo Valor por byte a partir del cual se para
+     * @param bytes Bytes que se quieren liberar
+     * @return Bytes liberados
+     */
+    long liberar(double valorMaximo, long bytes);
+}
@@ -7,8 +7,9 @@ import java.util.Date;
  * @author Nicolas Zierow Fermin
  */
 public class Inventario extends Entity {
-    private Pelicula pelicula;
-    private Store tienda;
+    // Se resuelven al primer acceso; los IDs están disponibles sin resolverlas
+    private Referencia<Pelicula> pelicula;
+    private Referencia<Store> tienda;
     
     /**
      * Constructor por defecto
@@ -24,8 +25,8 @@ public class Inventario extends Entity {
      */
     public Inventario(Pelicula pelicula, Store tienda) {
         super();
-        this.pelicula = pelicula;
-        this.tienda = tienda;
+        this.pelicula = Referencia.de(pelicula);
+        this.tienda = Referencia.de(tienda);
     }
     
     /**
@@ -36,8 +37,8 @@ public class Inventario extends Entity {
      */
     public Inventario(int id, Pelicula pelicula, Store tienda) {
         super(id);
-        this.pelicula = pelicula;
-        this.tienda = tienda;
+        this.pelicula = Referencia.de(pelicula);
+        this.tienda = Referencia.de(tienda);
     }
     
     /**
@@ -51,8 +52,8 @@ public class Inventario extends Entity {
      */
     public Inventario(int id, Pelicula pelicula, Store tienda, Date fechaCreacion, Date ultimaActualizacion, boolean activo) {
         super(id, fechaCreacion, ultimaActualizacion, activo);
-        this.pelicula = pelicula;
-        this.tienda = tienda;
+        this.pelicula = Referencia.de(pelicula);
+        this.tienda = Referencia.de(tienda);
     }
     
     /**
@@ -60,7 +61,7 @@ public class Inventario extends Entity {
      * @return Película
      */
     public Pelicula getPelicula() {
-        return pelicula;
+        return pelicula != null ? pelicula.get() : null;
     }
     
     /**
@@ -68,15 +69,39 @@ public class Inventario extends Entity {
      * @param pelicula Película
      */
     public void setPelicula(Pelicula pelicula) {
+        this.pelicula = Referencia.de(pelicula);
+    }
+    
+    /**
+     * Obtiene la referencia a la película (para leer su ID o resolverla en lote)
+     * @return Referencia, o null si no tiene película
+     */
+    public Referencia<Pelicula> getReferenciaPelicula() {
+        return pelicula;
+    }
+    
+    /**
+     * Establece la referencia a la película
+     * @param pelicula Referencia, normalmente perezosa
+     */
+    public void setReferenciaPelicula(Referencia<Pelicula> pelicula) {
         this.pelicula = pelicula;
     }
     
+    /**
+     * Obtiene el ID de la película sin resolverla
+     * @return ID de la película, o 0 si no tiene
+     */
+    public int getIdPelicula() {
+        return pelicula != null ? pelicula.getId() : 0;
+    }
+    
     /**
      * Obtiene la tienda
      * @return Tienda
      */
     public Store getTienda() {
-        return tienda;
+        return tienda != null ? tienda.get() : null;
     }
     
     /**
@@ -84,20 +109,39 @@ public class Inventario extends Entity {
      * @param tienda Tienda
      */
     public void setTienda(Store tienda) {
+        this.tienda = Referencia.de(tienda);
+    }
+    
+    /**
+     * Establece la referencia a la tienda
+     * @param tienda Referencia, normalmente perezosa
+     */
+    public void setReferenciaTienda(Referencia<Store> tienda) {
         this.tienda = tienda;
     }
     
+    /**
+     * Obtiene el ID de la tienda sin resolverla
+     * @return ID de la tienda, o 0 si no tiene
+     */
+    public int getIdTienda() {
+        return tienda != null ? tienda.getId() : 0;
+    }
+    
     @Override
     public boolean validar() {
-        return pelicula != null && pelicula.validar() && 
-               tienda != null && tienda.validar();
+        Pelicula laPelicula = getPelicula();
+        Store laTienda = getTienda();
+        return laPelicula != null && laPelicula.validar() && 
+               laTienda != null && laTienda.validar();
     }
     
     @Override
     public String toString() {
+        Pelicula laPelicula = getPelicula();
         return "Inventario{" +
                 "id=" + id +
-                ", pelicula=" + (pelicula != null ? pelicula.getTitulo() : "null") +
+                ", pelicula=" + (laPelicula != null ? laPelicula.getTitulo() : "null") +
                 ", tienda=" + (tienda != null ? tienda.getId() : "null") +
                 ", ultimaActualizacion=" + ultimaActualizacion +
                 '}';
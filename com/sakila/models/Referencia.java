@@ -0,0 +1,75 @@
+package com.sakila.models;
+
+import java.util.function.IntFunction;
+
+/**
+ * Referencia a otra entidad por su clave foránea. La entidad se obtiene la primera vez
+ * que se pide (a través del resolutor, normalmente la caché de su controlador), de modo
+ * que cargar filas que la referencian no obliga a cargarla.
+ * @param <T> Tipo de la entidad referenciada
+ * @author Nicolas Zierow Fermin
+ */
+public final class Referencia<T extends Entity> {
+    private final int id;
+    private final IntFunction<T> resolutor;
+    private volatile T entidad;
+
+    private Referencia(int id, IntFunction<T> resolutor, T entidad) {
+        this.id = id;
+        this.resolutor = resolutor;
+        this.entidad = entidad;
+    }
+
+    /**
+     * Referencia ya resuelta a una entidad
+     * @param entidad Entidad referenciada
+     * @param <T> Tipo de la entidad
+     * @return Referencia, o null si la entidad es null
+     */
+    public static <T extends Entity> Referencia<T> de(T entidad) {
+        return entidad == null ? null : new Referencia<>(entidad.getId(), null, entidad);
+    }
+
+    /**
+     * Referencia que se resuelve al primer acceso
+     * @param id ID de la entidad referenciada
+     * @param resolutor Obtiene la entidad a partir de su ID
+     * @param <T> Tipo de la entidad
+     * @return Referencia sin resolver
+     */
+    public static <T extends Entity> Referencia<T> perezosa(int id, IntFunction<T> resolutor) {
+        return new Referencia<>(id, resolutor, null);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public boolean estaResuelta() {
+        return entidad != null;
+    }
+
+    /**
+     * Obtiene la entidad, resolviéndola si aún no se había hecho
+     * @return Entidad referenciada, o null si no existe
+     */
+    public T get() {
+        T actual = entidad;
+        if (actual == null && resolutor != null) {
+            // Si dos hilos resuelven a la vez ambos obtienen la misma entidad de la caché
+            actual = resolutor.apply(id);
+            entidad = actual;
+        }
+        return actual;
+    }
+
+    /**
+     * Fija la entidad ya obtenida por otra vía (p. ej. resuelta en lote junto con otras)
+     * @param resuelta Entidad con el mismo ID
+     */
+    public void resolver(T resuelta) {
+        if (resuelta != null && resuelta.getId() == id) {
+            entidad = resuelta;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.sakila.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Mapa de claves int a objetos seguro entre hilos, para muchos lectores y escrituras poco frecuentes.
+ * <p>
+ * Las claves se reparten en segmentos; cada segmento publica un IntObjectMap que nunca se
+ * modifica una vez visible. Las lecturas solo leen esa referencia (sin bloqueo ni espera) y
+ * cada escritura bloquea únicamente su segmento, copia su mapa, lo cambia y publica la copia.
+ * Las operaciones en lote copian cada segmento una sola vez.
+ * <p>
+ * Una escritura cuesta una copia de su segmento, así que conviene para cachés que se leen
+ * mucho más de lo que se modifican. No admite valores null.
+ * @param <V> Tipo de los valores
+ * @author Nicolas Zierow Fermin
+ */
+public class ConcurrentIntObjectMap<V> {
+    private static final int SEGMENTOS = 16;
+    // Los segmentos se eligen con los bits altos del hash; los bajos los usa cada IntObjectMap
+    private static final int DESPLAZAMIENTO = 32 - Integer.numberOfTrailingZeros(SEGMENTOS);
+
+    private final Segmento<V>[] segmentos;
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentIntObjectMap() {
+        segmentos = (Segmento<V>[]) new Segmento<?>[SEGMENTOS];
+        for (int i = 0; i < SEGMENTOS; i++) {
+            segmentos[i] = new Segmento<>();
+        }
+    }
+
+    public V get(int clave) {
+        return segmento(clave).mapa.get(clave);
+    }
+
+    public boolean containsKey(int clave) {
+        return segmento(clave).mapa.containsKey(clave);
+    }
+
+    /**
+     * Asocia un valor a una clave
+     * @param clave Clave
+     * @param valor Valor (no null)
+     * @return Valor anterior, o null si no había
+     */
+    public V put(int clave, V valor) {
+        Segmento<V> segmento = segmento(clave);
+        synchronized (segmento) {
+            IntObjectMap<V> copia = new IntObjectMap<>(segmento.mapa);
+            V anterior = copia.put(clave, valor);
+            segmento.mapa = copia;
+            return anterior;
+        }
+    }
+
+    /**
+     * Asocia un valor solo si la clave no tenía ninguno
+     * @return Valor ya existente, o null si se ha guardado el nuevo
+     */
+    public V putIfAbsent(int clave, V valor) {
+        V actual = get(clave);
+        if (actual != null) {
+            return actual;
+        }
+
+        Segmento<V> segmento = segmento(clave);
+        synchronized (segmento) {
+            actual = segmento.mapa.get(clave);
+            if (actual != null) {
+                return actual;
+            }
+            IntObjectMap<V> copia = new IntObjectMap<>(segmento.mapa);
+            copia.put(clave, valor);
+            segmento.mapa = copia;
+            return null;
+        }
+    }
+
+    /**
+     * Guarda todas las entradas de otro mapa, con una copia por segmento afectado
+     * @param entradas Entradas a guardar
+     */
+    public void putAll(IntObjectMap<? extends V> entradas) {
+        List<IntObjectMap<V>> partes = repartir(entradas);
+        for (int i = 0; i < SEGMENTOS; i++) {
+            IntObjectMap<V> parte = partes.get(i);
+            if (parte.isEmpty()) {
+                continue;
+            }
+            Segmento<V> segmento = segmentos[i];
+            synchronized (segmento) {
+                IntObjectMap<V> copia = new IntObjectMap<>(segmento.mapa);
+                parte.forEach(copia::put);
+                segmento.mapa = copia;
+            }
+        }
+    }
+
+    /**
+     * Sustituye el contenido entero por otro. Cada segmento cambia de una vez, pero no todos
+     * a la vez: una lectura concurrente puede ver unas claves ya nuevas y otras aún antiguas.
+     * @param entradas Contenido nuevo
+     */
+    public void replaceContents(IntObjectMap<? extends V> entradas) {
+        List<IntObjectMap<V>> partes = repartir(entradas);
+        for (int i = 0; i < SEGMENTOS; i++) {
+            Segmento<V> segmento = segmentos[i];
+            synchronized (segmento) {
+                segmento.mapa = partes.get(i);
+            }
+        }
+    }
+
+    /**
+     * Quita una clave
+     * @param clave Clave
+     * @return Valor que tenía, o null si no estaba
+     */
+    public V remove(int clave) {
+        Segmento<V> segmento = segmento(clave);
+        if (!segmento.mapa.containsKey(clave)) {
+            return null;
+        }
+        synchronized (segmento) {
+            if (!segmento.mapa.containsKey(clave)) {
+                return null;
+            }
+            IntObjectMap<V> copia = new IntObjectMap<>(segmento.mapa);
+            V anterior = copia.remove(clave);
+            segmento.mapa = copia;
+            return anterior;
+        }
+    }
+
+    /**
+     * Quita varias claves, con una copia por segmento afectado
+     * @param claves Claves a quitar
+     */
+    public void removeAll(int... claves) {
+        List<IntSet> partes = new ArrayList<>(SEGMENTOS);
+        for (int i = 0; i < SEGMENTOS; i++) {
+            partes.add(new IntSet());
+        }
+        for (int clave : claves) {
+            partes.get(indice(clave)).add(clave);
+        }
+
+        for (int i = 0; i < SEGMENTOS; i++) {
+            IntSet parte = partes.get(i);
+            if (parte.isEmpty()) {
+                continue;
+            }
+            Segmento<V> segmento = segmentos[i];
+            synchronized (segmento) {
+                IntObjectMap<V> copia = new IntObjectMap<>(segmento.mapa);
+                for (int clave : parte.toArray()) {
+                    copia.remove(clave);
+                }
+                segmento.mapa = copia;
+            }
+        }
+    }
+
+    /**
+     * Número de entradas; con escrituras concurrentes es aproximado
+     */
+    public int size() {
+        int total = 0;
+        for (Segmento<V> segmento : segmentos) {
+            total += segmento.mapa.size();
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        for (Segmento<V> segmento : segmentos) {
+            if (!segmento.mapa.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        for (Segmento<V> segmento : segmentos) {
+            synchronized (segmento) {
+                segmento.mapa = new IntObjectMap<>();
+            }
+        }
+    }
+
+    /**
+     * Recorre todas las entradas, sin orden definido. Cada segmento se recorre tal como
+     * estaba al llegar a él; las escrituras concurrentes no afectan al recorrido.
+     * @param visitante Recibe cada clave con su valor
+     */
+    public void forEach(IntObjectMap.Visitante<? super V> visitante) {
+        for (Segmento<V> segmento : segmentos) {
+            segmento.mapa.forEach(visitante);
+        }
+    }
+
+    /**
+     * Copia de los valores, sin orden definido
+     * @return Lista nueva con los valores
+     */
+    public List<V> values() {
+        List<V> copia = new ArrayList<>(size());
+        forEach((clave, valor) -> copia.add(valor));
+        return copia;
+    }
+
+    private List<IntObjectMap<V>> repartir(IntObjectMap<? extends V> entradas) {
+        List<IntObjectMap<V>> partes = new ArrayList<>(SEGMENTOS);
+        int esperados = entradas.size() / SEGMENTOS + 1;
+        for (int i = 0; i < SEGMENTOS; i++) {
+            partes.add(new IntObjectMap<>(esperados));
+        }
+        entradas.forEach((clave, valor) -> partes.get(indice(clave)).put(clave, valor));
+        return partes;
+    }
+
+    private Segmento<V> segmento(int clave) {
+        return segmentos[indice(clave)];
+    }
+
+    private static int indice(int clave) {
+        return HashInt.mezclar(clave) >>> DESPLAZAMIENTO;
+    }
+
+    private static final class Segmento<V> {
+        volatile IntObjectMap<V> mapa = new IntObjectMap<>();
+    }
+}
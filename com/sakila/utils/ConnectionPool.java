@@ -0,0 +1,481 @@
+package com.sakila.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pool acotado de conexiones JDBC.
+ * Las conexiones prestadas son proxies: al llamar a close() vuelven al pool
+ * en lugar de cerrar el socket con MySQL, y sus sentencias preparadas se reutilizan
+ * mediante una {@link StatementCache} por conexión física.
+ * @author Nicolas Zierow Fermin
+ */
+public class ConnectionPool {
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minimo;
+    private final int maximo;
+    private final long esperaMaximaMs;
+    private final long inactividadMaximaMs;
+    private final long vidaMaximaMs;
+    private final int validacionSegundos;
+    private final int capacidadSentencias;
+    private final StatementCache.Contadores contadoresSentencias = new StatementCache.Contadores();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition disponible = lock.newCondition();
+    private final Deque<ConexionPool> inactivas = new ArrayDeque<>();
+    private final ScheduledExecutorService mantenimiento;
+
+    private int total;
+    private int activas;
+    private int esperando;
+    private boolean cerrado;
+
+    // Estadísticas
+    private long prestamos;
+    private long timeouts;
+    private long creadas;
+    private long descartadas;
+    private long esperaTotalNanos;
+    private long esperaMaximaNanos;
+
+    /**
+     * Constructor
+     * @param url URL de conexión
+     * @param user Usuario
+     * @param password Contraseña
+     * @param minimo Número mínimo de conexiones abiertas
+     * @param maximo Número máximo de conexiones abiertas
+     * @param esperaMaximaMs Tiempo máximo de espera al pedir una conexión
+     * @param inactividadMaximaMs Tiempo tras el cual se cierra una conexión inactiva (por encima del mínimo)
+     * @param vidaMaximaMs Tiempo de vida máximo de una conexión física
+     * @param capacidadSentencias Sentencias preparadas guardadas por conexión (0 desactiva la caché)
+     */
+    public ConnectionPool(String url, String user, String password, int minimo, int maximo,
+                          long esperaMaximaMs, long inactividadMaximaMs, long vidaMaximaMs,
+                          int capacidadSentencias) {
+        if (minimo < 0 || maximo <= 0 || minimo > maximo) {
+            throw new IllegalArgumentException("Tamaño de pool no válido: min=" + minimo + ", max=" + maximo);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.inactividadMaximaMs = inactividadMaximaMs;
+        this.vidaMaximaMs = vidaMaximaMs;
+        this.validacionSegundos = 2;
+        this.capacidadSentencias = capacidadSentencias;
+
+        this.mantenimiento = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread hilo = new Thread(r, "sakila-pool-mantenimiento");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        long periodo = Math.max(1000, Math.min(inactividadMaximaMs, vidaMaximaMs) / 2);
+        mantenimiento.scheduleWithFixedDelay(this::mantener, periodo, periodo, TimeUnit.MILLISECONDS);
+
+        Logger.info("Pool de conexiones creado (min=" + minimo + ", max=" + maximo + ") para " + url);
+    }
+
+    /**
+     * Presta una conexión del pool, esperando como máximo el tiempo configurado
+     * @return Conexión prestada; close() la devuelve al pool
+     * @throws SQLException Si no hay conexión disponible a tiempo o falla la conexión
+     */
+    public Connection getConnection() throws SQLException {
+        long inicio = System.nanoTime();
+        long limite = inicio + TimeUnit.MILLISECONDS.toNanos(esperaMaximaMs);
+
+        while (true) {
+            ConexionPool conexion = null;
+            boolean crear = false;
+
+            lock.lock();
+            try {
+                while (!cerrado && inactivas.isEmpty() && total >= maximo) {
+                    long restante = limite - System.nanoTime();
+                    if (restante <= 0) {
+                        timeouts++;
+                        throw new SQLTimeoutException("Tiempo de espera agotado (" + esperaMaximaMs +
+                                                      " ms) al obtener una conexión del pool");
+                    }
+                    esperando++;
+                    try {
+                        disponible.awaitNanos(restante);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrumpido mientras se esperaba una conexión", e);
+                    } finally {
+                        esperando--;
+                    }
+                }
+                if (cerrado) {
+                    throw new SQLException("El pool de conexiones está cerrado");
+                }
+
+                if (!inactivas.isEmpty()) {
+                    // LIFO: la conexión usada más recientemente es la que más probablemente sigue viva
+                    conexion = inactivas.pollFirst();
+                } else {
+                    total++;
+                    crear = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (crear) {
+                conexion = abrirFisica();
+            } else if (conexion.expirada() || !conexion.valida()) {
+                descartar(conexion);
+                continue;
+            }
+
+            long espera = System.nanoTime() - inicio;
+            lock.lock();
+            try {
+                activas++;
+                prestamos++;
+                esperaTotalNanos += espera;
+                esperaMaximaNanos = Math.max(esperaMaximaNanos, espera);
+            } finally {
+                lock.unlock();
+            }
+            return conexion.prestar();
+        }
+    }
+
+    /**
+     * Abre una conexión física; el hueco en "total" ya debe estar reservado
+     */
+    private ConexionPool abrirFisica() throws SQLException {
+        try {
+            Connection fisica = DriverManager.getConnection(url, user, password);
+            lock.lock();
+            try {
+                creadas++;
+            } finally {
+                lock.unlock();
+            }
+            return new ConexionPool(fisica);
+        } catch (SQLException e) {
+            lock.lock();
+            try {
+                total--;
+                disponible.signal();
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Devuelve una conexión al pool
+     */
+    private void devolver(ConexionPool conexion) {
+        boolean reutilizable = !conexion.expirada() && conexion.restablecer();
+
+        lock.lock();
+        try {
+            activas--;
+            if (reutilizable && !cerrado) {
+                conexion.ultimoUso = System.nanoTime();
+                inactivas.offerFirst(conexion);
+                disponible.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        descartar(conexion);
+    }
+
+    /**
+     * Cierra una conexión física y libera su hueco en el pool
+     */
+    private void descartar(ConexionPool conexion) {
+        conexion.cerrarFisica();
+        lock.lock();
+        try {
+            total--;
+            descartadas++;
+            disponible.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Tarea periódica: expulsa conexiones inactivas o viejas y repone el mínimo
+     */
+    private void mantener() {
+        List<ConexionPool> expulsadas = new ArrayList<>();
+        int faltantes;
+
+        lock.lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            long ahora = System.nanoTime();
+            Iterator<ConexionPool> it = inactivas.descendingIterator();
+            while (it.hasNext()) {
+                ConexionPool conexion = it.next();
+                boolean ociosa = total - expulsadas.size() > minimo &&
+                                 ahora - conexion.ultimoUso > TimeUnit.MILLISECONDS.toNanos(inactividadMaximaMs);
+                if (ociosa || conexion.expirada()) {
+                    it.remove();
+                    expulsadas.add(conexion);
+                }
+            }
+            faltantes = Math.max(0, minimo - (total - expulsadas.size()));
+            total += faltantes;
+        } finally {
+            lock.unlock();
+        }
+
+        for (ConexionPool conexion : expulsadas) {
+            descartar(conexion);
+        }
+
+        for (int i = 0; i < faltantes; i++) {
+            try {
+                ConexionPool nueva = abrirFisica();
+                lock.lock();
+                try {
+                    nueva.ultimoUso = System.nanoTime();
+                    inactivas.offerLast(nueva);
+                    disponible.signal();
+                } finally {
+                    lock.unlock();
+                }
+            } catch (SQLException e) {
+                Logger.warning("No se pudo reponer el mínimo del pool: " + e.getMessage());
+                lock.lock();
+                try {
+                    total -= faltantes - i - 1;
+                } finally {
+                    lock.unlock();
+                }
+                break;
+            }
+        }
+
+        if (!expulsadas.isEmpty()) {
+            Logger.debug("Pool: " + expulsadas.size() + " conexiones inactivas o expiradas cerradas");
+        }
+    }
+
+    /**
+     * Obtiene las estadísticas del pool
+     * @return Mapa con estadísticas
+     */
+    public Map<String, Object> obtenerEstadisticas() {
+        Map<String, Object> estadisticas = new HashMap<>();
+
+        lock.lock();
+        try {
+            estadisticas.put("activas", activas);
+            estadisticas.put("inactivas", inactivas.size());
+            estadisticas.put("total", total);
+            estadisticas.put("esperando", esperando);
+            estadisticas.put("minimo", minimo);
+            estadisticas.put("maximo", maximo);
+            estadisticas.put("prestamos", prestamos);
+            estadisticas.put("timeouts", timeouts);
+            estadisticas.put("creadas", creadas);
+            estadisticas.put("descartadas", descartadas);
+            estadisticas.put("esperaPromedioMs", prestamos == 0 ? 0.0 : esperaTotalNanos / 1_000_000.0 / prestamos);
+            estadisticas.put("esperaMaximaMs", esperaMaximaNanos / 1_000_000.0);
+        } finally {
+            lock.unlock();
+        }
+
+        return estadisticas;
+    }
+
+    /**
+     * Obtiene las estadísticas de las cachés de sentencias preparadas de todas las conexiones
+     * @return Mapa con aciertos, fallos, expulsiones y tasa de aciertos
+     */
+    public Map<String, Object> obtenerEstadisticasSentencias() {
+        Map<String, Object> estadisticas = contadoresSentencias.obtenerEstadisticas();
+        estadisticas.put("capacidadPorConexion", capacidadSentencias);
+        return estadisticas;
+    }
+
+    /**
+     * Cierra el pool: las conexiones inactivas se cierran ya y las prestadas al devolverse
+     */
+    public void close() {
+        List<ConexionPool> pendientes;
+
+        lock.lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            pendientes = new ArrayList<>(inactivas);
+            inactivas.clear();
+            disponible.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        mantenimiento.shutdownNow();
+        for (ConexionPool conexion : pendientes) {
+            descartar(conexion);
+        }
+        Logger.info("Pool de conexiones cerrado para " + url);
+    }
+
+    /**
+     * Conexión física administrada por el pool
+     */
+    private class ConexionPool {
+        private final Connection fisica;
+        private final StatementCache sentencias;
+        private final long creada = System.nanoTime();
+        private long ultimoUso = creada;
+
+        ConexionPool(Connection fisica) {
+            this.fisica = fisica;
+            this.sentencias = capacidadSentencias > 0
+                    ? new StatementCache(fisica, capacidadSentencias, contadoresSentencias)
+                    : null;
+        }
+
+        boolean expirada() {
+            return System.nanoTime() - creada > TimeUnit.MILLISECONDS.toNanos(vidaMaximaMs);
+        }
+
+        boolean valida() {
+            try {
+                return fisica.isValid(validacionSegundos);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Deja la conexión como recién abierta antes de volver al pool
+         * @return false si la conexión quedó inservible
+         */
+        boolean restablecer() {
+            try {
+                if (fisica.isClosed()) {
+                    return false;
+                }
+                if (!fisica.getAutoCommit()) {
+                    fisica.rollback();
+                    fisica.setAutoCommit(true);
+                }
+                if (fisica.isReadOnly()) {
+                    fisica.setReadOnly(false);
+                }
+                fisica.clearWarnings();
+                return true;
+            } catch (SQLException e) {
+                Logger.warning("Conexión descartada al devolverla al pool: " + e.getMessage());
+                return false;
+            }
+        }
+
+        void cerrarFisica() {
+            if (sentencias != null) {
+                sentencias.cerrar();
+            }
+            try {
+                fisica.close();
+            } catch (SQLException e) {
+                Logger.warning("Error al cerrar conexión física: " + e.getMessage());
+            }
+        }
+
+        Connection prestar() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class },
+                    new Prestamo(this));
+        }
+    }
+
+    /**
+     * Manejador del proxy de un préstamo: close() devuelve la conexión al pool
+     */
+    private class Prestamo implements InvocationHandler {
+        private ConexionPool conexion;
+
+        Prestamo(ConexionPool conexion) {
+            this.conexion = conexion;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String nombre = method.getName();
+
+            if (nombre.equals("close")) {
+                ConexionPool devuelta = conexion;
+                conexion = null;
+                if (devuelta != null) {
+                    devolver(devuelta);
+                }
+                return null;
+            }
+            if (nombre.equals("isClosed")) {
+                return conexion == null || conexion.fisica.isClosed();
+            }
+            if (nombre.equals("equals")) {
+                return proxy == args[0];
+            }
+            if (nombre.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+            if (nombre.equals("toString")) {
+                return "ConexionPool[" + (conexion != null ? conexion.fisica : "devuelta") + "]";
+            }
+            if (conexion == null) {
+                throw new SQLException("La conexión ya fue devuelta al pool");
+            }
+            if (nombre.equals("prepareStatement") && conexion.sentencias != null) {
+                // Solo se cachean prepareStatement(sql) y prepareStatement(sql, autoGeneratedKeys)
+                if (args.length == 1) {
+                    return conexion.sentencias.preparar((String) args[0], null);
+                }
+                if (args.length == 2 && method.getParameterTypes()[1] == int.class) {
+                    return conexion.sentencias.preparar((String) args[0], (Integer) args[1]);
+                }
+            }
+
+            try {
+                return method.invoke(conexion.fisica, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
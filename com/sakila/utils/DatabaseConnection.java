@@ -1,19 +1,42 @@
 package com.sakila.utils;
 
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
 
 /**
  * Clase para manejar la conexión a la base de datos MySQL
  * @author Nicolas Zierow Fermin
  */
 public class DatabaseConnection {
-    private static final String URL = "jdbc:mysql://localhost:3306/sakila";
-    private static final String USER = "root"; // Usuario de MySQL
-    private static final String PASSWORD = "2121"; 
+    private static final String CONFIG_FILE = "config.properties";
     private static final String DRIVER = "com.mysql.cj.jdbc.Driver";
-    
+
+    // Valores por defecto si config.properties no existe o no define la clave
+    private static final String DEFAULT_URL = "jdbc:mysql://localhost:3306/sakila";
+    private static final String DEFAULT_USER = "root"; // Usuario de MySQL
+    private static final String DEFAULT_PASSWORD = "2121";
+    private static final int DEFAULT_POOL_MIN = 2;
+    private static final int DEFAULT_POOL_MAX = 10;
+    private static final long DEFAULT_POOL_ESPERA_MS = 5000;
+    private static final long DEFAULT_POOL_INACTIVIDAD_MS = 5 * 60 * 1000;
+    private static final long DEFAULT_POOL_VIDA_MAXIMA_MS = 30 * 60 * 1000;
+    private static final int DEFAULT_POOL_SENTENCIAS = 64;
+    private static final long DEFAULT_REPLICA_VENTANA_MS = 2000;
+    private static final int DEFAULT_STREAM_FETCH = 500;
+
+    // Configuración en uso: inmutable, se sustituye entera y solo después de que los pools
+    // nuevos hayan arrancado. Null hasta la primera lectura de config.properties
+    private static volatile Configuracion config;
+
+    private static volatile ConnectionPool pool;
+    private static volatile ConnectionPool replicaPool;
+
     static {
         try {
             // Cargar el driver
@@ -24,25 +47,447 @@ public class DatabaseConnection {
             e.printStackTrace();
         }
     }
-    
+
+    /**
+     * Obtiene el pool de conexiones, creándolo la primera vez con la configuración del archivo
+     * @return Pool de conexiones
+     */
+    private static ConnectionPool getPool() {
+        ConnectionPool actual = pool;
+        if (actual != null) {
+            return actual;
+        }
+        synchronized (DatabaseConnection.class) {
+            if (pool == null) {
+                Configuracion actualConfig = configuracion();
+                Logger.info("Conectando a la base de datos: " + actualConfig.url);
+                ConnectionPool nuevo = crearPool(actualConfig, actualConfig.url, actualConfig.user, actualConfig.password);
+                if (actualConfig.replicaUrl != null) {
+                    Logger.info("Réplica de lectura configurada: " + actualConfig.replicaUrl);
+                    replicaPool = crearPool(actualConfig, actualConfig.replicaUrl,
+                                            actualConfig.replicaUser, actualConfig.replicaPassword);
+                }
+                pool = nuevo;
+            }
+            return pool;
+        }
+    }
+
     /**
-     * Obtiene una conexión a la base de datos
+     * Configuración en uso; la primera vez la lee de config.properties
+     */
+    private static Configuracion configuracion() {
+        Configuracion actual = config;
+        if (actual != null) {
+            return actual;
+        }
+        synchronized (DatabaseConnection.class) {
+            if (config == null) {
+                config = Configuracion.desde(leerPropiedades());
+            }
+            return config;
+        }
+    }
+
+    /**
+     * Crea un pool con el tamaño de la configuración indicada
+     */
+    private static ConnectionPool crearPool(Configuracion configuracion, String poolUrl, String poolUser,
+                                            String poolPassword) {
+        return new ConnectionPool(poolUrl, poolUser, poolPassword, configuracion.poolMin, configuracion.poolMax,
+                                  configuracion.poolEsperaMs, configuracion.poolInactividadMs,
+                                  configuracion.poolVidaMaximaMs, configuracion.poolSentencias);
+    }
+
+    /**
+     * Obtiene una conexión del pool. Al cerrarla se devuelve al pool.
      * @return Conexión a la base de datos
      * @throws SQLException Si ocurre un error al conectar
      */
     public static Connection getConnection() throws SQLException {
-        Logger.info("Conectando a la base de datos: " + URL);
-        return DriverManager.getConnection(URL, USER, PASSWORD);
+        ConnectionPool actual = getPool();
+        try {
+            return actual.getConnection();
+        } catch (SQLException e) {
+            // Si el pool fue reemplazado mientras esperábamos, reintentamos en el nuevo
+            ConnectionPool nuevo = pool;
+            if (nuevo != null && nuevo != actual) {
+                return nuevo.getConnection();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Obtiene una conexión para lectura: de la réplica si está configurada,
+     * o del primario si no la hay o no responde
+     * @return Conexión a la base de datos
+     * @throws SQLException Si ocurre un error al conectar
+     */
+    public static Connection getReadConnection() throws SQLException {
+        getPool();
+        ConnectionPool replica = replicaPool;
+        if (replica == null) {
+            return getConnection();
+        }
+        try {
+            return replica.getConnection();
+        } catch (SQLException e) {
+            Logger.warning("Réplica no disponible, se lee del primario: " + e.getMessage());
+            return getConnection();
+        }
+    }
+
+    /**
+     * Indica si hay una réplica de lectura configurada
+     * @return true si hay réplica
+     */
+    public static boolean hasReplica() {
+        getPool();
+        return replicaPool != null;
+    }
+
+    /**
+     * Número máximo de conexiones del pool primario
+     * @return Tamaño máximo configurado
+     */
+    public static int getMaxPoolSize() {
+        return configuracion().poolMax;
+    }
+
+    /**
+     * Tamaño de lote para las lecturas en flujo (db.stream.fetch)
+     * @return Valor para Statement.setFetchSize
+     */
+    public static int getStreamFetchSize() {
+        int streamFetchSize = configuracion().streamFetchSize;
+        return streamFetchSize < 0 ? Integer.MIN_VALUE : streamFetchSize;
     }
-    
+
+    /**
+     * Lee un valor numérico de config.properties
+     * @param key Clave a leer
+     * @param defaultValue Valor si la clave no existe o no es un número
+     * @return Valor configurado
+     */
+    public static long getConfigNumber(String key, long defaultValue) {
+        return leerNumero(configuracion().propiedades, key, defaultValue);
+    }
+
+    /**
+     * Lee un valor de texto de config.properties
+     * @param key Clave a leer
+     * @param defaultValue Valor si la clave no existe
+     * @return Valor configurado
+     */
+    public static String getConfigValue(String key, String defaultValue) {
+        return configuracion().propiedades.getProperty(key, defaultValue);
+    }
+
     /**
-     * Actualiza la configuración de la conexión
+     * Tiempo tras una escritura durante el cual las lecturas van al primario,
+     * para que se vean los propios cambios aunque la réplica vaya con retraso
+     * @return Ventana en milisegundos
+     */
+    public static long getReadYourWritesWindowMs() {
+        return configuracion().replicaVentanaMs;
+    }
+
+    /**
+     * Obtiene las estadísticas del pool de la réplica de lectura
+     * @return Mapa con estadísticas, vacío si no hay réplica
+     */
+    public static Map<String, Object> getReplicaPoolStats() {
+        ConnectionPool actual = replicaPool;
+        if (actual == null) {
+            return new HashMap<>();
+        }
+        return actual.obtenerEstadisticas();
+    }
+
+    /**
+     * Obtiene las estadísticas del pool de conexiones
+     * @return Mapa con estadísticas (activas, inactivas, esperando, tiempos de espera...)
+     */
+    public static Map<String, Object> getPoolStats() {
+        ConnectionPool actual = pool;
+        if (actual == null) {
+            return new HashMap<>();
+        }
+        return actual.obtenerEstadisticas();
+    }
+
+    /**
+     * Obtiene las estadísticas de la caché de sentencias preparadas del pool
+     * @return Mapa con aciertos, fallos, expulsiones y tasa de aciertos
+     */
+    public static Map<String, Object> getStatementCacheStats() {
+        ConnectionPool actual = pool;
+        if (actual == null) {
+            return new HashMap<>();
+        }
+        return actual.obtenerEstadisticasSentencias();
+    }
+
+    /**
+     * Cierra el pool de conexiones
+     */
+    public static synchronized void closePool() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
+        if (replicaPool != null) {
+            replicaPool.close();
+            replicaPool = null;
+        }
+    }
+
+    /**
+     * Vuelve a leer config.properties y reconfigura el pool (y la réplica) si algo cambió.
+     * Si un pool nuevo no conecta no se aplica nada: siguen los pools y las claves anteriores
+     * @return true si la configuración quedó aplicada
+     */
+    public static synchronized boolean reloadConfig() {
+        Configuracion anterior = configuracion();
+        Configuracion nueva = Configuracion.desde(leerPropiedades());
+
+        boolean primarioCambio = !anterior.descripcion().equals(nueva.descripcion()) ||
+                                 !anterior.password.equals(nueva.password);
+        boolean replicaCambio = primarioCambio || !anterior.descripcionReplica().equals(nueva.descripcionReplica()) ||
+                                !Objects.equals(anterior.replicaPassword, nueva.replicaPassword);
+        if (!primarioCambio && !replicaCambio) {
+            // Las demás claves (cache.*, ventana de la réplica...) sí se actualizan
+            config = nueva;
+            Logger.info("config.properties sin cambios de conexión, no se reconfigura el pool");
+            return true;
+        }
+        return aplicar(nueva, primarioCambio, replicaCambio);
+    }
+
+    /**
+     * Cambia la réplica de lectura sin reiniciar la aplicación
+     * @param newUrl Nueva URL de la réplica, o null para leer solo del primario
+     * @param newUser Nuevo usuario
+     * @param newPassword Nueva contraseña
+     * @return true si la nueva réplica quedó aplicada
+     */
+    public static synchronized boolean updateReplicaConfig(String newUrl, String newUser, String newPassword) {
+        getPool();
+        return aplicar(configuracion().conReplica(newUrl, newUser, newPassword), false, true);
+    }
+
+    /**
+     * Actualiza la configuración de la conexión sin reiniciar la aplicación.
+     * Se crea un pool nuevo junto al anterior, los préstamos nuevos pasan al nuevo
+     * y las conexiones del anterior se cierran a medida que se devuelven.
+     * El resto de la configuración sale de config.properties
      * @param newUrl Nueva URL de conexión
      * @param newUser Nuevo usuario
      * @param newPassword Nueva contraseña
+     * @return true si la nueva configuración quedó aplicada
      */
-    public static void updateConfig(String newUrl, String newUser, String newPassword) {
-        // Este método ya no modifica las constantes, pero se mantiene por compatibilidad
-        Logger.info("Solicitud de actualización de configuración recibida (no aplicada debido a valores constantes)");
+    public static synchronized boolean updateConfig(String newUrl, String newUser, String newPassword) {
+        // Si aún no había pool, la réplica del archivo arranca con él
+        return aplicar(configuracion().conConexion(newUrl, newUser, newPassword), true, pool == null);
+    }
+
+    /**
+     * Cambia el tamaño del pool sin reiniciar la aplicación
+     * @param min Número mínimo de conexiones
+     * @param max Número máximo de conexiones
+     * @return true si el nuevo tamaño quedó aplicado
+     */
+    public static synchronized boolean updatePoolSize(int min, int max) {
+        return aplicar(configuracion().conPool(min, max), true, pool == null);
+    }
+
+    /**
+     * Crea los pools nuevos con la configuración indicada, comprueba que conectan y solo
+     * entonces publica la configuración y los pone en uso. Los pools anteriores dejan de
+     * prestar y se vacían de forma gradual
+     * @param nueva Configuración a aplicar
+     * @param primario Si hay que sustituir el pool primario
+     * @param replica Si hay que sustituir la réplica de lectura
+     * @return false si algún pool nuevo no pudo conectar (no cambia nada)
+     */
+    private static boolean aplicar(Configuracion nueva, boolean primario, boolean replica) {
+        ConnectionPool nuevoPool = null;
+        if (primario) {
+            nuevoPool = crearYVerificar(nueva, nueva.url, nueva.user, nueva.password);
+            if (nuevoPool == null) {
+                return false;
+            }
+        }
+        ConnectionPool nuevaReplica = null;
+        if (replica && nueva.replicaUrl != null) {
+            nuevaReplica = crearYVerificar(nueva, nueva.replicaUrl, nueva.replicaUser, nueva.replicaPassword);
+            if (nuevaReplica == null) {
+                if (nuevoPool != null) {
+                    nuevoPool.close();
+                }
+                return false;
+            }
+        }
+
+        config = nueva;
+        if (primario) {
+            ConnectionPool anterior = pool;
+            pool = nuevoPool;
+            if (anterior != null) {
+                anterior.close();
+            }
+            Logger.info("Pool de conexiones reconfigurado: " + nueva.descripcion());
+        }
+        if (replica) {
+            ConnectionPool anterior = replicaPool;
+            replicaPool = nuevaReplica;
+            if (anterior != null) {
+                anterior.close();
+            }
+            Logger.info("Réplica de lectura reconfigurada: " + nueva.descripcionReplica());
+        }
+        return true;
+    }
+
+    /**
+     * Crea un pool y comprueba que puede conectar antes de mover tráfico a él
+     * @return El pool nuevo, o null si la configuración no es válida o no conecta
+     */
+    private static ConnectionPool crearYVerificar(Configuracion configuracion, String poolUrl, String poolUser,
+                                                  String poolPassword) {
+        ConnectionPool nuevo;
+        try {
+            nuevo = crearPool(configuracion, poolUrl, poolUser, poolPassword);
+        } catch (IllegalArgumentException e) {
+            Logger.error("Configuración de pool no válida: " + e.getMessage());
+            return null;
+        }
+
+        try (Connection prueba = nuevo.getConnection()) {
+            Logger.debug("Conexión de prueba del nuevo pool correcta: " + prueba);
+        } catch (SQLException e) {
+            Logger.error("No se pudo conectar con la nueva configuración (" + poolUrl + "): " + e.getMessage());
+            nuevo.close();
+            return null;
+        }
+        return nuevo;
+    }
+
+    /**
+     * Lee config.properties; si no existe se usan los valores por defecto
+     */
+    private static Properties leerPropiedades() {
+        Properties props = new Properties();
+        try (FileInputStream in = new FileInputStream(CONFIG_FILE)) {
+            props.load(in);
+        } catch (IOException e) {
+            Logger.warning("No se pudo leer " + CONFIG_FILE + ", se usan valores por defecto: " + e.getMessage());
+        }
+        return props;
+    }
+
+    private static long leerNumero(Properties props, String clave, long porDefecto) {
+        String valor = props.getProperty(clave);
+        if (valor == null || valor.trim().isEmpty()) {
+            return porDefecto;
+        }
+        try {
+            return Long.parseLong(valor.trim());
+        } catch (NumberFormatException e) {
+            Logger.warning("Valor no válido para " + clave + ": " + valor + ", se usa " + porDefecto);
+            return porDefecto;
+        }
+    }
+
+    /**
+     * Configuración de conexión, de pool y de la réplica, junto con todas las claves leídas
+     * (para las que no son de conexión, p. ej. cache.*). Inmutable: cada cambio crea otra
+     */
+    private static final class Configuracion {
+        final Properties propiedades;
+        final String url;
+        final String user;
+        final String password;
+        final int poolMin;
+        final int poolMax;
+        final long poolEsperaMs;
+        final long poolInactividadMs;
+        final long poolVidaMaximaMs;
+        final int poolSentencias;
+        // Réplica de lectura opcional (db.replica.url); sin ella todo va al primario
+        final String replicaUrl;
+        final String replicaUser;
+        final String replicaPassword;
+        final long replicaVentanaMs;
+        // Filas por viaje al leer en flujo; negativo = fila a fila (streaming del driver MySQL)
+        final int streamFetchSize;
+
+        private Configuracion(Properties propiedades, String url, String user, String password,
+                              int poolMin, int poolMax, String replicaUrl, String replicaUser, String replicaPassword) {
+            this.propiedades = propiedades;
+            this.url = url;
+            this.user = user;
+            this.password = password;
+            this.poolMin = poolMin;
+            this.poolMax = poolMax;
+            this.poolEsperaMs = leerNumero(propiedades, "db.pool.espera.ms", DEFAULT_POOL_ESPERA_MS);
+            this.poolInactividadMs = leerNumero(propiedades, "db.pool.inactividad.ms", DEFAULT_POOL_INACTIVIDAD_MS);
+            this.poolVidaMaximaMs = leerNumero(propiedades, "db.pool.vida.ms", DEFAULT_POOL_VIDA_MAXIMA_MS);
+            this.poolSentencias = (int) leerNumero(propiedades, "db.pool.sentencias", DEFAULT_POOL_SENTENCIAS);
+            this.replicaUrl = replicaUrl;
+            this.replicaUser = replicaUser;
+            this.replicaPassword = replicaPassword;
+            this.replicaVentanaMs = leerNumero(propiedades, "db.replica.ventana.ms", DEFAULT_REPLICA_VENTANA_MS);
+            this.streamFetchSize = (int) leerNumero(propiedades, "db.stream.fetch", DEFAULT_STREAM_FETCH);
+        }
+
+        /**
+         * Configuración de unas propiedades leídas de config.properties (no se modifican después)
+         */
+        static Configuracion desde(Properties props) {
+            String user = props.getProperty("db.user", DEFAULT_USER);
+            String password = props.getProperty("db.password", DEFAULT_PASSWORD);
+            String replica = props.getProperty("db.replica.url", "").trim();
+            return new Configuracion(props,
+                    props.getProperty("db.url", DEFAULT_URL), user, password,
+                    (int) leerNumero(props, "db.pool.min", DEFAULT_POOL_MIN),
+                    (int) leerNumero(props, "db.pool.max", DEFAULT_POOL_MAX),
+                    replica.isEmpty() ? null : replica,
+                    props.getProperty("db.replica.user", user),
+                    props.getProperty("db.replica.password", password));
+        }
+
+        Configuracion conConexion(String nuevaUrl, String nuevoUser, String nuevoPassword) {
+            return new Configuracion(propiedades, nuevaUrl, nuevoUser, nuevoPassword, poolMin, poolMax,
+                                     replicaUrl, replicaUser, replicaPassword);
+        }
+
+        Configuracion conPool(int min, int max) {
+            return new Configuracion(propiedades, url, user, password, min, max,
+                                     replicaUrl, replicaUser, replicaPassword);
+        }
+
+        Configuracion conReplica(String nuevaUrl, String nuevoUser, String nuevoPassword) {
+            return new Configuracion(propiedades, url, user, password, poolMin, poolMax,
+                                     nuevaUrl, nuevoUser, nuevoPassword);
+        }
+
+        /**
+         * Descripción de la conexión primaria (sin contraseña) para logs y comparaciones
+         */
+        String descripcion() {
+            return url + " usuario=" + user +
+                   " pool=" + poolMin + ".." + poolMax +
+                   " espera=" + poolEsperaMs + "ms inactividad=" + poolInactividadMs +
+                   "ms vida=" + poolVidaMaximaMs + "ms sentencias=" + poolSentencias;
+        }
+
+        /**
+         * Descripción de la réplica (sin contraseña)
+         */
+        String descripcionReplica() {
+            return replicaUrl == null ? "sin réplica" : replicaUrl + " usuario=" + replicaUser;
+        }
     }
 }
@@ -0,0 +1,37 @@
+package com.sakila.utils;
+
+/**
+ * Cálculos comunes a las tablas hash de claves int (IntObjectMap, IntSet)
+ * @author Nicolas Zierow Fermin
+ */
+final class HashInt {
+    // Por encima de este factor de carga el sondeo lineal empieza a formar rachas largas
+    private static final float FACTOR_CARGA = 0.6f;
+
+    private HashInt() {
+    }
+
+    /**
+     * Dispersa la clave: los IDs son consecutivos y, sin mezclar, ocuparían posiciones seguidas
+     */
+    static int mezclar(int clave) {
+        int h = clave * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Capacidad (potencia de dos) para guardar un número de entradas sin redimensionar
+     */
+    static int capacidadPara(int esperados, int minima) {
+        long necesaria = (long) Math.ceil(Math.max(esperados, 0) / FACTOR_CARGA) + 1;
+        int capacidad = minima;
+        while (capacidad < necesaria && capacidad < (1 << 30)) {
+            capacidad <<= 1;
+        }
+        return capacidad;
+    }
+
+    static int umbral(int capacidad) {
+        return (int) (capacidad * FACTOR_CARGA);
+    }
+}
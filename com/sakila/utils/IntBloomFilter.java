@@ -0,0 +1,82 @@
+package com.sakila.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom de valores int: responde "seguro que no está" o "puede que esté"
+ * ocupando unos pocos bits por valor. No admite borrados.
+ * Seguro entre hilos: las inserciones marcan bits con operaciones atómicas.
+ * @author Nicolas Zierow Fermin
+ */
+public class IntBloomFilter {
+    private final AtomicLongArray bits;
+    private final int mascara;
+    private final int funciones;
+
+    /**
+     * Constructor
+     * @param esperados Número de valores previsto
+     * @param falsosPositivos Proporción de falsos positivos aceptada con ese número de valores (p. ej. 0.01)
+     */
+    public IntBloomFilter(int esperados, double falsosPositivos) {
+        if (falsosPositivos <= 0 || falsosPositivos >= 1) {
+            throw new IllegalArgumentException("Proporción de falsos positivos no válida: " + falsosPositivos);
+        }
+        int n = Math.max(esperados, 1);
+        double optimos = -n * Math.log(falsosPositivos) / (Math.log(2) * Math.log(2));
+        // Potencia de dos (al menos 64 bits) para elegir la posición con una máscara
+        long tamanio = 64;
+        while (tamanio < optimos && tamanio < (1L << 30)) {
+            tamanio <<= 1;
+        }
+        bits = new AtomicLongArray((int) (tamanio >>> 6));
+        mascara = (int) tamanio - 1;
+        funciones = Math.max(1, (int) Math.round(optimos / n * Math.log(2)));
+    }
+
+    public void put(int valor) {
+        long h = mezclar(valor);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < funciones; i++) {
+            int bit = (h1 + i * h2) & mascara;
+            long marca = 1L << (bit & 63);
+            int palabra = bit >>> 6;
+            long actual = bits.get(palabra);
+            while ((actual & marca) == 0 && !bits.compareAndSet(palabra, actual, actual | marca)) {
+                actual = bits.get(palabra);
+            }
+        }
+    }
+
+    /**
+     * @return false si el valor seguro que no se ha insertado; true si puede que sí
+     */
+    public boolean mightContain(int valor) {
+        long h = mezclar(valor);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < funciones; i++) {
+            int bit = (h1 + i * h2) & mascara;
+            if ((bits.get(bit >>> 6) & (1L << (bit & 63))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int bitSize() {
+        return mascara + 1;
+    }
+
+    public int hashFunctions() {
+        return funciones;
+    }
+
+    private static long mezclar(int valor) {
+        long h = valor * 0x9E3779B97F4A7C15L;
+        h ^= h >>> 32;
+        h *= 0xD6E8FEB86659FD93L;
+        return h ^ (h >>> 32);
+    }
+}
@@ -0,0 +1,242 @@
+package com.sakila.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Mapa de claves int a objetos con direccionamiento abierto (sondeo lineal).
+ * A diferencia de HashMap&lt;Integer, V&gt; no crea un Integer por clave ni un nodo por entrada:
+ * las claves y los valores viven en dos arrays paralelos.
+ * No admite valores null y no es seguro entre hilos (quien lo use debe sincronizar).
+ * @param <V> Tipo de los valores
+ * @author Nicolas Zierow Fermin
+ */
+public class IntObjectMap<V> {
+    private static final int CAPACIDAD_MINIMA = 8;
+
+    /**
+     * Recibe cada par clave-valor al recorrer el mapa
+     * @param <V> Tipo de los valores
+     */
+    @FunctionalInterface
+    public interface Visitante<V> {
+        void visitar(int clave, V valor);
+    }
+
+    // La clave 0 marca huecos libres; si se usa como clave real se guarda aparte
+    private int[] claves;
+    private Object[] valores;
+    private V valorCero;
+    private int tamanio;
+    private int umbral;
+
+    public IntObjectMap() {
+        this(CAPACIDAD_MINIMA);
+    }
+
+    /**
+     * Constructor
+     * @param esperados Número de entradas previsto, para no redimensionar al llenarlo
+     */
+    public IntObjectMap(int esperados) {
+        asignarArrays(HashInt.capacidadPara(esperados, CAPACIDAD_MINIMA));
+    }
+
+    /**
+     * Constructor de copia: duplica los arrays tal cual, sin volver a insertar cada entrada
+     * @param otro Mapa a copiar
+     */
+    public IntObjectMap(IntObjectMap<? extends V> otro) {
+        claves = otro.claves.clone();
+        valores = otro.valores.clone();
+        valorCero = otro.valorCero;
+        tamanio = otro.tamanio;
+        umbral = otro.umbral;
+    }
+
+    public V get(int clave) {
+        if (clave == 0) {
+            return valorCero;
+        }
+        int posicion = buscar(clave);
+        return posicion < 0 ? null : valor(posicion);
+    }
+
+    public boolean containsKey(int clave) {
+        return clave == 0 ? valorCero != null : buscar(clave) >= 0;
+    }
+
+    /**
+     * Asocia un valor a una clave
+     * @param clave Clave
+     * @param valor Valor (no null)
+     * @return Valor anterior, o null si no había
+     */
+    public V put(int clave, V valor) {
+        Objects.requireNonNull(valor, "IntObjectMap no admite valores null");
+        if (clave == 0) {
+            V anterior = valorCero;
+            valorCero = valor;
+            if (anterior == null) {
+                tamanio++;
+            }
+            return anterior;
+        }
+
+        int mascara = claves.length - 1;
+        for (int i = HashInt.mezclar(clave) & mascara; ; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                V anterior = valor(i);
+                valores[i] = valor;
+                return anterior;
+            }
+            if (claves[i] == 0) {
+                claves[i] = clave;
+                valores[i] = valor;
+                if (++tamanio > umbral) {
+                    redimensionar(claves.length * 2);
+                }
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Asocia un valor solo si la clave no tenía ninguno
+     * @return Valor ya existente, o null si se ha guardado el nuevo
+     */
+    public V putIfAbsent(int clave, V valor) {
+        V actual = get(clave);
+        if (actual != null) {
+            return actual;
+        }
+        put(clave, valor);
+        return null;
+    }
+
+    /**
+     * Quita una clave
+     * @param clave Clave
+     * @return Valor que tenía, o null si no estaba
+     */
+    public V remove(int clave) {
+        if (clave == 0) {
+            V anterior = valorCero;
+            if (anterior != null) {
+                valorCero = null;
+                tamanio--;
+            }
+            return anterior;
+        }
+
+        int posicion = buscar(clave);
+        if (posicion < 0) {
+            return null;
+        }
+        V anterior = valor(posicion);
+        liberar(posicion);
+        tamanio--;
+        return anterior;
+    }
+
+    public int size() {
+        return tamanio;
+    }
+
+    public boolean isEmpty() {
+        return tamanio == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(claves, 0);
+        Arrays.fill(valores, null);
+        valorCero = null;
+        tamanio = 0;
+    }
+
+    /**
+     * Recorre todas las entradas, sin orden definido
+     * @param visitante Recibe cada clave con su valor
+     */
+    public void forEach(Visitante<? super V> visitante) {
+        if (valorCero != null) {
+            visitante.visitar(0, valorCero);
+        }
+        for (int i = 0; i < claves.length; i++) {
+            if (claves[i] != 0) {
+                visitante.visitar(claves[i], valor(i));
+            }
+        }
+    }
+
+    /**
+     * Copia de los valores, sin orden definido
+     * @return Lista nueva con los valores
+     */
+    public List<V> values() {
+        List<V> copia = new ArrayList<>(tamanio);
+        forEach((clave, valor) -> copia.add(valor));
+        return copia;
+    }
+
+    private int buscar(int clave) {
+        int mascara = claves.length - 1;
+        for (int i = HashInt.mezclar(clave) & mascara; claves[i] != 0; i = (i + 1) & mascara) {
+            if (claves[i] == clave) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Vacía una posición y recoloca las entradas siguientes de su racha (borrado sin lápidas)
+     */
+    private void liberar(int posicion) {
+        int mascara = claves.length - 1;
+        int hueco = posicion;
+        for (int i = (hueco + 1) & mascara; claves[i] != 0; i = (i + 1) & mascara) {
+            int ideal = HashInt.mezclar(claves[i]) & mascara;
+            // Se mueve si su posición ideal no queda entre el hueco y donde está ahora
+            if (((i - ideal) & mascara) >= ((i - hueco) & mascara)) {
+                claves[hueco] = claves[i];
+                valores[hueco] = valores[i];
+                hueco = i;
+            }
+        }
+        claves[hueco] = 0;
+        valores[hueco] = null;
+    }
+
+    private void redimensionar(int capacidad) {
+        int[] clavesViejas = claves;
+        Object[] valoresViejos = valores;
+        asignarArrays(capacidad);
+
+        int mascara = capacidad - 1;
+        for (int j = 0; j < clavesViejas.length; j++) {
+            int clave = clavesViejas[j];
+            if (clave != 0) {
+                int i = HashInt.mezclar(clave) & mascara;
+                while (claves[i] != 0) {
+                    i = (i + 1) & mascara;
+                }
+                claves[i] = clave;
+                valores[i] = valoresViejos[j];
+            }
+        }
+    }
+
+    private void asignarArrays(int capacidad) {
+        claves = new int[capacidad];
+        valores = new Object[capacidad];
+        umbral = HashInt.umbral(capacidad);
+    }
+
+    @SuppressWarnings("unchecked")
+    private V valor(int posicion) {
+        return (V) valores[posicion];
+    }
+}
@@ -0,0 +1,180 @@
+package com.sakila.utils;
+
+import java.util.Arrays;
+
+/**
+ * Conjunto de int con direccionamiento abierto, sin crear un Integer por elemento.
+ * No es seguro entre hilos.
+ * @author Nicolas Zierow Fermin
+ */
+public class IntSet {
+    private static final int CAPACIDAD_MINIMA = 8;
+
+    // La clave 0 marca huecos libres; si se añade el 0 se anota aparte
+    private int[] claves;
+    private boolean tieneCero;
+    private int tamanio;
+    private int umbral;
+
+    public IntSet() {
+        this(CAPACIDAD_MINIMA);
+    }
+
+    /**
+     * Constructor
+     * @param esperados Número de elementos previsto, para no redimensionar al llenarlo
+     */
+    public IntSet(int esperados) {
+        asignarArray(HashInt.capacidadPara(esperados, CAPACIDAD_MINIMA));
+    }
+
+    /**
+     * Conjunto con los valores de un array
+     * @param valores Valores (los repetidos se guardan una vez)
+     * @return Conjunto nuevo
+     */
+    public static IntSet of(int... valores) {
+        IntSet conjunto = new IntSet(valores.length);
+        for (int valor : valores) {
+            conjunto.add(valor);
+        }
+        return conjunto;
+    }
+
+    public boolean contains(int valor) {
+        return valor == 0 ? tieneCero : buscar(valor) >= 0;
+    }
+
+    /**
+     * Añade un valor
+     * @param valor Valor
+     * @return true si no estaba
+     */
+    public boolean add(int valor) {
+        if (valor == 0) {
+            if (tieneCero) {
+                return false;
+            }
+            tieneCero = true;
+            tamanio++;
+            return true;
+        }
+
+        int mascara = claves.length - 1;
+        for (int i = HashInt.mezclar(valor) & mascara; ; i = (i + 1) & mascara) {
+            if (claves[i] == valor) {
+                return false;
+            }
+            if (claves[i] == 0) {
+                claves[i] = valor;
+                if (++tamanio > umbral) {
+                    redimensionar(claves.length * 2);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Quita un valor
+     * @param valor Valor
+     * @return true si estaba
+     */
+    public boolean remove(int valor) {
+        if (valor == 0) {
+            if (!tieneCero) {
+                return false;
+            }
+            tieneCero = false;
+            tamanio--;
+            return true;
+        }
+
+        int posicion = buscar(valor);
+        if (posicion < 0) {
+            return false;
+        }
+        liberar(posicion);
+        tamanio--;
+        return true;
+    }
+
+    public int size() {
+        return tamanio;
+    }
+
+    public boolean isEmpty() {
+        return tamanio == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(claves, 0);
+        tieneCero = false;
+        tamanio = 0;
+    }
+
+    /**
+     * Copia de los valores, sin orden definido
+     * @return Array nuevo con los valores
+     */
+    public int[] toArray() {
+        int[] copia = new int[tamanio];
+        int n = 0;
+        if (tieneCero) {
+            copia[n++] = 0;
+        }
+        for (int clave : claves) {
+            if (clave != 0) {
+                copia[n++] = clave;
+            }
+        }
+        return copia;
+    }
+
+    private int buscar(int valor) {
+        int mascara = claves.length - 1;
+        for (int i = HashInt.mezclar(valor) & mascara; claves[i] != 0; i = (i + 1) & mascara) {
+            if (claves[i] == valor) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Vacía una posición y recoloca las entradas siguientes de su racha (borrado sin lápidas)
+     */
+    private void liberar(int posicion) {
+        int mascara = claves.length - 1;
+        int hueco = posicion;
+        for (int i = (hueco + 1) & mascara; claves[i] != 0; i = (i + 1) & mascara) {
+            int ideal = HashInt.mezclar(claves[i]) & mascara;
+            if (((i - ideal) & mascara) >= ((i - hueco) & mascara)) {
+                claves[hueco] = claves[i];
+                hueco = i;
+            }
+        }
+        claves[hueco] = 0;
+    }
+
+    private void redimensionar(int capacidad) {
+        int[] viejas = claves;
+        asignarArray(capacidad);
+
+        int mascara = capacidad - 1;
+        for (int clave : viejas) {
+            if (clave != 0) {
+                int i = HashInt.mezclar(clave) & mascara;
+                while (claves[i] != 0) {
+                    i = (i + 1) & mascara;
+                }
+                claves[i] = clave;
+            }
+        }
+    }
+
+    private void asignarArray(int capacidad) {
+        claves = new int[capacidad];
+        umbral = HashInt.umbral(capacidad);
+    }
+}
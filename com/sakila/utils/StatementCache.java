@@ -0,0 +1,203 @@
+package com.sakila.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché LRU de sentencias preparadas de una conexión física, indexada por el texto SQL.
+ * Las sentencias entregadas son proxies: close() las deja listas para reutilizar
+ * en lugar de cerrarlas.
+ * @author Nicolas Zierow Fermin
+ */
+public class StatementCache {
+    private final Connection fisica;
+    private final int capacidad;
+    private final Contadores contadores;
+    private final LinkedHashMap<String, Entrada> entradas = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * Contadores compartidos por todas las cachés de un mismo pool
+     */
+    public static class Contadores {
+        private final AtomicLong aciertos = new AtomicLong();
+        private final AtomicLong fallos = new AtomicLong();
+        private final AtomicLong expulsiones = new AtomicLong();
+
+        /**
+         * Obtiene las estadísticas de la caché de sentencias
+         * @return Mapa con aciertos, fallos, expulsiones y tasa de aciertos
+         */
+        public Map<String, Object> obtenerEstadisticas() {
+            Map<String, Object> estadisticas = new HashMap<>();
+            long a = aciertos.get();
+            long f = fallos.get();
+            estadisticas.put("aciertos", a);
+            estadisticas.put("fallos", f);
+            estadisticas.put("expulsiones", expulsiones.get());
+            estadisticas.put("tasaAciertos", a + f == 0 ? 0.0 : (double) a / (a + f));
+            return estadisticas;
+        }
+    }
+
+    /**
+     * Sentencia física en la caché
+     */
+    private static class Entrada {
+        private final PreparedStatement sentencia;
+        private boolean enUso;
+        private boolean expulsada;
+
+        Entrada(PreparedStatement sentencia) {
+            this.sentencia = sentencia;
+        }
+    }
+
+    /**
+     * Constructor
+     * @param fisica Conexión física dueña de las sentencias
+     * @param capacidad Número máximo de sentencias guardadas
+     * @param contadores Contadores de aciertos y fallos
+     */
+    public StatementCache(Connection fisica, int capacidad, Contadores contadores) {
+        this.fisica = fisica;
+        this.capacidad = capacidad;
+        this.contadores = contadores;
+    }
+
+    /**
+     * Obtiene una sentencia preparada, reutilizando la de la caché si está libre
+     * @param sql Texto SQL
+     * @param autoGeneratedKeys Statement.RETURN_GENERATED_KEYS o Statement.NO_GENERATED_KEYS, o null
+     * @return Sentencia preparada
+     * @throws SQLException Si ocurre un error al preparar
+     */
+    public synchronized PreparedStatement preparar(String sql, Integer autoGeneratedKeys) throws SQLException {
+        String clave = autoGeneratedKeys == null ? sql : autoGeneratedKeys + "|" + sql;
+        Entrada entrada = entradas.get(clave);
+
+        if (entrada != null && !entrada.enUso) {
+            contadores.aciertos.incrementAndGet();
+            entrada.enUso = true;
+            return envolver(entrada);
+        }
+
+        contadores.fallos.incrementAndGet();
+        PreparedStatement sentencia = autoGeneratedKeys == null
+                ? fisica.prepareStatement(sql)
+                : fisica.prepareStatement(sql, autoGeneratedKeys);
+
+        if (entrada != null) {
+            // La misma SQL ya está en uso en esta conexión (p. ej. dentro de una transacción):
+            // entregamos una sentencia normal que se cierra de verdad
+            return sentencia;
+        }
+
+        entrada = new Entrada(sentencia);
+        entrada.enUso = true;
+        entradas.put(clave, entrada);
+        expulsarExceso();
+        return envolver(entrada);
+    }
+
+    /**
+     * Expulsa las sentencias menos usadas recientemente por encima de la capacidad
+     */
+    private void expulsarExceso() {
+        Iterator<Entrada> it = entradas.values().iterator();
+        while (entradas.size() > capacidad && it.hasNext()) {
+            Entrada entrada = it.next();
+            it.remove();
+            entrada.expulsada = true;
+            contadores.expulsiones.incrementAndGet();
+            if (!entrada.enUso) {
+                cerrarSilencioso(entrada.sentencia);
+            }
+        }
+    }
+
+    /**
+     * Devuelve una sentencia a la caché
+     */
+    private synchronized void devolver(Entrada entrada) {
+        entrada.enUso = false;
+        if (entrada.expulsada) {
+            cerrarSilencioso(entrada.sentencia);
+            return;
+        }
+        try {
+            entrada.sentencia.clearParameters();
+            entrada.sentencia.clearBatch();
+            entrada.sentencia.clearWarnings();
+        } catch (SQLException e) {
+            // Si no se puede limpiar, la sacamos de la caché
+            entradas.values().remove(entrada);
+            cerrarSilencioso(entrada.sentencia);
+        }
+    }
+
+    /**
+     * Cierra todas las sentencias de la caché
+     */
+    public synchronized void cerrar() {
+        List<Entrada> todas = new ArrayList<>(entradas.values());
+        entradas.clear();
+        for (Entrada entrada : todas) {
+            cerrarSilencioso(entrada.sentencia);
+        }
+    }
+
+    private static void cerrarSilencioso(PreparedStatement sentencia) {
+        try {
+            sentencia.close();
+        } catch (SQLException e) {
+            Logger.warning("Error al cerrar sentencia en caché: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Envuelve la sentencia para que close() la devuelva a la caché
+     */
+    private PreparedStatement envolver(Entrada entrada) {
+        boolean[] devuelta = new boolean[1];
+        return (PreparedStatement) Proxy.newProxyInstance(
+                PreparedStatement.class.getClassLoader(),
+                new Class<?>[] { PreparedStatement.class },
+                (proxy, method, args) -> {
+                    String nombre = method.getName();
+                    if (nombre.equals("close")) {
+                        if (!devuelta[0]) {
+                            devuelta[0] = true;
+                            devolver(entrada);
+                        }
+                        return null;
+                    }
+                    if (nombre.equals("isClosed")) {
+                        return devuelta[0] || entrada.sentencia.isClosed();
+                    }
+                    if (nombre.equals("equals")) {
+                        return proxy == args[0];
+                    }
+                    if (nombre.equals("hashCode")) {
+                        return System.identityHashCode(proxy);
+                    }
+                    if (devuelta[0]) {
+                        throw new SQLException("La sentencia ya fue devuelta a la caché");
+                    }
+                    try {
+                        return method.invoke(entrada.sentencia, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+}
@@ -0,0 +1,85 @@
+package com.sakila.controllers;
+
+import com.sakila.models.Inventario;
+import com.sakila.models.Store;
+import com.sakila.utils.BaseDatosFalsa;
+import com.sakila.utils.DatabaseConnection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Pruebas de las escrituras en lote de InventarioControlador contra BaseDatosFalsa.
+ * Se ejecuta desde test/ (su config.properties apunta a la base falsa); termina con
+ * AssertionError si alguna comprobación falla
+ * @author Nicolas Zierow Fermin
+ */
+public class PruebaInventarioControlador {
+    private static final int FILAS = 5;
+    private static final int PELICULA = 10;
+    private static final int TIENDA = 1;
+    private static final int TIENDA_NUEVA = 2;
+
+    public static void main(String[] args) {
+        BaseDatosFalsa.responder("FROM inventory i WHERE i.inventory_id > ?",
+                new String[]{"inventory_id", "film_id", "store_id", "last_update"},
+                parametros -> {
+                    int despuesDe = ((Number) parametros.get(0)).intValue();
+                    int limite = ((Number) parametros.get(1)).intValue();
+                    List<Object[]> filas = new ArrayList<>();
+                    for (int id = despuesDe + 1; id <= FILAS && filas.size() < limite; id++) {
+                        filas.add(new Object[]{id, PELICULA, TIENDA, BaseDatosFalsa.marca()});
+                    }
+                    return filas;
+                });
+
+        InventarioControlador controlador = new InventarioControlador(new PeliculaControlador());
+        putAllConInventariosCargados(controlador);
+        DatabaseConnection.closePool();
+        System.out.println("PruebaInventarioControlador: OK");
+    }
+
+    /**
+     * putAll acepta los inventarios tal como los carga el controlador (con solo el ID de la
+     * tienda y la película sin resolver), envía el lote y no resuelve la película
+     */
+    private static void putAllConInventariosCargados(InventarioControlador controlador) {
+        List<Inventario> cargados = new ArrayList<>();
+        for (int id = 1; id <= FILAS; id++) {
+            Inventario inventario = controlador.get(id);
+            comprobar(inventario != null, "el inventario " + id + " no se cargó");
+            cargados.add(inventario);
+        }
+        Store tiendaNueva = new Store();
+        tiendaNueva.setId(TIENDA_NUEVA);
+        for (Inventario inventario : cargados) {
+            inventario.setTienda(tiendaNueva);
+        }
+        BaseDatosFalsa.limpiarRegistro();
+
+        comprobar(controlador.putAll(cargados), "putAll rechazó inventarios cargados por el controlador");
+
+        List<BaseDatosFalsa.Escritura> escrituras = BaseDatosFalsa.getEscrituras();
+        comprobar(escrituras.size() == FILAS, "se esperaban " + FILAS + " filas en el lote: " + escrituras.size());
+        for (int i = 0; i < FILAS; i++) {
+            BaseDatosFalsa.Escritura escritura = escrituras.get(i);
+            comprobar(escritura.sql.startsWith("UPDATE inventory"), "sentencia inesperada: " + escritura.sql);
+            List<Object> esperados = Arrays.asList(PELICULA, TIENDA_NUEVA, i + 1);
+            comprobar(esperados.equals(escritura.parametros), "parámetros " + escritura.parametros + ", se esperaban " + esperados);
+        }
+        for (Inventario inventario : cargados) {
+            comprobar(!inventario.getReferenciaPelicula().estaResuelta(), "putAll resolvió la película del inventario " + inventario.getId());
+            comprobar(controlador.get(inventario.getId()).getIdTienda() == TIENDA_NUEVA, "la caché no tiene la tienda nueva");
+        }
+        for (String consulta : BaseDatosFalsa.getConsultas()) {
+            comprobar(!consulta.contains("film"), "putAll consultó películas: " + consulta);
+        }
+    }
+
+    private static void comprobar(boolean condicion, String mensaje) {
+        if (!condicion) {
+            throw new AssertionError(mensaje);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.sakila.data;
+
+/**
+ * Pruebas del nivel blando: sustitución del valor más antiguo y caducidad.
+ * Termina con AssertionError si alguna comprobación falla
+ * @author Nicolas Zierow Fermin
+ */
+public class PruebaNivelSuave {
+
+    public static void main(String[] args) throws InterruptedException {
+        llenoSustituyeAlMasAntiguo();
+        purgarQuitaLosCaducados();
+        System.out.println("PruebaNivelSuave: OK");
+    }
+
+    /**
+     * Con el nivel lleno, cada clave nueva entra en lugar de la guardada hace más tiempo;
+     * volver a guardar una clave la pasa al final
+     */
+    private static void llenoSustituyeAlMasAntiguo() {
+        NivelSuave<String> nivel = new NivelSuave<>("prueba", 3);
+        nivel.guardar(1, "uno");
+        nivel.guardar(2, "dos");
+        nivel.guardar(3, "tres");
+        nivel.guardar(1, "uno otra vez");
+        nivel.guardar(4, "cuatro");
+
+        comprobar(nivel.tamanio() == 3, "entradas: " + nivel.tamanio());
+        comprobar(nivel.obtener(2) == null, "la clave 2 era la más antigua y debería haber salido");
+        comprobar("uno otra vez".equals(nivel.obtener(1)), "la clave 1 se volvió a guardar y debería seguir");
+        comprobar("cuatro".equals(nivel.obtener(4)), "la clave nueva no se guardó");
+        comprobar(Long.valueOf(1).equals(nivel.obtenerEstadisticas().get("descartadas")), "descartadas: " +
+                  nivel.obtenerEstadisticas().get("descartadas"));
+    }
+
+    /**
+     * Pasada la vida máxima, los valores dejan de servirse y se quitan al purgar
+     */
+    private static void purgarQuitaLosCaducados() throws InterruptedException {
+        NivelSuave<String> nivel = new NivelSuave<>("prueba", 10, 50);
+        nivel.guardar(1, "uno");
+        nivel.guardar(2, "dos");
+        comprobar("uno".equals(nivel.obtener(1)), "el valor vigente no se sirvió");
+
+        Thread.sleep(100);
+
+        comprobar(nivel.tamanio() == 0, "quedan entradas caducadas: " + nivel.tamanio());
+        comprobar(nivel.obtener(1) == null, "se sirvió un valor caducado");
+        comprobar(Long.valueOf(2).equals(nivel.obtenerEstadisticas().get("caducadas")), "caducadas: " +
+                  nivel.obtenerEstadisticas().get("caducadas"));
+    }
+
+    private static void comprobar(boolean condicion, String mensaje) {
+        if (!condicion) {
+            throw new AssertionError(mensaje);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.sakila.data;
+
+import com.sakila.models.Actor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pruebas del presupuesto global con cachés acotadas (sin base de datos).
+ * Se ejecuta con java -ea; termina con AssertionError si alguna comprobación falla
+ * @author Nicolas Zierow Fermin
+ */
+public class PruebaPresupuestoMemoria {
+    private static final long PRESUPUESTO = 10_000;
+    private static final long PESO_ENTRADA = 100;
+    private static final int TAMANIO_PAGINA = 50;
+
+    public static void main(String[] args) {
+        cargaInicialParaAlLlenarseElPresupuesto();
+        cargaInicialNoEmpiezaConElPresupuestoLleno();
+        System.out.println("PruebaPresupuestoMemoria: OK");
+    }
+
+    /**
+     * Una tabla de 10 veces el presupuesto deja de leerse en cuanto el presupuesto se llena
+     */
+    private static void cargaInicialParaAlLlenarseElPresupuesto() {
+        PresupuestoMemoria presupuesto = new PresupuestoMemoria(PRESUPUESTO);
+        CacheAcotada<Actor> cache = nuevaCache("clientes", presupuesto);
+        int filas = (int) (PRESUPUESTO / PESO_ENTRADA) * 10;
+
+        int leidas = cargar(cache, filas);
+
+        comprobar(cache.estaLlena(), "la caché debería estar llena tras la carga");
+        comprobar(leidas < filas, "se leyó la tabla entera: " + leidas + " filas");
+        comprobar(leidas <= PRESUPUESTO / PESO_ENTRADA + TAMANIO_PAGINA,
+                  "se leyeron más páginas de las que caben: " + leidas + " filas");
+        comprobar(presupuesto.usados() <= PRESUPUESTO, "presupuesto superado: " + presupuesto.usados());
+    }
+
+    /**
+     * Con el presupuesto ya ocupado por otra caché, la carga de la segunda no lee nada
+     */
+    private static void cargaInicialNoEmpiezaConElPresupuestoLleno() {
+        PresupuestoMemoria presupuesto = new PresupuestoMemoria(PRESUPUESTO);
+        CacheAcotada<Actor> clientes = nuevaCache("clientes", presupuesto);
+        CacheAcotada<Actor> inventario = nuevaCache("inventario", presupuesto);
+        cargar(clientes, 1000);
+
+        int leidas = cargar(inventario, 1000);
+
+        comprobar(leidas == 0, "la segunda carga leyó " + leidas + " filas con el presupuesto lleno");
+    }
+
+    private static CacheAcotada<Actor> nuevaCache(String nombre, PresupuestoMemoria presupuesto) {
+        return new CacheAcotada<>(nombre, presupuesto.getMaximo(), actor -> PESO_ENTRADA, "bytes",
+                                  new NivelSuave<>(nombre, 0), presupuesto);
+    }
+
+    /**
+     * Imita la carga inicial de los controladores: páginas mientras queden filas y quepan
+     * @return Filas leídas
+     */
+    private static int cargar(CacheAcotada<Actor> cache, int filas) {
+        int leidas = 0;
+        while (leidas < filas && !cache.estaLlena()) {
+            List<Actor> pagina = new ArrayList<>(TAMANIO_PAGINA);
+            for (int i = 0; i < TAMANIO_PAGINA && leidas < filas; i++) {
+                leidas++;
+                pagina.add(new Actor(leidas, "Nombre" + leidas, "Apellido"));
+            }
+            cache.guardarTodas(pagina);
+        }
+        return leidas;
+    }
+
+    private static void comprobar(boolean condicion, String mensaje) {
+        if (!condicion) {
+            throw new AssertionError(mensaje);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.sakila.data;
+
+import com.sakila.utils.BaseDatosFalsa;
+import com.sakila.utils.DatabaseConnection;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pruebas de los ámbitos de transacción contra BaseDatosFalsa. Se ejecuta desde test/;
+ * termina con AssertionError si alguna comprobación falla
+ * @author Nicolas Zierow Fermin
+ */
+public class PruebaTransaccion {
+
+    public static void main(String[] args) throws SQLException {
+        // Carga el driver falso antes de que el pool abra conexiones
+        BaseDatosFalsa.limpiarRegistro();
+        cerrarExternaConAnidadaAbierta();
+        DatabaseConnection.closePool();
+        System.out.println("PruebaTransaccion: OK");
+    }
+
+    /**
+     * Cerrar la raíz con un ámbito anidado abierto revierte los dos, ejecuta sus acciones
+     * al revertir, limpia el hilo y devuelve la conexión al pool
+     */
+    private static void cerrarExternaConAnidadaAbierta() throws SQLException {
+        List<String> revertidas = new ArrayList<>();
+
+        Transaccion externa = ContextoBaseDatos.transaccion();
+        ContextoBaseDatos.alRevertir("externa", () -> revertidas.add("externa"));
+        Transaccion anidada = ContextoBaseDatos.transaccion();
+        ContextoBaseDatos.alRevertir("anidada", () -> revertidas.add("anidada"));
+
+        externa.close();
+
+        comprobar(!ContextoBaseDatos.enTransaccion(), "el hilo sigue con una transacción abierta");
+        comprobar(revertidas.contains("externa") && revertidas.contains("anidada"),
+                  "acciones al revertir ejecutadas: " + revertidas);
+        Object activas = DatabaseConnection.getPoolStats().get("activas");
+        comprobar(Integer.valueOf(0).equals(activas), "conexiones sin devolver al pool: " + activas);
+
+        anidada.close();
+        comprobar(revertidas.size() == 2, "cerrar de nuevo la anidada repitió acciones: " + revertidas);
+    }
+
+    private static void comprobar(boolean condicion, String mensaje) {
+        if (!condicion) {
+            throw new AssertionError(mensaje);
+        }
+    }
+}
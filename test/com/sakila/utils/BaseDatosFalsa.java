@@ -0,0 +1,345 @@
+package com.sakila.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Driver JDBC en memoria para las pruebas (db.url=jdbc:falsa:...), sin MySQL.
+ * <p>
+ * Las consultas devuelven las filas registradas con responder() para un fragmento de su SQL;
+ * sin respuesta registrada devuelven cero filas. Las escrituras no cambian nada: se anotan
+ * con sus parámetros, afectan a una fila cada una y generan IDs a partir de 1000.
+ * @author Nicolas Zierow Fermin
+ */
+public final class BaseDatosFalsa implements Driver {
+    public static final String PREFIJO = "jdbc:falsa:";
+
+    /**
+     * Filas de una consulta según sus parámetros
+     */
+    @FunctionalInterface
+    public interface Respuesta {
+        List<Object[]> filas(List<Object> parametros);
+    }
+
+    /**
+     * Sentencia de escritura ejecutada (o fila de un lote), con sus parámetros
+     */
+    public static final class Escritura {
+        public final String sql;
+        public final List<Object> parametros;
+
+        Escritura(String sql, List<Object> parametros) {
+            this.sql = sql;
+            this.parametros = parametros;
+        }
+    }
+
+    private static final Map<String, String[]> columnas = new ConcurrentHashMap<>();
+    private static final Map<String, Respuesta> respuestas = new ConcurrentHashMap<>();
+    private static final List<String> consultas = new CopyOnWriteArrayList<>();
+    private static final List<Escritura> escrituras = new CopyOnWriteArrayList<>();
+    private static final AtomicInteger siguienteId = new AtomicInteger(1000);
+
+    static {
+        try {
+            DriverManager.registerDriver(new BaseDatosFalsa());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * Responde a las consultas que contengan un fragmento de SQL
+     * @param fragmento Texto que debe aparecer en la consulta
+     * @param nombres Columnas de las filas, en orden
+     * @param respuesta Filas según los parámetros de la consulta
+     */
+    public static void responder(String fragmento, String[] nombres, Respuesta respuesta) {
+        columnas.put(fragmento, nombres);
+        respuestas.put(fragmento, respuesta);
+    }
+
+    /**
+     * @return Consultas ejecutadas desde la última limpieza
+     */
+    public static List<String> getConsultas() {
+        return Collections.unmodifiableList(consultas);
+    }
+
+    /**
+     * @return Escrituras ejecutadas desde la última limpieza
+     */
+    public static List<Escritura> getEscrituras() {
+        return Collections.unmodifiableList(escrituras);
+    }
+
+    /**
+     * Olvida las consultas y escrituras anotadas (las respuestas se conservan)
+     */
+    public static void limpiarRegistro() {
+        consultas.clear();
+        escrituras.clear();
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        return proxy(Connection.class, new Conexion());
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIJO);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() {
+        return Logger.getLogger(BaseDatosFalsa.class.getName());
+    }
+
+    private static ResultSet consultar(String sql, List<Object> parametros) {
+        consultas.add(sql);
+        for (Map.Entry<String, Respuesta> entrada : respuestas.entrySet()) {
+            if (sql.contains(entrada.getKey())) {
+                return resultado(columnas.get(entrada.getKey()), entrada.getValue().filas(parametros));
+            }
+        }
+        return resultado(new String[0], Collections.emptyList());
+    }
+
+    private static ResultSet resultado(String[] nombres, List<Object[]> filas) {
+        return proxy(ResultSet.class, new Resultado(nombres, filas));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> tipo, InvocationHandler manejador) {
+        return (T) Proxy.newProxyInstance(BaseDatosFalsa.class.getClassLoader(), new Class<?>[]{tipo}, manejador);
+    }
+
+    /**
+     * Valor por defecto para los métodos que las pruebas no necesitan
+     */
+    private static Object porDefecto(Object proxy, Method metodo, Object[] args) {
+        switch (metodo.getName()) {
+            case "equals":
+                return proxy == args[0];
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "toString":
+                return "BaseDatosFalsa." + metodo.getDeclaringClass().getSimpleName();
+            default:
+                break;
+        }
+        Class<?> tipo = metodo.getReturnType();
+        if (tipo == boolean.class) {
+            return false;
+        }
+        if (tipo == int.class) {
+            return 0;
+        }
+        if (tipo == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+
+    private static final class Conexion implements InvocationHandler {
+        private boolean cerrada;
+        private boolean autoCommit = true;
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) {
+            switch (metodo.getName()) {
+                case "createStatement":
+                    return proxy(Statement.class, new Sentencia(null));
+                case "prepareStatement":
+                    return proxy(PreparedStatement.class, new Sentencia((String) args[0]));
+                case "setAutoCommit":
+                    autoCommit = (Boolean) args[0];
+                    return null;
+                case "getAutoCommit":
+                    return autoCommit;
+                case "isValid":
+                    return !cerrada;
+                case "close":
+                    cerrada = true;
+                    return null;
+                case "isClosed":
+                    return cerrada;
+                default:
+                    return porDefecto(proxy, metodo, args);
+            }
+        }
+    }
+
+    private static final class Sentencia implements InvocationHandler {
+        private final String sql;
+        private final Map<Integer, Object> parametros = new TreeMap<>();
+        private final List<List<Object>> lote = new ArrayList<>();
+        private final List<Object[]> generadas = new ArrayList<>();
+
+        Sentencia(String sql) {
+            this.sql = sql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) {
+            String nombre = metodo.getName();
+            if (nombre.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                // setInt, setString, setNull...: parámetro por posición
+                parametros.put((Integer) args[0], nombre.equals("setNull") ? null : args[1]);
+                return null;
+            }
+            switch (nombre) {
+                case "clearParameters":
+                    parametros.clear();
+                    return null;
+                case "executeQuery":
+                    return consultar(args != null ? (String) args[0] : sql, valores());
+                case "executeUpdate":
+                    escribir(args != null ? (String) args[0] : sql, valores());
+                    return 1;
+                case "addBatch":
+                    lote.add(valores());
+                    return null;
+                case "executeBatch":
+                    int[] filas = new int[lote.size()];
+                    for (List<Object> fila : lote) {
+                        escribir(sql, fila);
+                    }
+                    Arrays.fill(filas, 1);
+                    lote.clear();
+                    return filas;
+                case "clearBatch":
+                    lote.clear();
+                    return null;
+                case "getGeneratedKeys":
+                    List<Object[]> claves = new ArrayList<>(generadas);
+                    generadas.clear();
+                    return resultado(new String[]{"GENERATED_KEY"}, claves);
+                default:
+                    return porDefecto(proxy, metodo, args);
+            }
+        }
+
+        private List<Object> valores() {
+            return new ArrayList<>(parametros.values());
+        }
+
+        private void escribir(String sentencia, List<Object> valores) {
+            escrituras.add(new Escritura(sentencia, valores));
+            if (sentencia.trim().toUpperCase().startsWith("INSERT")) {
+                generadas.add(new Object[]{siguienteId.getAndIncrement()});
+            }
+        }
+    }
+
+    private static final class Resultado implements InvocationHandler {
+        private final List<String> nombres;
+        private final List<Object[]> filas;
+        private int fila = -1;
+        private boolean ultimoNulo;
+
+        Resultado(String[] nombres, List<Object[]> filas) {
+            this.nombres = Arrays.asList(nombres);
+            this.filas = filas;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method metodo, Object[] args) throws SQLException {
+            switch (metodo.getName()) {
+                case "next":
+                    return ++fila < filas.size();
+                case "wasNull":
+                    return ultimoNulo;
+                case "getObject":
+                    return valor(args[0]);
+                case "getString": {
+                    Object valor = valor(args[0]);
+                    return valor == null ? null : valor.toString();
+                }
+                case "getInt": {
+                    Object valor = valor(args[0]);
+                    return valor == null ? 0 : ((Number) valor).intValue();
+                }
+                case "getLong": {
+                    Object valor = valor(args[0]);
+                    return valor == null ? 0L : ((Number) valor).longValue();
+                }
+                case "getDouble": {
+                    Object valor = valor(args[0]);
+                    return valor == null ? 0.0 : ((Number) valor).doubleValue();
+                }
+                case "getBoolean": {
+                    Object valor = valor(args[0]);
+                    return valor instanceof Boolean ? valor : valor != null && ((Number) valor).intValue() != 0;
+                }
+                case "getTimestamp":
+                    return valor(args[0]);
+                default:
+                    return porDefecto(proxy, metodo, args);
+            }
+        }
+
+        private Object valor(Object columna) throws SQLException {
+            int indice = columna instanceof Integer ? (Integer) columna - 1 : nombres.indexOf(columna);
+            if (indice < 0 || indice >= nombres.size()) {
+                throw new SQLException("Columna desconocida: " + columna);
+            }
+            Object valor = filas.get(fila)[indice];
+            ultimoNulo = valor == null;
+            return valor;
+        }
+    }
+
+    /**
+     * Marca de tiempo fija para las filas de prueba
+     */
+    public static Timestamp marca() {
+        return new Timestamp(1_000_000L);
+    }
+}
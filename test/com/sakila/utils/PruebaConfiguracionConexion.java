@@ -0,0 +1,57 @@
+package com.sakila.utils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Pruebas de los cambios de configuración de DatabaseConnection contra BaseDatosFalsa.
+ * Se ejecuta desde test/; termina con AssertionError si alguna comprobación falla
+ * @author Nicolas Zierow Fermin
+ */
+public class PruebaConfiguracionConexion {
+
+    public static void main(String[] args) throws SQLException {
+        // Carga el driver falso antes de que el pool abra conexiones
+        BaseDatosFalsa.limpiarRegistro();
+        cambiarAntesDeConectar();
+        cambioFallidoNoAplicaNada();
+        DatabaseConnection.closePool();
+        System.out.println("PruebaConfiguracionConexion: OK");
+    }
+
+    /**
+     * updateConfig antes de la primera conexión conserva el resto de config.properties
+     */
+    private static void cambiarAntesDeConectar() throws SQLException {
+        comprobar(DatabaseConnection.updateConfig("jdbc:falsa:otra", "prueba", "prueba"),
+                  "no se aplicó la URL nueva");
+        comprobar(DatabaseConnection.getMaxPoolSize() == 4,
+                  "db.pool.max de config.properties perdido: " + DatabaseConnection.getMaxPoolSize());
+        comprobar(DatabaseConnection.getConfigNumber("cache.refresco.ms", -1) == 0,
+                  "claves de config.properties sin leer");
+        try (Connection conexion = DatabaseConnection.getConnection()) {
+            comprobar(conexion.isValid(1), "conexión no válida con la URL nueva");
+        }
+    }
+
+    /**
+     * Si el pool nuevo no conecta, siguen el pool y la configuración anteriores
+     */
+    private static void cambioFallidoNoAplicaNada() throws SQLException {
+        comprobar(DatabaseConnection.updatePoolSize(1, 3), "no se aplicó el tamaño nuevo");
+        comprobar(DatabaseConnection.getMaxPoolSize() == 3, "tamaño sin aplicar");
+
+        comprobar(!DatabaseConnection.updateConfig("jdbc:inexistente:sakila", "prueba", "prueba"),
+                  "se aplicó una URL sin driver");
+        comprobar(DatabaseConnection.getMaxPoolSize() == 3, "tamaño cambiado por un cambio fallido");
+        try (Connection conexion = DatabaseConnection.getConnection()) {
+            comprobar(conexion.isValid(1), "el pool anterior dejó de prestar conexiones");
+        }
+    }
+
+    private static void comprobar(boolean condicion, String mensaje) {
+        if (!condicion) {
+            throw new AssertionError(mensaje);
+        }
+    }
+}